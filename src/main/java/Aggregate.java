@@ -0,0 +1,30 @@
+/**
+ * The aggregates that a DoubleDataFrame can compute for its columns. All of them
+ * are computed together in a single pass over the data, see {@link ColumnStatistics}.
+ *
+ */
+public enum Aggregate {
+    COUNT("count"),
+    SUM("sum"),
+    MEAN("mean"),
+    MIN("min"),
+    MAX("max"),
+    VARIANCE("variance"),
+    STD("std");
+
+    private final String name;
+
+    Aggregate(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Return the name of the aggregate, which is used as the name of the data vector
+     * holding the aggregate for every column
+     *
+     * @return the name of the aggregate
+     */
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,160 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongFunction;
+
+/**
+ * A chunk source delivers the rows of a data set as a sequence of data frames of
+ * bounded size, so a data set that does not fit in memory can be processed one
+ * chunk at a time by a {@link StreamingDataFrame}. All chunks have the same
+ * columns, in the same order.
+ *
+ * Sources are available for CSV files ({@link CsvReader#stream(java.nio.file.Path)}),
+ * column files ({@link ColumnFile#stream(java.nio.file.Path, int)}), data frames
+ * that are already in memory and generated rows. A source is read once, from the
+ * first chunk to the last.
+ *
+ */
+public interface ChunkSource extends AutoCloseable
+{
+
+	/**
+	 * Gives the names of the columns of every chunk
+	 *
+	 * @return the names of the columns
+	 */
+	List<String> getColumnNames();
+
+	/**
+	 * Reads the next chunk of rows. Chunks may be empty; the end of the data is only
+	 * signaled by null.
+	 *
+	 * @return a data frame with the next rows, or null if all rows have been read
+	 * @throws IOException if the rows cannot be read
+	 */
+	DoubleDataFrame nextChunk() throws IOException;
+
+	/**
+	 * Releases the resources held by this source, such as an open file
+	 *
+	 * @throws IOException if the resources cannot be released
+	 */
+	@Override
+	default void close() throws IOException
+	{
+	}
+
+	/**
+	 * Creates a source that delivers the rows of a data frame in chunks. Every chunk
+	 * is a column-major copy of its rows.
+	 *
+	 * @param df the data frame
+	 * @param chunkRows the maximum number of rows in a chunk
+	 * @return the source
+	 * @throws IllegalArgumentException if the number of rows in a chunk is not positive
+	 */
+	static ChunkSource of(DoubleDataFrame df, int chunkRows) throws IllegalArgumentException
+	{
+		checkChunkRows(chunkRows);
+		List<String> names = df.getColumnNames();
+		DoubleStorage storage = df.storage();
+		return new ChunkSource()
+		{
+			private int position;
+
+			@Override
+			public List<String> getColumnNames()
+			{
+				return names;
+			}
+
+			@Override
+			public DoubleDataFrame nextChunk()
+			{
+				int rows = storage.rowCount();
+				if (position >= rows)
+				{
+					return null;
+				}
+				int to = (int) Math.min(rows, (long) position + chunkRows);
+				double[][] columns = new double[names.size()][to - position];
+				for (int j = 0; j < columns.length; j++)
+				{
+					storage.copyColumn(j, position, to, columns[j]);
+				}
+				position = to;
+				return DoubleDataFrame.fromColumns(names, columns);
+			}
+		};
+	}
+
+	/**
+	 * Creates a source of generated rows. The generator is called for every row
+	 * number in ascending order, on the thread that reads the chunk.
+	 *
+	 * @param columnNames the names of the columns
+	 * @param rows the total number of rows
+	 * @param chunkRows the maximum number of rows in a chunk
+	 * @param rowGenerator the function that returns the values of a row, one for
+	 *                     every column, given its number
+	 * @return the source
+	 * @throws IllegalArgumentException if a column name occurs twice, or the number
+	 *                                  of rows is negative or the number of rows in a
+	 *                                  chunk is not positive
+	 */
+	static ChunkSource generate(List<String> columnNames, long rows, int chunkRows, LongFunction<double[]> rowGenerator)
+			throws IllegalArgumentException
+	{
+		checkChunkRows(chunkRows);
+		if (rows < 0)
+		{
+			throw new IllegalArgumentException("The number of rows cannot be negative: " + rows);
+		}
+		new Schema(columnNames);
+		List<String> names = new ArrayList<>(columnNames);
+		return new ChunkSource()
+		{
+			private long position;
+
+			@Override
+			public List<String> getColumnNames()
+			{
+				return names;
+			}
+
+			@Override
+			public DoubleDataFrame nextChunk()
+			{
+				if (position >= rows)
+				{
+					return null;
+				}
+				int count = (int) Math.min(chunkRows, rows - position);
+				double[][] columns = new double[names.size()][count];
+				for (int i = 0; i < count; i++)
+				{
+					double[] values = rowGenerator.apply(position + i);
+					if (values.length != columns.length)
+					{
+						throw new IllegalArgumentException("Expected " + columns.length + " values in row "
+								+ (position + i) + ", got " + values.length);
+					}
+					for (int j = 0; j < columns.length; j++)
+					{
+						columns[j][i] = values[j];
+					}
+				}
+				position += count;
+				return DoubleDataFrame.fromColumns(names, columns);
+			}
+		};
+	}
+
+	private static void checkChunkRows(int chunkRows)
+	{
+		if (chunkRows <= 0)
+		{
+			throw new IllegalArgumentException("The number of rows in a chunk should be positive: " + chunkRows);
+		}
+	}
+}
@@ -0,0 +1,282 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A column file stores a data frame in a compact binary format that can be opened
+ * by memory-mapping instead of parsing.
+ *
+ * All numbers are little-endian. The file starts with a header:
+ * <ul>
+ * <li>the four bytes "DFC1", identifying the format and its version</li>
+ * <li>the number of columns, as an int</li>
+ * <li>the number of rows, as a long</li>
+ * <li>for every column the length of its name in bytes, as an int, followed by
+ * the name encoded in UTF-8</li>
+ * <li>zero bytes up to the next multiple of eight</li>
+ * </ul>
+ * The header is followed by one block per column, in the order of the names,
+ * holding the values of the column as doubles.
+ *
+ * Opening a file only reads the header; the data frame returned by
+ * {@link #open(Path)} is backed by a {@link MappedStorage}, so the values are
+ * paged in by the operating system when they are accessed. Files with more rows
+ * than fit in a data frame can be read in chunks with {@link #stream(Path, int)}.
+ *
+ */
+public class ColumnFile {
+
+    private static final byte[] MAGIC = {'D', 'F', 'C', '1'};
+
+    /**
+     * The number of values that are written to the file at once
+     */
+    private static final int BLOCK_SIZE = 1 << 16;
+
+    private ColumnFile() {
+    }
+
+    /**
+     * Write a data frame to a file, replacing the file if it exists
+     *
+     * @param df the data frame to write
+     * @param path the file to write to
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(DataFrame<Double> df, Path path) throws IOException {
+        List<String> colNames = df.getColumnNames();
+        int rows = df.getRowCount();
+        DoubleStorage storage = df instanceof DoubleDataFrame ? ((DoubleDataFrame) df).storage() : null;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeFully(channel, header(colNames, rows));
+
+            ByteBuffer bytes = ByteBuffer.allocateDirect(BLOCK_SIZE * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            DoubleBuffer doubles = bytes.asDoubleBuffer();
+            double[] block = new double[BLOCK_SIZE];
+            for (int j = 0; j < colNames.size(); j++) {
+                for (int from = 0; from < rows; from += BLOCK_SIZE) {
+                    int to = Math.min(rows, from + BLOCK_SIZE);
+                    if (storage != null) {
+                        storage.copyColumn(j, from, to, block);
+                    } else {
+                        for (int i = from; i < to; i++) {
+                            block[i - from] = df.getValue(i, colNames.get(j));
+                        }
+                    }
+                    doubles.clear();
+                    doubles.put(block, 0, to - from);
+                    bytes.clear();
+                    bytes.limit((to - from) * Double.BYTES);
+                    writeFully(channel, bytes);
+                }
+            }
+        }
+    }
+
+    /**
+     * Open a file written by {@link #write(DataFrame, Path)} as a column-major data
+     * frame. Only the header is read, the values are memory-mapped. Values set on
+     * the data frame are never written back to the file.
+     *
+     * @param path the file to open
+     * @return a data frame backed by the mapped columns of the file
+     * @throws IOException if the file cannot be read or is not a column file
+     */
+    public static DoubleDataFrame open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Header header = readHeader(channel, path);
+            long rows = header.rows;
+            if (rows > Integer.MAX_VALUE) {
+                throw new IOException("Too many rows for a data frame: " + rows + " in " + path);
+            }
+            if (rows * Double.BYTES > Integer.MAX_VALUE) {
+                throw new IOException("Columns of more than " + (Integer.MAX_VALUE / Double.BYTES)
+                        + " rows cannot be mapped: " + path);
+            }
+            int cols = header.names.size();
+            long blockSize = rows * Double.BYTES;
+            DoubleBuffer[] columns = new DoubleBuffer[cols];
+            for (int j = 0; j < cols; j++) {
+                columns[j] = channel.map(FileChannel.MapMode.READ_ONLY, header.dataStart + j * blockSize, blockSize)
+                        .order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+            }
+            return new DoubleDataFrame(header.names, new MappedStorage(columns, (int) rows));
+        }
+    }
+
+    /**
+     * Open a file written by {@link #write(DataFrame, Path)} as a source of chunks,
+     * for files that are too large to be opened as a whole. Every chunk reads its
+     * range of rows of every column into a new column-major data frame, so the file
+     * may hold more rows than fit in a data frame.
+     *
+     * @param path the file to read
+     * @param chunkRows the maximum number of rows in a chunk
+     * @return a source that reads the file in chunks, which has to be closed
+     * @throws IOException if the file cannot be read or is not a column file
+     * @throws IllegalArgumentException if the number of rows in a chunk is not positive
+     */
+    public static ChunkSource stream(Path path, int chunkRows) throws IOException, IllegalArgumentException {
+        if (chunkRows <= 0) {
+            throw new IllegalArgumentException("The number of rows in a chunk should be positive: " + chunkRows);
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        Header header;
+        try {
+            header = readHeader(channel, path);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        return new ChunkSource() {
+            private final ByteBuffer bytes = ByteBuffer.allocate(Math.min(chunkRows, BLOCK_SIZE) * Double.BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            private long position;
+
+            @Override
+            public List<String> getColumnNames() {
+                return header.names;
+            }
+
+            @Override
+            public DoubleDataFrame nextChunk() throws IOException {
+                if (position >= header.rows) {
+                    return null;
+                }
+                int count = (int) Math.min(chunkRows, header.rows - position);
+                double[][] columns = new double[header.names.size()][count];
+                for (int j = 0; j < columns.length; j++) {
+                    long start = header.dataStart + (j * header.rows + position) * Double.BYTES;
+                    for (int from = 0; from < count; from += bytes.capacity() / Double.BYTES) {
+                        int length = Math.min(count - from, bytes.capacity() / Double.BYTES);
+                        bytes.clear();
+                        bytes.limit(length * Double.BYTES);
+                        while (bytes.hasRemaining()) {
+                            if (channel.read(bytes, start + (long) from * Double.BYTES + bytes.position()) < 0) {
+                                throw new IOException("Unexpected end of column file");
+                            }
+                        }
+                        bytes.flip();
+                        bytes.asDoubleBuffer().get(columns[j], from, length);
+                    }
+                }
+                position += count;
+                return DoubleDataFrame.fromColumns(header.names, columns);
+            }
+
+            @Override
+            public void close() throws IOException {
+                channel.close();
+            }
+        };
+    }
+
+    /**
+     * The names of the columns, the number of rows and the position of the first
+     * value, as read from the header of a file
+     */
+    private static final class Header {
+        private final List<String> names;
+        private final long rows;
+        private final long dataStart;
+
+        Header(List<String> names, long rows, long dataStart) {
+            this.names = names;
+            this.rows = rows;
+            this.dataStart = dataStart;
+        }
+    }
+
+    /**
+     * Read and check the header of a file
+     */
+    private static Header readHeader(FileChannel channel, Path path) throws IOException {
+        long size = channel.size();
+        ByteBuffer fixed = readFully(channel, 0, 16);
+        for (int k = 0; k < MAGIC.length; k++) {
+            if (fixed.get(k) != MAGIC[k]) {
+                throw new IOException("Not a column file: " + path);
+            }
+        }
+        int cols = fixed.getInt(4);
+        long rows = fixed.getLong(8);
+        if (cols < 0 || rows < 0 || rows > Long.MAX_VALUE / Double.BYTES) {
+            throw new IOException("Invalid header in " + path);
+        }
+
+        long position = 16;
+        List<String> names = new ArrayList<>(cols);
+        for (int j = 0; j < cols; j++) {
+            int length = readFully(channel, position, 4).getInt(0);
+            if (length < 0 || position + 4 + length > size) {
+                throw new IOException("Invalid header in " + path);
+            }
+            ByteBuffer name = readFully(channel, position + 4, length);
+            names.add(StandardCharsets.UTF_8.decode(name).toString());
+            position += 4 + length;
+        }
+        position = align(position);
+
+        if (cols > 0 && rows * Double.BYTES > (size - position) / cols) {
+            throw new IOException("Truncated column file: " + path);
+        }
+        return new Header(Collections.unmodifiableList(names), rows, position);
+    }
+
+    /**
+     * Build the header for the given column names and number of rows
+     */
+    private static ByteBuffer header(List<String> colNames, int rows) {
+        List<byte[]> encoded = new ArrayList<>(colNames.size());
+        long length = 16;
+        for (String name : colNames) {
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            encoded.add(bytes);
+            length += 4 + bytes.length;
+        }
+        ByteBuffer header = ByteBuffer.allocate((int) align(length)).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(MAGIC);
+        header.putInt(colNames.size());
+        header.putLong(rows);
+        for (byte[] bytes : encoded) {
+            header.putInt(bytes.length);
+            header.put(bytes);
+        }
+        header.clear();
+        return header;
+    }
+
+    /**
+     * Round a position up to the next multiple of eight, so the blocks of values
+     * are aligned to the size of a double
+     */
+    private static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of column file");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
@@ -0,0 +1,232 @@
+import java.util.Arrays;
+
+/**
+ * A column index finds the rows of a column with given values without scanning
+ * the column. It is created with {@link DoubleDataFrame#createHashIndex(String)} or
+ * {@link DoubleDataFrame#createSortedIndex(String)}, kept with the storage of the
+ * data frame, and used by where and select for conditions that compare the indexed
+ * column with a constant.
+ *
+ * A hash index answers equality lookups: it numbers the distinct values of the
+ * column with a {@link DoubleHashTable} and keeps the rows of every value in
+ * ascending order. A sorted index answers equality and range lookups: it keeps the
+ * values of the column in ascending order together with their rows, and finds the
+ * bounds of a range by binary search.
+ *
+ * Setting a value of the column through the data frame updates the index in place,
+ * in time proportional to the number of rows of the old and new value for a hash
+ * index, and to the number of rows for a sorted index. Values are compared like
+ * numbers with ==, so rows holding NaN are never found.
+ *
+ */
+abstract class ColumnIndex {
+
+    ColumnIndex() {
+    }
+
+    /**
+     * Return the rows holding a value
+     *
+     * @param value the value to look up
+     * @return a new array with the rows, in ascending order
+     */
+    abstract int[] equal(double value);
+
+    /**
+     * Return the rows holding a value in a range
+     *
+     * @param low the lower bound of the range
+     * @param lowInclusive whether rows holding the lower bound are included
+     * @param high the upper bound of the range
+     * @param highInclusive whether rows holding the upper bound are included
+     * @return a new array with the rows, in ascending order, or null if this index
+     *         does not support range lookups
+     */
+    abstract int[] range(double low, boolean lowInclusive, double high, boolean highInclusive);
+
+    /**
+     * Record that the value of a row has changed
+     *
+     * @param row the row
+     * @param oldValue the value the row held before
+     * @param newValue the value the row holds now
+     */
+    abstract void update(int row, double oldValue, double newValue);
+
+    /**
+     * Remove a row from a sorted array of rows
+     *
+     * @return the new number of rows
+     */
+    private static int remove(int[] rows, int size, int row) {
+        int position = Arrays.binarySearch(rows, 0, size, row);
+        if (position >= 0) {
+            System.arraycopy(rows, position + 1, rows, position, size - position - 1);
+            size--;
+        }
+        return size;
+    }
+
+    /**
+     * An index that maps every distinct value to its rows
+     */
+    static final class Hash extends ColumnIndex {
+        private final DoubleHashTable table;
+        private int[][] rows;
+        private int[] sizes;
+
+        /**
+         * This constructor indexes the values of a column
+         *
+         * @param values the values of the column, one for every row
+         */
+        Hash(double[] values) {
+            table = new DoubleHashTable(1, 16);
+            rows = new int[16][];
+            sizes = new int[16];
+            for (int row = 0; row < values.length; row++) {
+                add(row, values[row]);
+            }
+        }
+
+        private void add(int row, double value) {
+            if (value != value) {
+                return;
+            }
+            int group = table.add(value);
+            if (group == rows.length) {
+                rows = Arrays.copyOf(rows, group * 2);
+                sizes = Arrays.copyOf(sizes, group * 2);
+            }
+            int[] list = rows[group];
+            int size = sizes[group];
+            if (list == null) {
+                list = new int[2];
+            } else if (size == list.length) {
+                list = Arrays.copyOf(list, size * 2);
+            }
+            // rows are mostly added in ascending order, by the constructor
+            int position = size == 0 || list[size - 1] < row ? size : -Arrays.binarySearch(list, 0, size, row) - 1;
+            System.arraycopy(list, position, list, position + 1, size - position);
+            list[position] = row;
+            rows[group] = list;
+            sizes[group] = size + 1;
+        }
+
+        @Override
+        int[] equal(double value) {
+            int group = value != value ? -1 : table.find(value);
+            return group < 0 ? new int[0] : Arrays.copyOf(rows[group], sizes[group]);
+        }
+
+        @Override
+        int[] range(double low, boolean lowInclusive, double high, boolean highInclusive) {
+            return null;
+        }
+
+        @Override
+        void update(int row, double oldValue, double newValue) {
+            if (oldValue == newValue || (oldValue != oldValue && newValue != newValue)) {
+                return;
+            }
+            if (oldValue == oldValue) {
+                int group = table.find(oldValue);
+                sizes[group] = remove(rows[group], sizes[group], row);
+            }
+            add(row, newValue);
+        }
+    }
+
+    /**
+     * An index that keeps the values of a column in ascending order
+     */
+    static final class Sorted extends ColumnIndex {
+        private double[] values;
+        private int[] rows;
+        private int size;
+
+        /**
+         * This constructor indexes the values of a column
+         *
+         * @param column the values of the column, one for every row
+         */
+        Sorted(double[] column) {
+            int[] order = RowSort.sort(new double[][] { column }, new boolean[] { true }, column.length);
+            values = new double[Math.max(16, column.length)];
+            rows = new int[values.length];
+            for (int row : order) {
+                double value = column[row];
+                if (value != value) {
+                    // NaN values are sorted last
+                    break;
+                }
+                values[size] = value + 0.0;
+                rows[size] = row;
+                size++;
+            }
+        }
+
+        /**
+         * Return the index of the first entry that is not less than a value and row,
+         * ordering entries by value and then by row
+         */
+        private int position(double value, int row) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (values[mid] < value || (values[mid] == value && rows[mid] < row)) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        @Override
+        int[] equal(double value) {
+            return range(value, true, value, true);
+        }
+
+        @Override
+        int[] range(double low, boolean lowInclusive, double high, boolean highInclusive) {
+            if (low != low || high != high) {
+                return new int[0];
+            }
+            int from = position(low, lowInclusive ? Integer.MIN_VALUE : Integer.MAX_VALUE);
+            int to = position(high, highInclusive ? Integer.MAX_VALUE : Integer.MIN_VALUE);
+            if (from >= to) {
+                return new int[0];
+            }
+            int[] result = Arrays.copyOfRange(rows, from, to);
+            Arrays.sort(result);
+            return result;
+        }
+
+        @Override
+        void update(int row, double oldValue, double newValue) {
+            if (oldValue == newValue || (oldValue != oldValue && newValue != newValue)) {
+                return;
+            }
+            if (oldValue == oldValue) {
+                int position = position(oldValue + 0.0, row);
+                System.arraycopy(values, position + 1, values, position, size - position - 1);
+                System.arraycopy(rows, position + 1, rows, position, size - position - 1);
+                size--;
+            }
+            if (newValue == newValue) {
+                if (size == values.length) {
+                    values = Arrays.copyOf(values, size * 2);
+                    rows = Arrays.copyOf(rows, size * 2);
+                }
+                int position = position(newValue + 0.0, row);
+                System.arraycopy(values, position, values, position + 1, size - position);
+                System.arraycopy(rows, position, rows, position + 1, size - position);
+                values[position] = newValue + 0.0;
+                rows[position] = row;
+                size++;
+            }
+        }
+    }
+}
@@ -0,0 +1,222 @@
+/**
+ * Column statistics accumulate the count, sum, mean, minimum, maximum and variance
+ * of a sequence of values in a single pass.
+ *
+ * The sum uses Kahan compensated summation. The mean and variance are maintained
+ * with Welford's method: values are added in blocks, for every block the mean and
+ * the sum of squared deviations are computed in two passes over the block, which is
+ * still in the cache, and the result is merged into the running statistics. Partial
+ * statistics, for example of different chunks of rows, can be merged in the same way.
+ *
+ */
+public class ColumnStatistics {
+    private long count;
+    private double sum;
+    private double compensation;
+    private double mean;
+    private double m2;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+
+    /**
+     * Create statistics from their parts, e.g. as maintained by a {@link ColumnSummary}
+     *
+     * @param count the number of values
+     * @param sum the sum of the values
+     * @param mean the mean of the values
+     * @param m2 the sum of the squared deviations from the mean
+     * @param min the smallest value
+     * @param max the largest value
+     * @return the statistics
+     */
+    static ColumnStatistics of(long count, double sum, double mean, double m2, double min, double max) {
+        ColumnStatistics statistics = new ColumnStatistics();
+        statistics.count = count;
+        statistics.sum = sum;
+        statistics.mean = mean;
+        statistics.m2 = m2;
+        statistics.min = min;
+        statistics.max = max;
+        return statistics;
+    }
+
+    /**
+     * Add a single value to the statistics
+     *
+     * @param value the value to add
+     */
+    public void add(double value) {
+        merge(1, value, value, 0, value, value);
+    }
+
+    /**
+     * Add a range of values from an array to the statistics
+     *
+     * @param values the array holding the values
+     * @param from the index of the first value to add
+     * @param to the index after the last value to add
+     */
+    public void addAll(double[] values, int from, int to) {
+        for (int start = from; start < to; start += Expression.BLOCK_SIZE) {
+            addBlock(values, start, Math.min(to, start + Expression.BLOCK_SIZE));
+        }
+    }
+
+    /**
+     * Add the values of another statistics object to these statistics
+     *
+     * @param other the statistics to add
+     */
+    public void combine(ColumnStatistics other) {
+        if (other.count > 0) {
+            merge(other.count, other.sum - other.compensation, other.mean, other.m2, other.min, other.max);
+        }
+    }
+
+    /**
+     * Add a block of values, small enough to stay in the cache between the passes
+     */
+    private void addBlock(double[] values, int from, int to) {
+        int n = to - from;
+        if (n <= 0) {
+            return;
+        }
+        double blockSum = 0;
+        double blockMin = values[from];
+        double blockMax = values[from];
+        for (int i = from; i < to; i++) {
+            double value = values[i];
+            blockSum += value;
+            blockMin = Math.min(blockMin, value);
+            blockMax = Math.max(blockMax, value);
+        }
+        double blockMean = blockSum / n;
+        double blockM2 = 0;
+        for (int i = from; i < to; i++) {
+            double deviation = values[i] - blockMean;
+            blockM2 += deviation * deviation;
+        }
+        merge(n, blockSum, blockMean, blockM2, blockMin, blockMax);
+    }
+
+    /**
+     * Merge the statistics of a group of values into the running statistics
+     */
+    private void merge(long n, double groupSum, double groupMean, double groupM2, double groupMin, double groupMax) {
+        if (count == 0) {
+            min = groupMin;
+            max = groupMax;
+        } else {
+            min = Math.min(min, groupMin);
+            max = Math.max(max, groupMax);
+        }
+        long total = count + n;
+        double delta = groupMean - mean;
+        mean += delta * n / total;
+        m2 += groupM2 + delta * delta * ((double) count * n / total);
+        count = total;
+
+        double y = groupSum - compensation;
+        double t = sum + y;
+        compensation = (t - sum) - y;
+        sum = t;
+    }
+
+    /**
+     * Return the number of values
+     *
+     * @return the number of values added
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Return the compensated sum of the values
+     *
+     * @return the sum, or 0 if there are no values
+     */
+    public double getSum() {
+        return sum - compensation;
+    }
+
+    /**
+     * Return the mean of the values
+     *
+     * @return the mean, or NaN if there are no values
+     */
+    public double getMean() {
+        return count == 0 ? Double.NaN : mean;
+    }
+
+    /**
+     * Return the smallest value
+     *
+     * @return the minimum, or NaN if there are no values
+     */
+    public double getMin() {
+        return min;
+    }
+
+    /**
+     * Return the largest value
+     *
+     * @return the maximum, or NaN if there are no values
+     */
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * Return the sample variance of the values, which divides by the number of values
+     * minus one
+     *
+     * @return the variance, 0 for a single value or NaN if there are no values
+     */
+    public double getVariance() {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        return count == 1 ? 0 : Math.max(0, m2 / (count - 1));
+    }
+
+    /**
+     * Return the sample standard deviation of the values
+     *
+     * @return the standard deviation, 0 for a single value or NaN if there are no values
+     */
+    public double getStd() {
+        return Math.sqrt(getVariance());
+    }
+
+    /**
+     * Return the value of one of the aggregates
+     *
+     * @param aggregate the aggregate to return
+     * @return the value of the aggregate
+     */
+    public double get(Aggregate aggregate) {
+        switch (aggregate) {
+            case COUNT:
+                return count;
+            case SUM:
+                return getSum();
+            case MEAN:
+                return getMean();
+            case MIN:
+                return getMin();
+            case MAX:
+                return getMax();
+            case VARIANCE:
+                return getVariance();
+            default:
+                return getStd();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + count + ", sum=" + getSum() + ", mean=" + getMean() + ", min=" + min
+                + ", max=" + max + ", std=" + getStd();
+    }
+}
@@ -0,0 +1,131 @@
+import java.util.Arrays;
+
+/**
+ * A column storage keeps the values of a data frame in column-major order: one
+ * contiguous array per column. Column based operations such as aggregations
+ * and projections scan contiguous memory, while retrieving a row has to visit
+ * every column array.
+ *
+ */
+class ColumnStorage extends DoubleStorage {
+    private double[][] columns;
+    private int rows;
+
+    /**
+     * This constructor stores the column arrays of the matrix. The arrays are used
+     * as they are, no copy is made.
+     *
+     * @param columns array that holds one array for every column
+     * @param rows the number of rows, also needed when there are no columns
+     */
+    ColumnStorage(double[][] columns, int rows) {
+        this.columns = columns;
+        this.rows = rows;
+    }
+
+    @Override
+    int rowCount() {
+        return rows;
+    }
+
+    @Override
+    int columnCount() {
+        return columns.length;
+    }
+
+    @Override
+    DoubleDataFrame.Layout layout() {
+        return DoubleDataFrame.Layout.COLUMN_MAJOR;
+    }
+
+    @Override
+    double get(int row, int col) {
+        if (row >= rows) {
+            throw new IndexOutOfBoundsException("Row index " + row + " out of bounds for " + rows + " rows");
+        }
+        return columns[col][row];
+    }
+
+    @Override
+    void set(int row, int col, double value) {
+        beforeWrite();
+        if (row >= rows) {
+            throw new IndexOutOfBoundsException("Row index " + row + " out of bounds for " + rows + " rows");
+        }
+        columns[col][row] = value;
+    }
+
+    @Override
+    double[] column(int col) {
+        return columns[col];
+    }
+
+    @Override
+    double[] row(int row) {
+        double[] values = new double[columns.length];
+        for (int j = 0; j < columns.length; j++) {
+            values[j] = columns[j][row];
+        }
+        return values;
+    }
+
+    @Override
+    void copyColumn(int col, int from, int to, double[] target) {
+        System.arraycopy(columns[col], from, target, 0, to - from);
+    }
+
+    @Override
+    void setColumn(int col, int from, int to, double[] source) {
+        beforeWrite();
+        System.arraycopy(source, 0, columns[col], from, to - from);
+    }
+
+    @Override
+    double[] rowCopy(int row) {
+        return row(row);
+    }
+
+    @Override
+    DoubleStorage expand(int additionalRows, int additionalCols) {
+        double[][] newColumns = new double[columns.length + additionalCols][];
+        for (int j = 0; j < columns.length; j++) {
+            newColumns[j] = Arrays.copyOf(columns[j], rows + additionalRows);
+        }
+        for (int j = columns.length; j < newColumns.length; j++) {
+            newColumns[j] = new double[rows + additionalRows];
+        }
+        return new ColumnStorage(newColumns, rows + additionalRows);
+    }
+
+    @Override
+    DoubleStorage project(int[] retain) {
+        double[][] newColumns = new double[retain.length][];
+        for (int j = 0; j < retain.length; j++) {
+            newColumns[j] = columns[retain[j]].clone();
+        }
+        return new ColumnStorage(newColumns, rows);
+    }
+
+    @Override
+    DoubleStorage select(int[] selected, int count) {
+        double[][] newColumns = new double[columns.length][count];
+        for (int j = 0; j < columns.length; j++) {
+            double[] source = columns[j];
+            double[] target = newColumns[j];
+            for (int i = 0; i < count; i++) {
+                target[i] = source[selected[i]];
+            }
+        }
+        return new ColumnStorage(newColumns, count);
+    }
+
+    @Override
+    DoubleStorage appendColumn(double[] values) {
+        double[][] newColumns = new double[columns.length + 1][];
+        for (int j = 0; j < columns.length; j++) {
+            newColumns[j] = columns[j].clone();
+        }
+        newColumns[columns.length] = values;
+        return new ColumnStorage(newColumns, rows);
+    }
+}
@@ -0,0 +1,222 @@
+/**
+ * A column summary maintains the statistics of a column while its values change, so
+ * they can be read without scanning the column. It is created with
+ * {@link DoubleDataFrame#createSummary(String)} or
+ * {@link DoubleDataFrameBuilder#createSummary(String)}, kept with the storage of the
+ * data frame like a {@link ColumnIndex}, and used by statistics and summarize.
+ *
+ * Setting a value replaces the old value in the summary in constant time. The sum
+ * uses Kahan compensated summation, the mean and variance are derived from the sums
+ * of the values and of their squares, shifted by the first value added, so they stay
+ * accurate when the values are far from zero. The minimum and maximum are updated in
+ * constant time as long as the current extreme is not overwritten by a less extreme
+ * value; then they are recomputed by a scan of the column the next time they are
+ * read.
+ *
+ * Like {@link ColumnStatistics}, a column holding NaN has NaN for its sum, mean,
+ * minimum, maximum and variance. The NaN values are counted, so the other statistics
+ * return once the last NaN is overwritten.
+ *
+ */
+final class ColumnSummary {
+    private long count;
+    private long nanCount;
+    private double sum;
+    private double compensation;
+    private double shift;
+    private double shiftedSum;
+    private double shiftedSquares;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+    private boolean minValid = true;
+    private boolean maxValid = true;
+
+    /**
+     * Return a copy of this summary, which is updated independently
+     *
+     * @return the copy
+     */
+    ColumnSummary copy() {
+        ColumnSummary copy = new ColumnSummary();
+        copy.count = count;
+        copy.nanCount = nanCount;
+        copy.sum = sum;
+        copy.compensation = compensation;
+        copy.shift = shift;
+        copy.shiftedSum = shiftedSum;
+        copy.shiftedSquares = shiftedSquares;
+        copy.min = min;
+        copy.max = max;
+        copy.minValid = minValid;
+        copy.maxValid = maxValid;
+        return copy;
+    }
+
+    /**
+     * Add the value of a new row
+     *
+     * @param value the value
+     */
+    void add(double value) {
+        addRepeated(value, 1);
+    }
+
+    /**
+     * Add the values of new rows from an array
+     *
+     * @param values the array holding the values
+     * @param from the index of the first value to add
+     * @param to the index after the last value to add
+     */
+    void addAll(double[] values, int from, int to) {
+        for (int i = from; i < to; i++) {
+            addRepeated(values[i], 1);
+        }
+    }
+
+    /**
+     * Add the same value for a number of new rows, e.g. the zeros of expanded rows
+     *
+     * @param value the value
+     * @param times the number of rows
+     */
+    void addRepeated(double value, long times) {
+        if (times <= 0) {
+            return;
+        }
+        count += times;
+        if (value != value) {
+            nanCount += times;
+            return;
+        }
+        if (count - nanCount == times) {
+            // the first values that are not NaN
+            shift = value;
+            min = value;
+            max = value;
+            minValid = true;
+            maxValid = true;
+        } else {
+            if (minValid && value < min) {
+                min = value;
+            }
+            if (maxValid && value > max) {
+                max = value;
+            }
+        }
+        accumulate(value, times);
+    }
+
+    /**
+     * Replace the value of a row
+     *
+     * @param oldValue the value the row held before
+     * @param newValue the value the row holds now
+     */
+    void update(double oldValue, double newValue) {
+        if (Double.doubleToLongBits(oldValue) == Double.doubleToLongBits(newValue)) {
+            return;
+        }
+        if (oldValue != oldValue) {
+            nanCount--;
+        } else {
+            accumulate(oldValue, -1);
+            if (oldValue == min && !(newValue <= oldValue)) {
+                minValid = false;
+            }
+            if (oldValue == max && !(newValue >= oldValue)) {
+                maxValid = false;
+            }
+        }
+        if (newValue != newValue) {
+            nanCount++;
+        } else {
+            if (count - nanCount == 1) {
+                shift = newValue;
+                min = newValue;
+                max = newValue;
+                minValid = true;
+                maxValid = true;
+                shiftedSum = 0;
+                shiftedSquares = 0;
+                sum = 0;
+                compensation = 0;
+            } else {
+                if (minValid && newValue < min) {
+                    min = newValue;
+                }
+                if (maxValid && newValue > max) {
+                    max = newValue;
+                }
+            }
+            accumulate(newValue, 1);
+        }
+        if (count == nanCount) {
+            // no values left that are not NaN, start from scratch
+            sum = 0;
+            compensation = 0;
+            shiftedSum = 0;
+            shiftedSquares = 0;
+            min = Double.NaN;
+            max = Double.NaN;
+            minValid = true;
+            maxValid = true;
+        }
+    }
+
+    /**
+     * Add a value that is not NaN a number of times, or remove it once for times -1
+     */
+    private void accumulate(double value, long times) {
+        double y = value * times - compensation;
+        double t = sum + y;
+        compensation = (t - sum) - y;
+        sum = t;
+        double deviation = value - shift;
+        shiftedSum += deviation * times;
+        shiftedSquares += deviation * deviation * times;
+    }
+
+    /**
+     * Return the statistics of the column, recomputing the minimum or maximum if the
+     * current extreme was overwritten
+     *
+     * @param storage the storage holding the column
+     * @param col the index of the column
+     * @return the statistics of the column
+     */
+    ColumnStatistics statistics(DoubleStorage storage, int col) {
+        if (nanCount > 0) {
+            double nan = Double.NaN;
+            return ColumnStatistics.of(count, nan, nan, nan, nan, nan);
+        }
+        if (count == 0) {
+            return new ColumnStatistics();
+        }
+        if (!minValid || !maxValid) {
+            scanExtremes(storage, col);
+        }
+        double mean = shiftedSum / count;
+        double m2 = Math.max(0, shiftedSquares - shiftedSum * mean);
+        return ColumnStatistics.of(count, sum - compensation, shift + mean, m2, min, max);
+    }
+
+    private void scanExtremes(DoubleStorage storage, int col) {
+        int rows = storage.rowCount();
+        double[] buffer = new double[Math.min(Expression.BLOCK_SIZE, rows)];
+        double newMin = Double.POSITIVE_INFINITY;
+        double newMax = Double.NEGATIVE_INFINITY;
+        for (int start = 0; start < rows; start += buffer.length) {
+            int end = Math.min(rows, start + buffer.length);
+            storage.copyColumn(col, start, end, buffer);
+            for (int i = 0; i < end - start; i++) {
+                newMin = Math.min(newMin, buffer[i]);
+                newMax = Math.max(newMax, buffer[i]);
+            }
+        }
+        min = newMin;
+        max = newMax;
+        minValid = true;
+        maxValid = true;
+    }
+}
@@ -0,0 +1,500 @@
+import java.util.Objects;
+
+/**
+ * A condition describes a test on the columns of a row, such as
+ * {@code Expression.col("year").gt(2016)}. Conditions are created by comparing
+ * expressions and combined with and, or and not.
+ *
+ * Like an expression, a condition is compiled by the data frame into loops over
+ * blocks of primitive column values. The result of every comparison is packed
+ * into a bitmap with one bit per row, and combining conditions combines the
+ * bitmaps 64 rows at a time. Evaluating a condition with
+ * {@link DoubleDataFrame#where(Condition)} produces a {@link RowBitmap}.
+ *
+ * Comparisons follow the rules of Java for doubles: a comparison with NaN is
+ * false, except for ne, which is true.
+ *
+ */
+public abstract class Condition {
+
+    /**
+     * The operations that compare two values
+     */
+    enum CompareOp {
+        GT(">"), GE(">="), LT("<"), LE("<="), EQ("=="), NE("!=");
+
+        private final String symbol;
+
+        CompareOp(String symbol) {
+            this.symbol = symbol;
+        }
+
+        /**
+         * Return the operation that gives the same result with the operands swapped
+         */
+        CompareOp swapped() {
+            switch (this) {
+                case GT:
+                    return LT;
+                case GE:
+                    return LE;
+                case LT:
+                    return GT;
+                case LE:
+                    return GE;
+                default:
+                    return this;
+            }
+        }
+    }
+
+    Condition() {
+    }
+
+    /**
+     * Create a condition that holds when both this condition and another condition hold
+     *
+     * @param other the other condition
+     * @return the combined condition
+     */
+    public Condition and(Condition other) {
+        return new Combined(true, this, other);
+    }
+
+    /**
+     * Create a condition that holds when this condition or another condition holds
+     *
+     * @param other the other condition
+     * @return the combined condition
+     */
+    public Condition or(Condition other) {
+        return new Combined(false, this, other);
+    }
+
+    /**
+     * Create a condition that holds when this condition does not hold
+     *
+     * @return the negated condition
+     */
+    public Condition not() {
+        return new Not(this);
+    }
+
+    /**
+     * Compile this condition for the columns of a schema. The resulting kernel holds
+     * its own buffers, so it must only be used by a single thread.
+     *
+     * @param schema the schema used to look up the column names
+     * @return the compiled condition
+     * @throws IllegalArgumentException if the condition refers to a column that does not exist
+     */
+    abstract Kernel compile(Schema schema) throws IllegalArgumentException;
+
+    /**
+     * Evaluate this condition with the column indexes of a storage, without reading
+     * the values of the rows. This is possible when every comparison in the condition
+     * compares a column that has a suitable index with a constant.
+     *
+     * @param schema the schema with the names of the columns of the storage
+     * @param storage the storage that holds the indexes
+     * @return the rows for which the condition holds, or null if the indexes cannot
+     *         answer the condition
+     */
+    RowBitmap evaluateIndexed(Schema schema, DoubleStorage storage) {
+        return null;
+    }
+
+    /**
+     * Return the index of a column of a storage
+     *
+     * @return the index, or null if the column does not exist or has no index
+     */
+    static ColumnIndex index(Schema schema, DoubleStorage storage, String name) {
+        int col = name == null ? -1 : schema.indexOf(name);
+        return col < 0 ? null : storage.index(col);
+    }
+
+    /**
+     * Evaluate this condition for a range of rows of a storage. The range has to start
+     * at a multiple of 64, so every block of rows fills whole words of the bitmap.
+     *
+     * @param schema the schema with the names of the columns of the storage
+     * @param storage the storage that holds the values of the columns
+     * @param words the words of the bitmap, indexed from the first row of the storage
+     * @param from the index of the first row to evaluate, a multiple of 64
+     * @param to the index after the last row to evaluate
+     * @throws IllegalArgumentException if the condition refers to a column that does not exist
+     */
+    void evaluate(Schema schema, DoubleStorage storage, long[] words, int from, int to)
+            throws IllegalArgumentException {
+        Kernel kernel = compile(schema);
+        long[] block = new long[Expression.BLOCK_SIZE / 64];
+        for (int start = from; start < to; start += Expression.BLOCK_SIZE) {
+            int length = Math.min(Expression.BLOCK_SIZE, to - start);
+            kernel.evaluate(storage, start, length, block);
+            System.arraycopy(block, 0, words, start >>> 6, RowBitmap.wordCount(length));
+        }
+    }
+
+    /**
+     * A condition compiled against a schema, that evaluates blocks of rows
+     */
+    abstract static class Kernel {
+
+        /**
+         * Evaluate the condition for a block of rows
+         *
+         * @param storage the storage that holds the values of the columns
+         * @param from the index of the first row of the block
+         * @param length the number of rows in the block, at most BLOCK_SIZE
+         * @param out the words that receive one bit per row, starting at index 0; the
+         *            bits after the last row of the block are cleared
+         */
+        abstract void evaluate(DoubleStorage storage, int from, int length, long[] out);
+    }
+
+    /**
+     * A comparison of two expressions
+     */
+    static final class Comparison extends Condition {
+        private final CompareOp op;
+        private final Expression left;
+        private final Expression right;
+
+        Comparison(CompareOp op, Expression left, Expression right) {
+            this.op = op;
+            this.left = Objects.requireNonNull(left);
+            this.right = Objects.requireNonNull(right);
+        }
+
+        @Override
+        Kernel compile(Schema schema) {
+            Expression.Kernel l = left.compile(schema);
+            Expression.Kernel r = right.compile(schema);
+            double[] a = new double[Expression.BLOCK_SIZE];
+            if (r.isConstant()) {
+                double value = r.constant();
+                return new Kernel() {
+                    @Override
+                    void evaluate(DoubleStorage storage, int from, int length, long[] out) {
+                        l.evaluate(storage, from, length, a);
+                        compare(op, a, value, length, out);
+                    }
+                };
+            }
+            double[] b = new double[Expression.BLOCK_SIZE];
+            return new Kernel() {
+                @Override
+                void evaluate(DoubleStorage storage, int from, int length, long[] out) {
+                    l.evaluate(storage, from, length, a);
+                    r.evaluate(storage, from, length, b);
+                    compare(op, a, b, length, out);
+                }
+            };
+        }
+
+        @Override
+        RowBitmap evaluateIndexed(Schema schema, DoubleStorage storage) {
+            Expression column = left;
+            Expression constant = right;
+            CompareOp compareOp = op;
+            if (left.isLiteral()) {
+                column = right;
+                constant = left;
+                compareOp = op.swapped();
+            }
+            ColumnIndex index = index(schema, storage, column.columnName());
+            if (index == null || !constant.isLiteral()) {
+                return null;
+            }
+            double value = constant.literal();
+            int[] rows;
+            switch (compareOp) {
+                case GT:
+                    rows = index.range(value, false, Double.POSITIVE_INFINITY, true);
+                    break;
+                case GE:
+                    rows = index.range(value, true, Double.POSITIVE_INFINITY, true);
+                    break;
+                case LT:
+                    rows = index.range(Double.NEGATIVE_INFINITY, true, value, false);
+                    break;
+                case LE:
+                    rows = index.range(Double.NEGATIVE_INFINITY, true, value, true);
+                    break;
+                case EQ:
+                    rows = index.equal(value);
+                    break;
+                default:
+                    // rows holding NaN are not equal to any value, so they are in the complement
+                    return RowBitmap.of(storage.rowCount(), index.equal(value)).not();
+            }
+            return rows == null ? null : RowBitmap.of(storage.rowCount(), rows);
+        }
+
+        @Override
+        public String toString() {
+            return left + " " + op.symbol + " " + right;
+        }
+    }
+
+    /**
+     * A test whether an expression lies between two bounds, both inclusive
+     */
+    static final class Between extends Condition {
+        private final Expression child;
+        private final double low;
+        private final double high;
+
+        Between(Expression child, double low, double high) {
+            this.child = Objects.requireNonNull(child);
+            this.low = low;
+            this.high = high;
+        }
+
+        @Override
+        Kernel compile(Schema schema) {
+            Expression.Kernel c = child.compile(schema);
+            double[] a = new double[Expression.BLOCK_SIZE];
+            return new Kernel() {
+                @Override
+                void evaluate(DoubleStorage storage, int from, int length, long[] out) {
+                    c.evaluate(storage, from, length, a);
+                    for (int w = 0; w < RowBitmap.wordCount(length); w++) {
+                        int start = w << 6;
+                        int end = Math.min(length, start + 64);
+                        long bits = 0;
+                        for (int i = start; i < end; i++) {
+                            bits |= (a[i] >= low && a[i] <= high ? 1L : 0L) << i;
+                        }
+                        out[w] = bits;
+                    }
+                }
+            };
+        }
+
+        @Override
+        RowBitmap evaluateIndexed(Schema schema, DoubleStorage storage) {
+            ColumnIndex index = index(schema, storage, child.columnName());
+            int[] rows = index == null ? null : index.range(low, true, high, true);
+            return rows == null ? null : RowBitmap.of(storage.rowCount(), rows);
+        }
+
+        @Override
+        public String toString() {
+            return low + " <= " + child + " <= " + high;
+        }
+    }
+
+    /**
+     * A test whether an expression is NaN
+     */
+    static final class IsNaN extends Condition {
+        private final Expression child;
+
+        IsNaN(Expression child) {
+            this.child = Objects.requireNonNull(child);
+        }
+
+        @Override
+        Kernel compile(Schema schema) {
+            Expression.Kernel c = child.compile(schema);
+            double[] a = new double[Expression.BLOCK_SIZE];
+            return new Kernel() {
+                @Override
+                void evaluate(DoubleStorage storage, int from, int length, long[] out) {
+                    c.evaluate(storage, from, length, a);
+                    for (int w = 0; w < RowBitmap.wordCount(length); w++) {
+                        int start = w << 6;
+                        int end = Math.min(length, start + 64);
+                        long bits = 0;
+                        for (int i = start; i < end; i++) {
+                            bits |= (a[i] != a[i] ? 1L : 0L) << i;
+                        }
+                        out[w] = bits;
+                    }
+                }
+            };
+        }
+
+        @Override
+        public String toString() {
+            return "isNaN(" + child + ")";
+        }
+    }
+
+    private static final class Combined extends Condition {
+        private final boolean and;
+        private final Condition left;
+        private final Condition right;
+
+        Combined(boolean and, Condition left, Condition right) {
+            this.and = and;
+            this.left = Objects.requireNonNull(left);
+            this.right = Objects.requireNonNull(right);
+        }
+
+        @Override
+        Kernel compile(Schema schema) {
+            Kernel l = left.compile(schema);
+            Kernel r = right.compile(schema);
+            long[] buffer = new long[Expression.BLOCK_SIZE / 64];
+            return new Kernel() {
+                @Override
+                void evaluate(DoubleStorage storage, int from, int length, long[] out) {
+                    l.evaluate(storage, from, length, out);
+                    r.evaluate(storage, from, length, buffer);
+                    int words = RowBitmap.wordCount(length);
+                    if (and) {
+                        for (int w = 0; w < words; w++) {
+                            out[w] &= buffer[w];
+                        }
+                    } else {
+                        for (int w = 0; w < words; w++) {
+                            out[w] |= buffer[w];
+                        }
+                    }
+                }
+            };
+        }
+
+        @Override
+        RowBitmap evaluateIndexed(Schema schema, DoubleStorage storage) {
+            RowBitmap l = left.evaluateIndexed(schema, storage);
+            RowBitmap r = l == null ? null : right.evaluateIndexed(schema, storage);
+            if (r == null) {
+                return null;
+            }
+            return and ? l.and(r) : l.or(r);
+        }
+
+        @Override
+        public String toString() {
+            return "(" + left + (and ? " and " : " or ") + right + ")";
+        }
+    }
+
+    private static final class Not extends Condition {
+        private final Condition child;
+
+        Not(Condition child) {
+            this.child = Objects.requireNonNull(child);
+        }
+
+        @Override
+        Kernel compile(Schema schema) {
+            Kernel c = child.compile(schema);
+            return new Kernel() {
+                @Override
+                void evaluate(DoubleStorage storage, int from, int length, long[] out) {
+                    c.evaluate(storage, from, length, out);
+                    int words = RowBitmap.wordCount(length);
+                    for (int w = 0; w < words; w++) {
+                        out[w] = ~out[w];
+                    }
+                    if ((length & 63) != 0) {
+                        out[words - 1] &= (1L << length) - 1;
+                    }
+                }
+            };
+        }
+
+        @Override
+        RowBitmap evaluateIndexed(Schema schema, DoubleStorage storage) {
+            RowBitmap rows = child.evaluateIndexed(schema, storage);
+            return rows == null ? null : rows.not();
+        }
+
+        @Override
+        public String toString() {
+            return "not(" + child + ")";
+        }
+    }
+
+    /**
+     * Compare a block of values with a constant and pack the results into words.
+     * Every operation has its own loop, so that each loop stays simple.
+     */
+    private static void compare(CompareOp op, double[] a, double b, int length, long[] out) {
+        for (int w = 0; w < RowBitmap.wordCount(length); w++) {
+            int start = w << 6;
+            int end = Math.min(length, start + 64);
+            long bits = 0;
+            switch (op) {
+                case GT:
+                    for (int i = start; i < end; i++) {
+                        bits |= (a[i] > b ? 1L : 0L) << i;
+                    }
+                    break;
+                case GE:
+                    for (int i = start; i < end; i++) {
+                        bits |= (a[i] >= b ? 1L : 0L) << i;
+                    }
+                    break;
+                case LT:
+                    for (int i = start; i < end; i++) {
+                        bits |= (a[i] < b ? 1L : 0L) << i;
+                    }
+                    break;
+                case LE:
+                    for (int i = start; i < end; i++) {
+                        bits |= (a[i] <= b ? 1L : 0L) << i;
+                    }
+                    break;
+                case EQ:
+                    for (int i = start; i < end; i++) {
+                        bits |= (a[i] == b ? 1L : 0L) << i;
+                    }
+                    break;
+                default:
+                    for (int i = start; i < end; i++) {
+                        bits |= (a[i] != b ? 1L : 0L) << i;
+                    }
+            }
+            out[w] = bits;
+        }
+    }
+
+    /**
+     * Compare two blocks of values and pack the results into words
+     */
+    private static void compare(CompareOp op, double[] a, double[] b, int length, long[] out) {
+        for (int w = 0; w < RowBitmap.wordCount(length); w++) {
+            int start = w << 6;
+            int end = Math.min(length, start + 64);
+            long bits = 0;
+            switch (op) {
+                case GT:
+                    for (int i = start; i < end; i++) {
+                        bits |= (a[i] > b[i] ? 1L : 0L) << i;
+                    }
+                    break;
+                case GE:
+                    for (int i = start; i < end; i++) {
+                        bits |= (a[i] >= b[i] ? 1L : 0L) << i;
+                    }
+                    break;
+                case LT:
+                    for (int i = start; i < end; i++) {
+                        bits |= (a[i] < b[i] ? 1L : 0L) << i;
+                    }
+                    break;
+                case LE:
+                    for (int i = start; i < end; i++) {
+                        bits |= (a[i] <= b[i] ? 1L : 0L) << i;
+                    }
+                    break;
+                case EQ:
+                    for (int i = start; i < end; i++) {
+                        bits |= (a[i] == b[i] ? 1L : 0L) << i;
+                    }
+                    break;
+                default:
+                    for (int i = start; i < end; i++) {
+                        bits |= (a[i] != b[i] ? 1L : 0L) << i;
+                    }
+            }
+            out[w] = bits;
+        }
+    }
+}
@@ -0,0 +1,551 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * A CSV reader builds a column-major DoubleDataFrame from a file with comma (or
+ * otherwise) separated numbers. The first line holds the names of the columns,
+ * every following line holds the values of one row.
+ *
+ * The file is memory-mapped and the numbers are parsed directly from the bytes
+ * into growing primitive column buffers, so no String is created for a line or a
+ * cell. Numbers with at most 19 significant digits, which covers the full precision
+ * of a double, are converted exactly by {@link DecimalConversion} without calling
+ * Double.parseDouble; other numbers fall back to it. An empty cell and a
+ * missing cell at the end of a line are read as NaN.
+ *
+ * The data is split into segments at line boundaries. Every segment is parsed on
+ * its own, in parallel when a ForkJoinPool is provided, and the segments are
+ * concatenated in file order. Values cannot contain line breaks. Files that do
+ * not fit in memory are read as a {@link ChunkSource} with stream, which parses
+ * one segment at a time into a buffer that is reused.
+ *
+ */
+public class CsvReader {
+
+    /**
+     * The number of bytes in a segment of the file that is parsed as a whole
+     */
+    static final int SEGMENT_SIZE = 32 << 20;
+
+    private final char separator;
+
+    /**
+     * This constructor creates a reader for comma separated values
+     */
+    public CsvReader() {
+        this(',');
+    }
+
+    /**
+     * This constructor creates a reader for values separated by a given character
+     *
+     * @param separator the character that separates the values on a line
+     */
+    public CsvReader(char separator) {
+        this.separator = separator;
+    }
+
+    /**
+     * The columns parsed from one segment of the file
+     */
+    private static final class Segment {
+        private final DoubleColumnBuffer[] columns;
+        private final int rows;
+
+        Segment(DoubleColumnBuffer[] columns, int rows) {
+            this.columns = columns;
+            this.rows = rows;
+        }
+    }
+
+    /**
+     * Read a data frame from a file, parsing the segments one after the other
+     *
+     * @param path the file to read
+     * @return a column-major data frame with the values of the file
+     * @throws IOException if the file cannot be read or holds an invalid value
+     */
+    public DoubleDataFrame read(Path path) throws IOException {
+        return read(path, null);
+    }
+
+    /**
+     * Read a data frame from a file, parsing the segments in parallel
+     *
+     * @param path the file to read
+     * @param pool the pool that parses the segments, or null to parse them on the
+     *             calling thread
+     * @return a column-major data frame with the values of the file
+     * @throws IOException if the file cannot be read or holds an invalid value
+     */
+    public DoubleDataFrame read(Path path, ForkJoinPool pool) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long dataStart = nextLine(channel, 0, size);
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, dataStart);
+            List<String> names = parseHeader(header);
+
+            List<Long> boundaries = new ArrayList<>();
+            boundaries.add(dataStart);
+            for (long nominal = dataStart + SEGMENT_SIZE; nominal < size; nominal += SEGMENT_SIZE) {
+                long boundary = nextLine(channel, Math.max(nominal, boundaries.get(boundaries.size() - 1)), size);
+                if (boundary >= size) {
+                    break;
+                }
+                boundaries.add(boundary);
+            }
+            boundaries.add(size);
+
+            List<Callable<Segment>> tasks = new ArrayList<>();
+            for (int k = 0; k + 1 < boundaries.size(); k++) {
+                long from = boundaries.get(k);
+                long to = boundaries.get(k + 1);
+                tasks.add(() -> parse(channel.map(FileChannel.MapMode.READ_ONLY, from, to - from), names.size(), from));
+            }
+            List<Segment> segments = new ArrayList<>(tasks.size());
+            if (pool == null || tasks.size() == 1) {
+                for (Callable<Segment> task : tasks) {
+                    segments.add(call(task));
+                }
+            } else {
+                for (Future<Segment> future : pool.invokeAll(tasks)) {
+                    segments.add(get(future));
+                }
+            }
+            return merge(names, segments);
+        }
+    }
+
+    /**
+     * Open a file as a source of chunks, for files that are too large to be read as a
+     * whole. Chunks are parsed one after the other from segments of about
+     * {@link #SEGMENT_SIZE} bytes.
+     *
+     * @param path the file to read
+     * @return a source that reads the file in chunks, which has to be closed
+     * @throws IOException if the file cannot be opened
+     */
+    public ChunkSource stream(Path path) throws IOException {
+        return stream(path, SEGMENT_SIZE);
+    }
+
+    /**
+     * Open a file as a source of chunks. Every chunk holds the complete lines of a
+     * segment of the file of the given number of bytes, so the number of rows in a
+     * chunk depends on the length of the lines. A segment grows when a single line
+     * does not fit in it.
+     *
+     * @param path the file to read
+     * @param chunkBytes the number of bytes of the file that are parsed into a chunk
+     * @return a source that reads the file in chunks, which has to be closed
+     * @throws IOException if the file cannot be opened
+     * @throws IllegalArgumentException if the number of bytes is not positive
+     */
+    public ChunkSource stream(Path path, int chunkBytes) throws IOException, IllegalArgumentException {
+        if (chunkBytes <= 0) {
+            throw new IllegalArgumentException("The number of bytes in a chunk should be positive: " + chunkBytes);
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            long dataStart = nextLine(channel, 0, size);
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, dataStart);
+            return new Chunks(channel, parseHeader(header), dataStart, chunkBytes);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * The chunks of a file, read sequentially into a buffer that is reused. The bytes
+     * after the last line break of the buffer are moved to its start and completed by
+     * the next read.
+     */
+    private final class Chunks implements ChunkSource {
+        private final FileChannel channel;
+        private final List<String> names;
+        private final long size;
+        private ByteBuffer buffer;
+        private long position;
+        private long offset;
+
+        Chunks(FileChannel channel, List<String> names, long dataStart, int chunkBytes) throws IOException {
+            this.channel = channel;
+            this.names = Collections.unmodifiableList(names);
+            this.size = channel.size();
+            this.buffer = ByteBuffer.allocate((int) Math.min(chunkBytes, Math.max(1, size - dataStart)));
+            this.position = dataStart;
+            this.offset = dataStart;
+        }
+
+        @Override
+        public List<String> getColumnNames() {
+            return names;
+        }
+
+        @Override
+        public DoubleDataFrame nextChunk() throws IOException {
+            int end;
+            while (true) {
+                while (buffer.hasRemaining() && position < size) {
+                    int read = channel.read(buffer, position);
+                    if (read < 0) {
+                        break;
+                    }
+                    position += read;
+                }
+                if (buffer.position() == 0) {
+                    return null;
+                }
+                end = buffer.position();
+                if (position < size) {
+                    while (end > 0 && buffer.get(end - 1) != '\n') {
+                        end--;
+                    }
+                }
+                if (end > 0) {
+                    break;
+                }
+                // a single line fills the buffer
+                ByteBuffer larger = ByteBuffer.allocate((int) Math.min(Integer.MAX_VALUE - 8, buffer.capacity() * 2L));
+                if (larger.capacity() == buffer.capacity()) {
+                    throw new IOException("Line too long at byte " + offset);
+                }
+                buffer.flip();
+                buffer = larger.put(buffer);
+            }
+            ByteBuffer data = buffer.duplicate();
+            data.flip().limit(end);
+            Segment segment = parse(data, names.size(), offset);
+            List<Segment> segments = new ArrayList<>(1);
+            segments.add(segment);
+            DoubleDataFrame chunk = merge(names, segments);
+
+            buffer.flip().position(end);
+            buffer.compact();
+            offset += end;
+            return chunk;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * Read a data frame from the bytes of a buffer, between its position and its limit
+     *
+     * @param buffer the buffer holding the header line and the lines with values
+     * @return a column-major data frame with the values of the buffer
+     * @throws IOException if the buffer holds an invalid value
+     */
+    public DoubleDataFrame read(ByteBuffer buffer) throws IOException {
+        int end = buffer.position();
+        while (end < buffer.limit() && buffer.get(end) != '\n') {
+            end++;
+        }
+        ByteBuffer header = buffer.duplicate();
+        header.limit(end);
+        List<String> names = parseHeader(header);
+        ByteBuffer data = buffer.duplicate();
+        data.position(Math.min(end + 1, buffer.limit()));
+        List<Segment> segments = new ArrayList<>();
+        segments.add(parse(data.slice(), names.size(), data.position()));
+        return merge(names, segments);
+    }
+
+    /**
+     * Find the start of the line after a given position
+     *
+     * @param channel the channel of the file
+     * @param position the position from which the end of the line is searched
+     * @param size the size of the file
+     * @return the position after the next line break, or the size of the file
+     * @throws IOException if the file cannot be read
+     */
+    private static long nextLine(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    /**
+     * Split the header line in column names. Names may be surrounded by double quotes.
+     *
+     * @param header the bytes of the header line
+     * @return the names of the columns
+     */
+    private List<String> parseHeader(ByteBuffer header) {
+        byte[] bytes = new byte[header.remaining()];
+        header.duplicate().get(bytes);
+        String line = new String(bytes, StandardCharsets.UTF_8);
+        if (line.startsWith("\uFEFF")) {
+            line = line.substring(1);
+        }
+        List<String> names = new ArrayList<>();
+        StringBuilder name = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                if (quoted && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    name.append('"');
+                    i++;
+                } else {
+                    quoted = !quoted;
+                }
+            } else if (c == separator && !quoted) {
+                names.add(name.toString().trim());
+                name.setLength(0);
+            } else if (c != '\r' && c != '\n') {
+                name.append(c);
+            }
+        }
+        if (name.length() > 0 || !names.isEmpty()) {
+            names.add(name.toString().trim());
+        }
+        return names;
+    }
+
+    /**
+     * Parse the lines of a segment into column buffers
+     *
+     * @param buffer the bytes of the segment, which starts at the beginning of a line
+     * @param cols the number of columns
+     * @param offset the position of the segment in the file, used in error messages
+     * @return the parsed columns
+     * @throws IOException if a line holds too many values or an invalid value
+     */
+    private Segment parse(ByteBuffer buffer, int cols, long offset) throws IOException {
+        int limit = buffer.limit();
+        DoubleColumnBuffer[] columns = new DoubleColumnBuffer[cols];
+        int estimate = cols == 0 ? 16 : (int) Math.min(Integer.MAX_VALUE - 8, Math.max(16, limit / (cols * 8L)));
+        for (int j = 0; j < cols; j++) {
+            columns[j] = new DoubleColumnBuffer(estimate);
+        }
+        int rows = 0;
+        int pos = buffer.position();
+        while (pos < limit) {
+            byte b = buffer.get(pos);
+            if (b == '\n' || b == '\r') {
+                pos++;
+                continue;
+            }
+            int col = 0;
+            while (true) {
+                int end = pos;
+                while (end < limit) {
+                    byte c = buffer.get(end);
+                    if (c == separator || c == '\n' || c == '\r') {
+                        break;
+                    }
+                    end++;
+                }
+                if (col == cols) {
+                    throw new IOException("Too many values on the line at byte " + (offset + pos));
+                }
+                columns[col++].add(parseDouble(buffer, pos, end, offset));
+                if (end >= limit || buffer.get(end) != separator) {
+                    pos = end;
+                    break;
+                }
+                pos = end + 1;
+            }
+            for (; col < cols; col++) {
+                columns[col].add(Double.NaN);
+            }
+            rows++;
+        }
+        return new Segment(columns, rows);
+    }
+
+    /**
+     * Parse a number from a range of bytes
+     *
+     * @param buffer the buffer holding the bytes
+     * @param from the index of the first byte of the number
+     * @param to the index after the last byte of the number
+     * @param offset the position of the buffer in the file, used in error messages
+     * @return the parsed number, or NaN for an empty range
+     * @throws IOException if the bytes do not hold a number
+     */
+    static double parseDouble(ByteBuffer buffer, int from, int to, long offset) throws IOException {
+        while (from < to && (buffer.get(from) == ' ' || buffer.get(from) == '"')) {
+            from++;
+        }
+        while (to > from && (buffer.get(to - 1) == ' ' || buffer.get(to - 1) == '"')) {
+            to--;
+        }
+        if (from == to) {
+            return Double.NaN;
+        }
+        int i = from;
+        boolean negative = false;
+        byte c = buffer.get(i);
+        if (c == '-' || c == '+') {
+            negative = c == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean anyDigit = false;
+        while (i < to && (c = buffer.get(i)) >= '0' && c <= '9') {
+            anyDigit = true;
+            if (mantissa != 0 || c != '0') {
+                if (digits < 19) {
+                    mantissa = mantissa * 10 + (c - '0');
+                } else {
+                    exponent++;
+                }
+                digits++;
+            }
+            i++;
+        }
+        if (i < to && buffer.get(i) == '.') {
+            i++;
+            while (i < to && (c = buffer.get(i)) >= '0' && c <= '9') {
+                anyDigit = true;
+                if (mantissa != 0 || c != '0') {
+                    if (digits < 19) {
+                        mantissa = mantissa * 10 + (c - '0');
+                        exponent--;
+                    }
+                    digits++;
+                } else {
+                    exponent--;
+                }
+                i++;
+            }
+        }
+        if (anyDigit && i < to && ((c = buffer.get(i)) == 'e' || c == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < to && ((c = buffer.get(i)) == '-' || c == '+')) {
+                negativeExponent = c == '-';
+                i++;
+            }
+            int value = 0;
+            boolean anyExponentDigit = false;
+            while (i < to && (c = buffer.get(i)) >= '0' && c <= '9') {
+                anyExponentDigit = true;
+                value = Math.min(100000, value * 10 + (c - '0'));
+                i++;
+            }
+            anyDigit = anyExponentDigit;
+            exponent += negativeExponent ? -value : value;
+        }
+        if (anyDigit && i == to && digits <= 19) {
+            double value = DecimalConversion.toDouble(mantissa, exponent, negative);
+            if (!Double.isNaN(value)) {
+                return value;
+            }
+        }
+        return parseSlow(buffer, from, to, offset);
+    }
+
+    /**
+     * Parse a number that cannot be converted exactly by the fast path
+     */
+    private static double parseSlow(ByteBuffer buffer, int from, int to, long offset) throws IOException {
+        byte[] bytes = new byte[to - from];
+        for (int k = 0; k < bytes.length; k++) {
+            bytes[k] = buffer.get(from + k);
+        }
+        String text = new String(bytes, StandardCharsets.ISO_8859_1);
+        try {
+            return Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid number '" + text + "' at byte " + (offset + from), e);
+        }
+    }
+
+    /**
+     * Concatenate the columns of the segments into a data frame
+     *
+     * @param names the names of the columns
+     * @param segments the parsed segments, in file order
+     * @return a column-major data frame
+     */
+    private static DoubleDataFrame merge(List<String> names, List<Segment> segments) {
+        long total = 0;
+        for (Segment segment : segments) {
+            total += segment.rows;
+        }
+        if (total > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many rows for a data frame: " + total);
+        }
+        int rows = (int) total;
+        double[][] columns = new double[names.size()][];
+        for (int j = 0; j < columns.length; j++) {
+            if (segments.size() == 1) {
+                columns[j] = segments.get(0).columns[j].toArray();
+                continue;
+            }
+            columns[j] = new double[rows];
+            int offset = 0;
+            for (Segment segment : segments) {
+                System.arraycopy(segment.columns[j].array(), 0, columns[j], offset, segment.rows);
+                offset += segment.rows;
+            }
+        }
+        return DoubleDataFrame.fromColumns(names, columns);
+    }
+
+    private static Segment call(Callable<Segment> task) throws IOException {
+        try {
+            return task.call();
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static Segment get(Future<Segment> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * A CSV writer streams the contents of a data frame to a file or a Writer in the
+ * format read by {@link CsvReader}: a header line with the column names followed
+ * by one line per row.
+ *
+ * The output is produced row by row through a small reusable buffer, so the
+ * memory used does not depend on the size of the data frame. The values are
+ * written with a representation that reads back to the same double.
+ *
+ */
+public class CsvWriter {
+
+    /**
+     * The number of characters collected before they are handed to the Writer
+     */
+    private static final int FLUSH_SIZE = 1 << 16;
+
+    private final char separator;
+
+    /**
+     * This constructor creates a writer for comma separated values
+     */
+    public CsvWriter() {
+        this(',');
+    }
+
+    /**
+     * This constructor creates a writer for values separated by a given character
+     *
+     * @param separator the character that separates the values on a line
+     */
+    public CsvWriter(char separator) {
+        this.separator = separator;
+    }
+
+    /**
+     * Write a data frame to a file, replacing the file if it exists
+     *
+     * @param df the data frame to write
+     * @param path the file to write to
+     * @throws IOException if the file cannot be written
+     */
+    public void write(DataFrame<Double> df, Path path) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            write(df, writer);
+        }
+    }
+
+    /**
+     * Write a data frame to a Writer, which is not closed afterwards
+     *
+     * @param df the data frame to write
+     * @param writer the writer to write to
+     * @throws IOException if the writer fails
+     */
+    public void write(DataFrame<Double> df, Writer writer) throws IOException {
+        StringBuilder sb = new StringBuilder(FLUSH_SIZE + 1024);
+        List<String> colNames = df.getColumnNames();
+        for (int j = 0; j < colNames.size(); j++) {
+            if (j > 0) {
+                sb.append(separator);
+            }
+            appendName(sb, colNames.get(j));
+        }
+        sb.append('\n');
+        DoubleStorage storage = df instanceof DoubleDataFrame ? ((DoubleDataFrame) df).storage() : null;
+        for (int i = 0; i < df.getRowCount(); i++) {
+            for (int j = 0; j < colNames.size(); j++) {
+                if (j > 0) {
+                    sb.append(separator);
+                }
+                double value = storage != null ? storage.get(i, j) : df.getValue(i, colNames.get(j));
+                if (!Double.isNaN(value)) {
+                    sb.append(value);
+                }
+            }
+            sb.append('\n');
+            if (sb.length() >= FLUSH_SIZE) {
+                writer.append(sb);
+                sb.setLength(0);
+            }
+        }
+        writer.append(sb);
+        writer.flush();
+    }
+
+    /**
+     * Append a column name, quoted when it holds a separator, a quote or a line break
+     */
+    private void appendName(StringBuilder sb, String name) {
+        boolean quote = name.indexOf(separator) >= 0 || name.indexOf('"') >= 0
+                || name.indexOf('\n') >= 0 || name.indexOf('\r') >= 0;
+        if (!quote) {
+            sb.append(name);
+            return;
+        }
+        sb.append('"').append(name.replace("\"", "\"\"")).append('"');
+    }
+}
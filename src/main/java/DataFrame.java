@@ -1,3 +1,5 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -222,7 +224,15 @@ public interface DataFrame<E> extends Iterable<DataVector<E>>
 	 */
 	default void print()
 	{
-		System.out.println(formatMatrix(DEFAULT_FORMAT_WIDTH));
+		try
+		{
+			formatMatrix(DEFAULT_FORMAT_WIDTH, System.out);
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+		System.out.println();
 	}
 
 	/**
@@ -235,6 +245,30 @@ public interface DataFrame<E> extends Iterable<DataVector<E>>
 	 * @return a string representation of this data frame
 	 */
 	default String formatMatrix(int colWidth)
+	{
+		StringBuilder sb = new StringBuilder();
+		try
+		{
+			formatMatrix(colWidth, sb);
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Formats the entries stored in this data frame in the same way as
+	 * formatMatrix(int), but streams the result to an Appendable such as a Writer
+	 * or a PrintStream, one line at a time. The memory used therefore does not
+	 * depend on the number of rows.
+	 * 
+	 * @param colWidth the number of character to use for a single column
+	 * @param out      the destination of the formatted data frame
+	 * @throws IOException if appending to the destination fails
+	 */
+	default void formatMatrix(int colWidth, Appendable out) throws IOException
 	{
 		String fmt = "%-" + colWidth + "." + colWidth + "s";
 		StringBuilder sb = new StringBuilder();
@@ -246,8 +280,10 @@ public interface DataFrame<E> extends Iterable<DataVector<E>>
 			sb.append(String.format(Locale.ROOT, fmt, colName));
 		}
 		sb.append("\n");
+		out.append(sb);
 		for (int i = 0; i < getRowCount(); i++)
 		{
+			sb.setLength(0);
 			sb.append(String.format(Locale.ROOT, fmt, "row_" + i));
 			for (String colName : colNames)
 			{
@@ -255,8 +291,8 @@ public interface DataFrame<E> extends Iterable<DataVector<E>>
 				sb.append(String.format(Locale.ROOT, fmt, getValue(i, colName)));
 			}
 			sb.append("\n");
+			out.append(sb);
 		}
-		return sb.toString();
 	}
 
 	@Override
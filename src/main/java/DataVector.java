@@ -47,6 +47,19 @@ public interface DataVector<E>
 	 */
 	E getValue(String entryName);
 
+	/**
+	 * Getter for the value of the entry at a given position. The position of an
+	 * entry is its index in the list returned by getEntryNames().
+	 * 
+	 * @param index the position of the entry to extract
+	 * @return the value of the entry at the given position
+	 * @throws IndexOutOfBoundsException if the index is illegal
+	 */
+	default E getValue(int index) throws IndexOutOfBoundsException
+	{
+		return getValues().get(index);
+	}
+
 	/**
 	 * Obtain a list of all the values of the entries in this vector.
 	 * 
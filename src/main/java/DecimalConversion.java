@@ -0,0 +1,149 @@
+import java.math.BigInteger;
+
+/**
+ * Converts a decimal number, given as an integer mantissa of at most 19 digits and
+ * a power of ten, into the nearest double without creating any object.
+ *
+ * Small numbers are converted with Clinger's fast path, where both the mantissa and
+ * the power of ten are exact doubles, so a single multiplication or division is
+ * correctly rounded. Other numbers are converted with the Eisel-Lemire algorithm,
+ * which multiplies the mantissa with a 128-bit approximation of the power of ten.
+ * In the rare cases where that approximation is not precise enough to decide the
+ * rounding, NaN is returned and the caller has to fall back on Double.parseDouble.
+ *
+ */
+final class DecimalConversion {
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private static final int MIN_EXPONENT = -342;
+    private static final int MAX_EXPONENT = 308;
+
+    /**
+     * The normalized 128-bit significands of the powers of ten from 10^-342 up to
+     * 10^308, high and low 64 bits interleaved
+     */
+    private static final long[] SIGNIFICANDS = computeSignificands();
+
+    private DecimalConversion() {
+    }
+
+    /**
+     * Convert mantissa * 10^exponent into the nearest double
+     *
+     * @param mantissa the digits of the number as an unsigned integer, at most 19 digits
+     * @param exponent the power of ten
+     * @param negative whether the number is negative
+     * @return the nearest double, or NaN if the conversion is not possible without
+     *         arbitrary precision arithmetic
+     */
+    static double toDouble(long mantissa, int exponent, boolean negative) {
+        if (mantissa == 0) {
+            return negative ? -0.0 : 0.0;
+        }
+        if (mantissa > 0 && mantissa < (1L << 53) && exponent >= -22 && exponent <= 22) {
+            double value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+            return negative ? -value : value;
+        }
+        if (exponent < MIN_EXPONENT) {
+            return negative ? -0.0 : 0.0;
+        }
+        if (exponent > MAX_EXPONENT) {
+            return negative ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+        }
+        return eiselLemire(mantissa, exponent, negative);
+    }
+
+    /**
+     * The Eisel-Lemire algorithm, following the description of Lemire in "Number
+     * Parsing at a Gigabyte per Second"
+     */
+    private static double eiselLemire(long mantissa, int exponent, boolean negative) {
+        int index = 2 * (exponent - MIN_EXPONENT);
+        long high = SIGNIFICANDS[index];
+        long low = SIGNIFICANDS[index + 1];
+
+        int clz = Long.numberOfLeadingZeros(mantissa);
+        long man = mantissa << clz;
+        long retExp2 = ((217706L * exponent) >> 16) + 64 + 1023 - clz;
+
+        long xHi = unsignedMultiplyHigh(man, high);
+        long xLo = man * high;
+        if ((xHi & 0x1FF) == 0x1FF && Long.compareUnsigned(xLo + man, man) < 0) {
+            long yHi = unsignedMultiplyHigh(man, low);
+            long yLo = man * low;
+            long mergedHi = xHi;
+            long mergedLo = xLo + yHi;
+            if (Long.compareUnsigned(mergedLo, xLo) < 0) {
+                mergedHi++;
+            }
+            if ((mergedHi & 0x1FF) == 0x1FF && mergedLo + 1 == 0 && Long.compareUnsigned(yLo + man, man) < 0) {
+                return Double.NaN;
+            }
+            xHi = mergedHi;
+            xLo = mergedLo;
+        }
+
+        long msb = xHi >>> 63;
+        long retMantissa = xHi >>> (msb + 9);
+        retExp2 -= 1 ^ msb;
+        if (xLo == 0 && (xHi & 0x1FF) == 0 && (retMantissa & 3) == 1) {
+            return Double.NaN;
+        }
+        retMantissa += retMantissa & 1;
+        retMantissa >>>= 1;
+        if ((retMantissa >>> 53) > 0) {
+            retMantissa >>>= 1;
+            retExp2 += 1;
+        }
+        if (retExp2 <= 0 || retExp2 >= 0x7FF) {
+            return Double.NaN;
+        }
+        long bits = (retExp2 << 52) | (retMantissa & 0x000FFFFFFFFFFFFFL);
+        if (negative) {
+            bits |= 0x8000000000000000L;
+        }
+        return Double.longBitsToDouble(bits);
+    }
+
+    /**
+     * Return the high 64 bits of the unsigned 128-bit product of two longs
+     */
+    private static long unsignedMultiplyHigh(long x, long y) {
+        return Math.multiplyHigh(x, y) + ((x >> 63) & y) + ((y >> 63) & x);
+    }
+
+    /**
+     * Compute the 128-bit significands of the powers of ten. The significand of 10^q
+     * is the significand of 5^q, as the powers differ by a power of two. Positive
+     * powers are truncated, negative powers are rounded up and then truncated.
+     */
+    private static long[] computeSignificands() {
+        long[] significands = new long[2 * (MAX_EXPONENT - MIN_EXPONENT + 1)];
+        BigInteger mask = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+        for (int q = MIN_EXPONENT; q <= MAX_EXPONENT; q++) {
+            BigInteger significand;
+            if (q >= 0) {
+                BigInteger power = BigInteger.valueOf(5).pow(q);
+                int shift = power.bitLength() - 128;
+                significand = shift > 0 ? power.shiftRight(shift) : power.shiftLeft(-shift);
+            } else {
+                BigInteger power = BigInteger.valueOf(5).pow(-q);
+                int z = power.bitLength();
+                int b = q >= -27 ? z + 127 : 2 * z + 128;
+                significand = BigInteger.ONE.shiftLeft(b).divide(power).add(BigInteger.ONE);
+                int shift = significand.bitLength() - 128;
+                if (shift > 0) {
+                    significand = significand.shiftRight(shift);
+                }
+            }
+            int index = 2 * (q - MIN_EXPONENT);
+            significands[index] = significand.shiftRight(64).longValue();
+            significands[index + 1] = significand.and(mask).longValue();
+        }
+        return significands;
+    }
+}
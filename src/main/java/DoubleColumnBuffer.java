@@ -0,0 +1,151 @@
+import java.util.Arrays;
+
+/**
+ * A column buffer collects primitive double values whose number is not known in
+ * advance. The capacity of the buffer doubles whenever it is full, so adding a
+ * value takes amortized constant time.
+ *
+ */
+class DoubleColumnBuffer {
+    private double[] values;
+    private int size;
+
+    /**
+     * This constructor creates an empty buffer with a default capacity
+     */
+    DoubleColumnBuffer() {
+        this(16);
+    }
+
+    /**
+     * This constructor creates an empty buffer with a given capacity
+     *
+     * @param capacity the number of values that fit before the buffer grows
+     */
+    DoubleColumnBuffer(int capacity) {
+        this.values = new double[Math.max(1, capacity)];
+    }
+
+    /**
+     * Add a value at the end of the buffer
+     *
+     * @param value the value to add
+     */
+    void add(double value) {
+        if (size == values.length) {
+            grow(size + 1);
+        }
+        values[size++] = value;
+    }
+
+    /**
+     * Add a range of values at the end of the buffer
+     *
+     * @param source the array holding the values
+     * @param from the index of the first value to add
+     * @param length the number of values to add
+     */
+    void addAll(double[] source, int from, int length) {
+        if (size + length > values.length) {
+            grow(size + length);
+        }
+        System.arraycopy(source, from, values, size, length);
+        size += length;
+    }
+
+    /**
+     * Add a number of zeros at the end of the buffer
+     *
+     * @param count the number of zeros to add
+     */
+    void addZeros(int count) {
+        if (size + count > values.length) {
+            grow(size + count);
+        }
+        Arrays.fill(values, size, size + count, 0);
+        size += count;
+    }
+
+    /**
+     * Ensure that the buffer can hold at least the given number of values
+     *
+     * @param minCapacity the required capacity
+     */
+    private void grow(int minCapacity) {
+        if (minCapacity < 0) {
+            throw new OutOfMemoryError("Column buffer too large");
+        }
+        int capacity = values.length * 2;
+        if (capacity < minCapacity || capacity < 0) {
+            capacity = minCapacity;
+        }
+        values = Arrays.copyOf(values, capacity);
+    }
+
+    /**
+     * Return the number of values in the buffer
+     *
+     * @return the number of values
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Return the value at a given index
+     *
+     * @param index the index of the value
+     * @return the value at the given index
+     */
+    double get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        return values[index];
+    }
+
+    /**
+     * Replace the value at a given index
+     *
+     * @param index the index of the value
+     * @param value the new value
+     */
+    void set(int index, double value) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        values[index] = value;
+    }
+
+    /**
+     * Return a new buffer with the same values and capacity as this buffer
+     *
+     * @return an independent copy of this buffer
+     */
+    DoubleColumnBuffer copy() {
+        DoubleColumnBuffer copy = new DoubleColumnBuffer(values.length);
+        copy.addAll(values, 0, size);
+        return copy;
+    }
+
+    /**
+     * Return the array that backs this buffer, which may be longer than the number
+     * of values in the buffer
+     *
+     * @return the backing array
+     */
+    double[] array() {
+        return values;
+    }
+
+    /**
+     * Return an array holding exactly the values in the buffer. When the backing
+     * array has the right size it is returned without copying, after which the
+     * buffer should no longer be used.
+     *
+     * @return an array with the values of the buffer
+     */
+    double[] toArray() {
+        return size == values.length ? values : Arrays.copyOf(values, size);
+    }
+}
@@ -1,5 +1,7 @@
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.BinaryOperator;
+import java.util.function.DoubleBinaryOperator;
 import java.util.function.Function;
 import java.util.function.Predicate;
 
@@ -11,16 +13,44 @@ import java.util.function.Predicate;
  * It supports a number of useful operations to manipulate the data that can
  * transform and aggregate the data stored in the matrix.
  *
- * It holds list with column names, two dimensional array with the data stored
- * in the data frame and map for transforming the column names in indices
+ * It holds the schema with the column names, which is shared with the row vectors
+ * and the frames derived from it, and the storage with the data stored in the
+ * data frame. The data is either stored row by row or column by column, see
+ * {@link Layout}.
+ *
+ * By default all operations run on the calling thread. A data frame obtained through
+ * {@link #parallel()} splits select, computeColumn and summarize into chunks of rows
+ * that are processed on a ForkJoinPool; the frames derived from it stay parallel.
+ *
+ * By default project, select and expand copy the values into a new frame. A data
+ * frame obtained through {@link #views()} returns views instead, which share the
+ * values with this data frame until either of them is changed.
+ *
+ * A data frame obtained through {@link #offHeap()} keeps its values outside of the
+ * Java heap, as do the frames derived from it. Such a frame should be closed when
+ * it is no longer needed, which releases its memory right away.
  *
  * @author Detelin Radev
  *
  */
-public class DoubleDataFrame implements DataFrame<Double> {
-    private List<String> columnNames;
-    private double[][] data;
-    private Map<String, Integer> map;
+public class DoubleDataFrame implements DataFrame<Double>, AutoCloseable {
+
+    /**
+     * The memory layout used to store the values of a data frame. A row-major
+     * frame keeps one array per row, which favours row based access such as
+     * getRow and select. A column-major frame keeps one contiguous array per
+     * column, which favours column based access such as getColumn, project and
+     * summarize.
+     */
+    public enum Layout {
+        ROW_MAJOR,
+        COLUMN_MAJOR
+    }
+
+    private Schema schema;
+    private DoubleStorage storage;
+    private ForkJoinPool pool;
+    private boolean views;
 
     /**
      * This constructor stores the names of the columns and the data of the data frame.
@@ -31,12 +61,243 @@ public class DoubleDataFrame implements DataFrame<Double> {
      * @param data array that holds the data of the data frame
      */
     DoubleDataFrame(List<String> columnNames, double[][] data) {
-        this.columnNames = columnNames;
-        this.data = data;
-        this.map = new HashMap<>();
-        for (int i = 0; i < columnNames.size(); i++) {
-            map.put(columnNames.get(i), i);
+        this(columnNames, data, Layout.ROW_MAJOR);
+    }
+
+    /**
+     * This constructor stores the names of the columns and the data of the data frame
+     * using the requested layout. The data is always provided row by row; for the
+     * row-major layout the array is used as is, for the column-major layout the values
+     * are copied into one array per column.
+     *
+     * @param columnNames list that holds the names of the columns of the data frame
+     * @param data array that holds the data of the data frame, indexed by row first
+     * @param layout the memory layout used to store the data
+     */
+    DoubleDataFrame(List<String> columnNames, double[][] data, Layout layout) {
+        this(columnNames, DoubleStorage.fromRows(layout, data, columnNames.size()));
+    }
+
+    /**
+     * This constructor stores the names of the columns and the storage that holds
+     * the data of the data frame.
+     *
+     * @param columnNames list that holds the names of the columns of the data frame
+     * @param storage the storage that holds the data of the data frame
+     */
+    DoubleDataFrame(List<String> columnNames, DoubleStorage storage) {
+        this(new Schema(columnNames), storage);
+    }
+
+    /**
+     * This constructor stores the schema with the names of the columns and the storage
+     * that holds the data of the data frame.
+     *
+     * @param schema the schema that holds the names of the columns of the data frame
+     * @param storage the storage that holds the data of the data frame
+     */
+    DoubleDataFrame(Schema schema, DoubleStorage storage) {
+        this.schema = schema;
+        this.storage = storage;
+    }
+
+    /**
+     * Create a column-major data frame from arrays that each hold the values of one
+     * column. The arrays are used as they are, no copy is made.
+     *
+     * @param columnNames list that holds the names of the columns of the data frame
+     * @param columns array that holds one array for every column, all of equal length
+     * @return a column-major data frame backed by the given arrays
+     * @throws IllegalArgumentException if the number of names and columns differ or
+     *                                  the columns differ in length
+     */
+    static DoubleDataFrame fromColumns(List<String> columnNames, double[][] columns)
+            throws IllegalArgumentException {
+        if (columnNames.size() != columns.length) {
+            throw new IllegalArgumentException("Expected " + columnNames.size() + " columns, got " + columns.length);
+        }
+        int rows = columns.length == 0 ? 0 : columns[0].length;
+        for (double[] column : columns) {
+            if (column.length != rows) {
+                throw new IllegalArgumentException("All columns should have the same length");
+            }
         }
+        return new DoubleDataFrame(columnNames, new ColumnStorage(columns, rows));
+    }
+
+    /**
+     * Return the memory layout used to store the data of this data frame
+     *
+     * @return the layout of this data frame
+     */
+    public Layout getLayout() {
+        return storage.layout();
+    }
+
+    /**
+     * Return the schema with the names of the columns of this data frame
+     *
+     * @return the schema of this data frame
+     */
+    public Schema getSchema() {
+        return schema;
+    }
+
+    /**
+     * Return a data frame backed by the same data that runs select, computeColumn and
+     * summarize in parallel on the common ForkJoinPool
+     *
+     * @return a parallel data frame sharing the data of this data frame
+     */
+    public DoubleDataFrame parallel() {
+        return parallel(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Return a data frame backed by the same data that runs select, computeColumn and
+     * summarize in parallel on the given pool. The rows are split into chunks; the
+     * predicate of select is evaluated once per row and the selected rows keep their
+     * order. In parallel mode summarize combines partial results of the chunks, so the
+     * summary function has to be associative.
+     *
+     * @param pool the pool that processes the chunks of rows
+     * @return a parallel data frame sharing the data of this data frame
+     */
+    public DoubleDataFrame parallel(ForkJoinPool pool) {
+        DoubleDataFrame df = new DoubleDataFrame(schema, storage);
+        df.pool = Objects.requireNonNull(pool);
+        df.views = views;
+        return df;
+    }
+
+    /**
+     * Return a data frame backed by the same data that runs all operations on the
+     * calling thread
+     *
+     * @return a sequential data frame sharing the data of this data frame
+     */
+    public DoubleDataFrame sequential() {
+        DoubleDataFrame df = new DoubleDataFrame(schema, storage);
+        df.views = views;
+        return df;
+    }
+
+    /**
+     * Return whether this data frame runs select, computeColumn and summarize in parallel
+     *
+     * @return true if this data frame is in parallel mode
+     */
+    public boolean isParallel() {
+        return pool != null;
+    }
+
+    /**
+     * Return a copy of this data frame whose values are stored in direct buffers
+     * outside of the Java heap, so they do not add to the work of the garbage
+     * collector. The frames derived from the copy through expand, project, select,
+     * computeColumn and concat are stored off-heap as well. Every such frame should
+     * be closed when it is no longer needed.
+     *
+     * @return an off-heap, column-major copy of this data frame
+     * @throws IllegalArgumentException if a column holds more than 268,435,455 rows
+     */
+    public DoubleDataFrame offHeap() throws IllegalArgumentException {
+        return derive(schema, OffHeapStorage.copyOf(storage));
+    }
+
+    /**
+     * Release the memory of an off-heap data frame, after which its values cannot be
+     * accessed anymore. The frames returned by parallel() and sequential() share the
+     * values with this data frame and are closed as well. For a data frame on the
+     * heap nothing happens.
+     */
+    @Override
+    public void close() {
+        storage.close();
+    }
+
+    /**
+     * Return a data frame backed by the same data whose project, select and expand
+     * return views instead of copies. A view shares the values of this data frame: a
+     * projection remaps the column indices, a selection holds the indices of the
+     * selected rows and an expansion adds rows and columns of zeros, so creating a
+     * view only costs time proportional to the number of selected rows or retained
+     * columns. The views are copy-on-write: when a value of a view or of the data
+     * frame it was derived from is set, the view first copies the values it shows.
+     * The frames derived from the returned data frame return views as well.
+     *
+     * @return a data frame in view mode sharing the data of this data frame
+     */
+    public DoubleDataFrame views() {
+        DoubleDataFrame df = new DoubleDataFrame(schema, storage);
+        df.pool = pool;
+        df.views = true;
+        return df;
+    }
+
+    /**
+     * Return a data frame backed by the same data whose project, select and expand
+     * return independent copies, which is the default
+     *
+     * @return a data frame in copy mode sharing the data of this data frame
+     */
+    public DoubleDataFrame copies() {
+        DoubleDataFrame df = new DoubleDataFrame(schema, storage);
+        df.pool = pool;
+        return df;
+    }
+
+    /**
+     * Return whether project, select and expand return views instead of copies
+     *
+     * @return true if this data frame is in view mode
+     */
+    public boolean isViewMode() {
+        return views;
+    }
+
+    /**
+     * Return a lazy data frame on top of this data frame. Operations applied to the
+     * lazy data frame are recorded and only executed, in a single fused pass over the
+     * rows of this data frame, when their result is needed.
+     *
+     * @return a lazy data frame with an empty plan
+     */
+    public LazyDataFrame lazy() {
+        return new LazyDataFrame(this);
+    }
+
+    /**
+     * Return the storage that holds the data of this data frame
+     *
+     * @return the storage of this data frame
+     */
+    DoubleStorage storage() {
+        return storage;
+    }
+
+    /**
+     * Return the pool used in parallel mode
+     *
+     * @return the pool, or null if this data frame is sequential
+     */
+    ForkJoinPool pool() {
+        return pool;
+    }
+
+    /**
+     * Create a data frame derived from this data frame, which keeps the execution
+     * mode and the view mode of this data frame
+     *
+     * @param newSchema the schema of the new data frame
+     * @param newStorage the storage of the new data frame
+     * @return the derived data frame
+     */
+    DoubleDataFrame derive(Schema newSchema, DoubleStorage newStorage) {
+        DoubleDataFrame df = new DoubleDataFrame(newSchema, newStorage);
+        df.pool = pool;
+        df.views = views;
+        return df;
     }
 
     /**
@@ -46,7 +307,7 @@ public class DoubleDataFrame implements DataFrame<Double> {
      */
     @Override
     public int getRowCount() {
-        return data.length;
+        return storage.rowCount();
     }
 
     /**
@@ -56,7 +317,7 @@ public class DoubleDataFrame implements DataFrame<Double> {
      */
     @Override
     public int getColumnCount() {
-        return data[0].length;
+        return storage.columnCount();
     }
 
     /**
@@ -67,11 +328,12 @@ public class DoubleDataFrame implements DataFrame<Double> {
      */
     @Override
     public List<String> getColumnNames() {
-        return columnNames;
+        return schema.getNames();
     }
 
     /**
-     * Performs setting value on specific position in the data frame.
+     * Performs setting value on specific position in the data frame. An index on the
+     * column is updated as well.
      *
      * @param rowIndex the index of the row where value will be set
      * @param colName the index of the column where value will be set
@@ -81,7 +343,7 @@ public class DoubleDataFrame implements DataFrame<Double> {
      */
     @Override
     public void setValue(int rowIndex, String colName, Double value) throws IndexOutOfBoundsException, IllegalArgumentException {
-        data[rowIndex][map.get(colName)] = value;
+        storage.update(rowIndex, schema.columnIndex(colName), value);
     }
 
     /**
@@ -96,7 +358,7 @@ public class DoubleDataFrame implements DataFrame<Double> {
      */
     @Override
     public Double getValue(int rowIndex, String colName) throws IndexOutOfBoundsException, IllegalArgumentException {
-        return data[rowIndex][map.get(colName)];
+        return storage.get(rowIndex, schema.columnIndex(colName));
     }
 
     /**
@@ -108,12 +370,16 @@ public class DoubleDataFrame implements DataFrame<Double> {
      *
      */
     @Override
-    public DataVector<Double> getRow(int rowIndex) throws IndexOutOfBoundsException {
-        return new DoubleDataVector(data[rowIndex], columnNames, rowIndex);
+    public DoubleVector getRow(int rowIndex) throws IndexOutOfBoundsException {
+        if (rowIndex < 0 || rowIndex >= storage.rowCount()) {
+            throw new IndexOutOfBoundsException("Row index " + rowIndex + " out of bounds for " + storage.rowCount() + " rows");
+        }
+        return new DoubleDataVector(storage, rowIndex, schema);
     }
 
     /**
-     * Retrieve data vector that holds the values of specific column of the data frame
+     * Retrieve data vector that holds the values of specific column of the data frame.
+     * The vector is a view on the data frame, so no values are copied.
      *
      * @return data vector that holds the values of specific column of the data frame
      * @param colName the index of the row where value will be retrieved
@@ -121,14 +387,8 @@ public class DoubleDataFrame implements DataFrame<Double> {
      *
      */
     @Override
-    public DataVector<Double> getColumn(String colName) throws IllegalArgumentException {
-        List<Double> list = new ArrayList<>();
-        List<String> rowNames = new ArrayList<>();
-        for (int i = 0; i < data.length; i++) {
-            list.add(data[i][map.get(colName)]);
-            rowNames.add("row_" + i);
-        }
-        return new DoubleDataVector(list, rowNames, colName);
+    public DoubleVector getColumn(String colName) throws IllegalArgumentException {
+        return new DoubleDataVector(storage, schema.columnIndex(colName), colName);
     }
 
     /**
@@ -140,7 +400,7 @@ public class DoubleDataFrame implements DataFrame<Double> {
     @Override
     public List<DataVector<Double>> getRows() {
         List<DataVector<Double>> list = new ArrayList<>();
-        for (int i = 0; i < data.length; i++) {
+        for (int i = 0; i < storage.rowCount(); i++) {
             list.add(getRow(i));
         }
 
@@ -157,7 +417,7 @@ public class DoubleDataFrame implements DataFrame<Double> {
     @Override
     public List<DataVector<Double>> getColumns() {
         List<DataVector<Double>> list = new ArrayList<>();
-        for (String name : columnNames) {
+        for (String name : schema.getNames()) {
             list.add(getColumn(name));
         }
         return list;
@@ -177,17 +437,14 @@ public class DoubleDataFrame implements DataFrame<Double> {
      */
     @Override
     public DataFrame<Double> expand(int additionalRows, List<String> newCols) throws IllegalArgumentException {
-        List<String> newCol = new ArrayList<>();
-        newCol.addAll(columnNames);
-        newCol.addAll(newCols);
-        double[][] newData = new double[data.length + additionalRows][columnNames.size() + newCols.size()];
-        DataFrame<Double> expanded = new DoubleDataFrame(newCol, newData);
-        for (int i = 0; i < data.length; i++) {
-            for (String name : columnNames) {
-                expanded.setValue(i, name, data[i][map.get(name)]);
-            }
+        if (additionalRows < 0) {
+            throw new IllegalArgumentException("The number of additional rows cannot be negative");
+        }
+        Schema newSchema = schema.append(newCols);
+        if (views) {
+            return derive(newSchema, carrySummaries(storage.expandView(additionalRows, newCols.size()), additionalRows));
         }
-        return expanded;
+        return derive(newSchema, carrySummaries(storage.expand(additionalRows, newCols.size()), additionalRows));
     }
 
     /**
@@ -201,20 +458,15 @@ public class DoubleDataFrame implements DataFrame<Double> {
     @Override
     public DataFrame<Double> project(Collection<String> retainColumns)
             throws NullPointerException {
-        double[][] newData = new double[data.length][retainColumns.size()];
-        List<String> newRetainColumns = new ArrayList<>();
-        for(String name: columnNames){
-            if(retainColumns.contains(name)) {
-                newRetainColumns.add(name);
+        int[] indices = new int[schema.size()];
+        int count = 0;
+        for (int j = 0; j < schema.size(); j++) {
+            if (retainColumns.contains(schema.getName(j))) {
+                indices[count++] = j;
             }
         }
-        DataFrame<Double> df = new DoubleDataFrame(newRetainColumns, newData);
-        for (int i = 0; i < data.length; i++) {
-            for (String name : newRetainColumns) {
-                    df.setValue(i, name, data[i][map.get(name)]);
-            }
-        }
-        return df;
+        indices = Arrays.copyOf(indices, count);
+        return derive(schema.project(indices), views ? storage.projectView(indices) : storage.project(indices));
     }
 
     /**
@@ -230,22 +482,494 @@ public class DoubleDataFrame implements DataFrame<Double> {
      */
     @Override
     public DataFrame<Double> select(Predicate<DataVector<Double>> rowFilter) {
-        int rowCount = 0;
-        int newRowIndex = 0;
-        for (int i = 0; i < data.length; i++) {
-            if (rowFilter.test(getRow(i))) {
-                rowCount++;
+        if (pool != null) {
+            int[] selected = RowChunks.concat(RowChunks.map(pool, storage.rowCount(),
+                    (from, to) -> selectRows(rowFilter, from, to)));
+            return derive(schema, selectStorage(selected));
+        }
+        int[] selected = selectRows(rowFilter, 0, storage.rowCount());
+        return derive(schema, selectStorage(selected));
+    }
+
+    /**
+     * Create the storage with the selected rows, a view in view mode and a copy otherwise
+     *
+     * @param selected the indices of the selected rows
+     * @return the storage of the selected rows
+     */
+    private DoubleStorage selectStorage(int[] selected) {
+        return views ? storage.selectView(selected, selected.length) : storage.select(selected, selected.length);
+    }
+
+    /**
+     * Creates a new data frame from the concatenation of this data frame and another
+     * data frame with the same number of rows. The values are copied column by column
+     * into a storage with the layout of this data frame.
+     *
+     * @param other the data frame to concatenate to this data frame
+     * @return a newly created data frame containing both the data from this and the
+     *         other data frame
+     * @throws IllegalArgumentException if the number of rows do no match or a column
+     *                                  name occurs in both data frames
+     */
+    @Override
+    public DataFrame<Double> concat(DataFrame<Double> other) throws IllegalArgumentException {
+        int rows = storage.rowCount();
+        if (rows != other.getRowCount()) {
+            throw new IllegalArgumentException("Can only concatenate dataframes with equal numbers of rows");
+        }
+        List<String> otherNames = other.getColumnNames();
+        Schema newSchema = schema.append(otherNames);
+        DoubleStorage otherStorage = other instanceof DoubleDataFrame ? ((DoubleDataFrame) other).storage() : null;
+        DoubleStorage expanded = storage.expand(0, otherNames.size());
+        double[] buffer = new double[Math.min(Expression.BLOCK_SIZE, rows)];
+        for (int j = 0; j < otherNames.size(); j++) {
+            int col = storage.columnCount() + j;
+            for (int start = 0; start < rows; start += buffer.length) {
+                int end = Math.min(rows, start + buffer.length);
+                if (otherStorage != null) {
+                    otherStorage.copyColumn(j, start, end, buffer);
+                } else {
+                    for (int i = start; i < end; i++) {
+                        buffer[i - start] = other.getValue(i, otherNames.get(j));
+                    }
+                }
+                expanded.setColumn(col, start, end, buffer);
+            }
+        }
+        return derive(newSchema, carrySummaries(expanded, 0));
+    }
+
+    /**
+     * Produce a data frame with the rows of this data frame ordered by the values of
+     * one or more columns. The rows are ordered by the first column, rows with equal
+     * values in the first column by the second column, and so on. The order is found
+     * as a permutation of the row indices by a radix sort over the primitive column
+     * values, after which every column is gathered once. NaN values are placed last
+     * and rows with equal values keep their order.
+     *
+     * @param columns the names of the columns to sort by
+     * @param ascending whether each column is sorted in ascending order: one value for
+     *                  every column, a single value for all columns, or none to sort
+     *                  all columns in ascending order
+     * @return data frame with the sorted rows
+     * @throws IllegalArgumentException if no column is given, a column does not exist
+     *                                  or the number of directions does not match
+     */
+    public DataFrame<Double> sortBy(List<String> columns, boolean... ascending) throws IllegalArgumentException {
+        if (columns.isEmpty()) {
+            throw new IllegalArgumentException("At least one column is needed to sort rows");
+        }
+        if (ascending.length > 1 && ascending.length != columns.size()) {
+            throw new IllegalArgumentException("Expected " + columns.size() + " sort directions, got " + ascending.length);
+        }
+        double[][] values = new double[columns.size()][];
+        boolean[] directions = new boolean[columns.size()];
+        for (int c = 0; c < values.length; c++) {
+            values[c] = storage.columnCopy(schema.columnIndex(columns.get(c)));
+            directions[c] = ascending.length == 0 || ascending[ascending.length == 1 ? 0 : c];
+        }
+        return derive(schema, selectStorage(RowSort.sort(values, directions, storage.rowCount())));
+    }
+
+    /**
+     * Produce a data frame with the rows of this data frame ordered by the values of a
+     * column, see {@link #sortBy(List, boolean...)}
+     *
+     * @param column the name of the column to sort by
+     * @param ascending whether the column is sorted in ascending order
+     * @return data frame with the sorted rows
+     * @throws IllegalArgumentException if the column does not exist
+     */
+    public DataFrame<Double> sortBy(String column, boolean ascending) throws IllegalArgumentException {
+        return sortBy(Collections.singletonList(column), ascending);
+    }
+
+    /**
+     * Produce a data frame with the k rows that have the largest values in a column,
+     * largest first. The rows are found with a bounded heap in O(n log k) time, without
+     * sorting the column. Of rows with equal values the first come first; rows with
+     * NaN in the column are never selected.
+     *
+     * @param column the name of the column
+     * @param k the maximum number of rows
+     * @return data frame with at most k rows
+     * @throws IllegalArgumentException if the column does not exist or k is negative
+     */
+    public DataFrame<Double> topK(String column, int k) throws IllegalArgumentException {
+        if (k < 0) {
+            throw new IllegalArgumentException("The number of rows cannot be negative: " + k);
+        }
+        int col = schema.columnIndex(column);
+        int rows = storage.rowCount();
+        RowSort.TopHeap heap;
+        if (pool != null && rows > 0) {
+            List<RowSort.TopHeap> partials = RowChunks.map(pool, rows, (from, to) -> topRows(col, k, from, to));
+            heap = partials.get(0);
+            for (int p = 1; p < partials.size(); p++) {
+                heap.addAll(partials.get(p));
+            }
+        } else {
+            heap = topRows(col, k, 0, rows);
+        }
+        return derive(schema, selectStorage(heap.rows()));
+    }
+
+    /**
+     * Find the k largest values of a column in a range of rows
+     */
+    private RowSort.TopHeap topRows(int col, int k, int from, int to) {
+        RowSort.TopHeap heap = new RowSort.TopHeap(k);
+        double[] buffer = new double[Math.max(1, Math.min(Expression.BLOCK_SIZE, to - from))];
+        for (int start = from; start < to; start += buffer.length) {
+            int length = Math.min(buffer.length, to - start);
+            storage.copyColumn(col, start, start + length, buffer);
+            heap.addAll(buffer, length, start);
+        }
+        return heap;
+    }
+
+    /**
+     * Join this data frame with another data frame on equal values of key columns,
+     * which both data frames contain. A hash table is built over the keys of the other
+     * data frame and probed with the keys of this data frame; when the other data frame
+     * is large, both are partitioned by key first, so only one partition is held in
+     * the hash table at a time.
+     *
+     * The inner and left join produce the columns of this data frame followed by the
+     * columns of the other data frame except the key columns, the semi and anti join
+     * produce the columns of this data frame only. The rows keep the order of this data
+     * frame. Keys containing NaN match no other key.
+     *
+     * @param other the data frame to join with
+     * @param type the kind of join
+     * @param keyColumns the names of the key columns
+     * @return the joined data frame
+     * @throws IllegalArgumentException if no key column is given, a key column does not
+     *                                  exist or another column name occurs in both data frames
+     */
+    public DataFrame<Double> join(DataFrame<Double> other, JoinType type, String... keyColumns)
+            throws IllegalArgumentException {
+        Schema joinedSchema = joinSchema(other, type, keyColumns);
+        RowJoin join = RowJoin.hash(keyValues(this, keyColumns), storage.rowCount(), keyValues(other, keyColumns),
+                other.getRowCount(), type, RowJoin.PARTITION_ROWS);
+        return joined(other, type, keyColumns, joinedSchema, join);
+    }
+
+    /**
+     * Join this data frame with another data frame on equal values of key columns, in
+     * the same way as {@link #join(DataFrame, JoinType, String...)}, but by merging the
+     * rows of both data frames, which have to be sorted by their keys in ascending
+     * order, with NaN last. No hash table is needed.
+     *
+     * @param other the data frame to join with
+     * @param type the kind of join
+     * @param keyColumns the names of the key columns
+     * @return the joined data frame
+     * @throws IllegalArgumentException if no key column is given, a key column does not
+     *                                  exist, another column name occurs in both data
+     *                                  frames or a data frame is not sorted by its keys
+     */
+    public DataFrame<Double> mergeJoin(DataFrame<Double> other, JoinType type, String... keyColumns)
+            throws IllegalArgumentException {
+        Schema joinedSchema = joinSchema(other, type, keyColumns);
+        RowJoin join = RowJoin.merge(keyValues(this, keyColumns), storage.rowCount(), keyValues(other, keyColumns),
+                other.getRowCount(), type);
+        return joined(other, type, keyColumns, joinedSchema, join);
+    }
+
+    /**
+     * Check the key columns of a join and create the schema of the result
+     */
+    private Schema joinSchema(DataFrame<Double> other, JoinType type, String[] keyColumns) {
+        if (keyColumns.length == 0) {
+            throw new IllegalArgumentException("At least one key column is needed to join data frames");
+        }
+        List<String> keys = Arrays.asList(keyColumns);
+        for (String key : keys) {
+            schema.columnIndex(key);
+            if (!other.getColumnNames().contains(key)) {
+                throw new IllegalArgumentException("Column " + key + " does not exist in the other data frame");
+            }
+        }
+        if (type == JoinType.SEMI || type == JoinType.ANTI) {
+            return schema;
+        }
+        List<String> otherNames = new ArrayList<>(other.getColumnNames());
+        otherNames.removeAll(keys);
+        return schema.append(otherNames);
+    }
+
+    /**
+     * Create the data frame with the pairs of rows found by a join
+     */
+    private DataFrame<Double> joined(DataFrame<Double> other, JoinType type, String[] keyColumns, Schema joinedSchema,
+            RowJoin join) {
+        int rows = join.count();
+        int[] leftRows = join.leftRows();
+        if (type == JoinType.SEMI || type == JoinType.ANTI) {
+            return derive(schema, selectStorage(Arrays.copyOf(leftRows, rows)));
+        }
+        int cols = storage.columnCount();
+        DoubleStorage joinedStorage = storage.allocate(rows, joinedSchema.size());
+        double[] buffer = new double[Math.min(Expression.BLOCK_SIZE, Math.max(1, rows))];
+        for (int j = 0; j < cols; j++) {
+            for (int start = 0; start < rows; start += buffer.length) {
+                int end = Math.min(rows, start + buffer.length);
+                for (int i = start; i < end; i++) {
+                    buffer[i - start] = storage.get(leftRows[i], j);
+                }
+                joinedStorage.setColumn(j, start, end, buffer);
+            }
+        }
+        int[] rightRows = join.rightRows();
+        for (int j = cols; j < joinedSchema.size(); j++) {
+            double[] values = columnValues(other, joinedSchema.getName(j));
+            for (int start = 0; start < rows; start += buffer.length) {
+                int end = Math.min(rows, start + buffer.length);
+                for (int i = start; i < end; i++) {
+                    int row = rightRows[i];
+                    buffer[i - start] = row < 0 ? Double.NaN : values[row];
+                }
+                joinedStorage.setColumn(j, start, end, buffer);
             }
         }
-        double[][] newData = new double[rowCount][data[0].length];
-        DataFrame<Double> newDf = new DoubleDataFrame(columnNames, newData);
-        for (int i = 0; i < data.length; i++) {
-            if (rowFilter.test(getRow(i))) {
-                System.arraycopy(data[i], 0, newData[newRowIndex], 0, data[0].length);
-                newRowIndex++;
+        return derive(joinedSchema, joinedStorage);
+    }
+
+    private static double[][] keyValues(DataFrame<Double> df, String[] keyColumns) {
+        double[][] keys = new double[keyColumns.length][];
+        for (int k = 0; k < keys.length; k++) {
+            keys[k] = columnValues(df, keyColumns[k]);
+        }
+        return keys;
+    }
+
+    /**
+     * Return the values of a column of any data frame, with NaN for missing values
+     *
+     * @param df the data frame
+     * @param name the name of the column
+     * @return a new array with the values of the column
+     * @throws IllegalArgumentException if the column does not exist
+     */
+    static double[] columnValues(DataFrame<Double> df, String name) {
+        if (df instanceof DoubleDataFrame) {
+            DoubleDataFrame other = (DoubleDataFrame) df;
+            return other.storage.columnCopy(other.schema.columnIndex(name));
+        }
+        double[] values = new double[df.getRowCount()];
+        for (int i = 0; i < values.length; i++) {
+            Double value = df.getValue(i, name);
+            values[i] = value == null ? Double.NaN : value;
+        }
+        return values;
+    }
+
+    /**
+     * Produce a larger DataFrame object with one additional column, whose values are
+     * computed by an expression over the columns of this data frame. The expression
+     * is compiled into loops over blocks of primitive column values, so no row vectors
+     * are created and no values are boxed.
+     *
+     * @param columnName name of the additional column
+     * @param expression computing the values in the additional column
+     * @return data frame with the additional column
+     * @throws IllegalArgumentException if the expression refers to a column that does not exist
+     */
+    public DataFrame<Double> computeColumn(String columnName, Expression expression)
+            throws IllegalArgumentException {
+        return derive(schema.append(Collections.singletonList(columnName)), storage.appendColumn(evaluate(expression)));
+    }
+
+    /**
+     * Evaluate an expression for every row of this data frame
+     *
+     * @param expression the expression to evaluate
+     * @return an array with the value of the expression for every row
+     * @throws IllegalArgumentException if the expression refers to a column that does not exist
+     */
+    double[] evaluate(Expression expression) throws IllegalArgumentException {
+        double[] values = new double[storage.rowCount()];
+        if (pool != null) {
+            expression.compile(schema);
+            RowChunks.map(pool, values.length, (from, to) -> {
+                expression.evaluate(schema, storage, values, from, to);
+                return null;
+            });
+        } else {
+            expression.evaluate(schema, storage, values, 0, values.length);
+        }
+        return values;
+    }
+
+    /**
+     * Evaluate a condition for every row of this data frame. The condition is compiled
+     * into loops over blocks of primitive column values, which set one bit per row, so
+     * no row vectors are created and no values are boxed. The resulting bitmap can be
+     * combined with other bitmaps and applied with {@link #select(RowBitmap)}. When
+     * the condition only compares indexed columns with constants, the bitmap is built
+     * from the indexes, see {@link #createHashIndex(String)}, without reading the rows.
+     *
+     * @param condition the condition to evaluate
+     * @return a bitmap with the rows for which the condition holds
+     * @throws IllegalArgumentException if the condition refers to a column that does not exist
+     */
+    public RowBitmap where(Condition condition) throws IllegalArgumentException {
+        if (storage.hasIndexes()) {
+            RowBitmap indexed = condition.evaluateIndexed(schema, storage);
+            if (indexed != null) {
+                return indexed;
+            }
+        }
+        int rows = storage.rowCount();
+        long[] words = new long[RowBitmap.wordCount(rows)];
+        if (pool != null) {
+            condition.compile(schema);
+            // chunks of whole words, so no two chunks write the same word
+            RowChunks.map(pool, words.length, (from, to) -> {
+                condition.evaluate(schema, storage, words, from << 6, Math.min(rows, to << 6));
+                return null;
+            });
+        } else {
+            condition.evaluate(schema, storage, words, 0, rows);
+        }
+        return new RowBitmap(words, rows);
+    }
+
+    /**
+     * Build a hash index on a column, which answers conditions that test the column for
+     * equality with a constant, such as {@code col("year").eq(2017)}, without scanning
+     * the rows. The index is shared by the data frames returned by parallel(),
+     * sequential(), views() and copies(), and kept current when setValue changes the
+     * column. An existing index on the column is replaced.
+     *
+     * @param column the name of the column to index
+     * @throws IllegalArgumentException if the column does not exist
+     */
+    public void createHashIndex(String column) throws IllegalArgumentException {
+        int col = schema.columnIndex(column);
+        storage.setIndex(col, new ColumnIndex.Hash(storage.columnCopy(col)));
+    }
+
+    /**
+     * Build a sorted index on a column, which answers conditions that compare the
+     * column with a constant, such as {@code col("year").between(2010, 2015)}, without
+     * scanning the rows. The index is shared and kept current in the same way as a hash
+     * index, see {@link #createHashIndex(String)}. An existing index on the column is
+     * replaced.
+     *
+     * @param column the name of the column to index
+     * @throws IllegalArgumentException if the column does not exist
+     */
+    public void createSortedIndex(String column) throws IllegalArgumentException {
+        int col = schema.columnIndex(column);
+        storage.setIndex(col, new ColumnIndex.Sorted(storage.columnCopy(col)));
+    }
+
+    /**
+     * Remove the index of a column, if there is one
+     *
+     * @param column the name of the column
+     * @throws IllegalArgumentException if the column does not exist
+     */
+    public void dropIndex(String column) throws IllegalArgumentException {
+        storage.setIndex(schema.columnIndex(column), null);
+    }
+
+    /**
+     * Return whether a column has an index
+     *
+     * @param column the name of the column
+     * @return true if the column has a hash or sorted index
+     * @throws IllegalArgumentException if the column does not exist
+     */
+    public boolean hasIndex(String column) throws IllegalArgumentException {
+        return storage.index(schema.columnIndex(column)) != null;
+    }
+
+    /**
+     * Return the rows in which a column holds a value. An index on the column is used
+     * when there is one, otherwise the column is scanned.
+     *
+     * @param column the name of the column
+     * @param value the value to look up
+     * @return the indices of the rows, in ascending order
+     * @throws IllegalArgumentException if the column does not exist
+     */
+    public int[] lookup(String column, double value) throws IllegalArgumentException {
+        ColumnIndex index = storage.index(schema.columnIndex(column));
+        if (index != null) {
+            return index.equal(value);
+        }
+        return where(Expression.col(column).eq(value)).toIndices();
+    }
+
+    /**
+     * Return the rows in which a column holds a value between two bounds, both
+     * inclusive. A sorted index on the column is used when there is one, otherwise the
+     * column is scanned.
+     *
+     * @param column the name of the column
+     * @param low the lower bound
+     * @param high the upper bound
+     * @return the indices of the rows, in ascending order
+     * @throws IllegalArgumentException if the column does not exist
+     */
+    public int[] lookupRange(String column, double low, double high) throws IllegalArgumentException {
+        ColumnIndex index = storage.index(schema.columnIndex(column));
+        int[] rows = index == null ? null : index.range(low, true, high, true);
+        if (rows != null) {
+            return rows;
+        }
+        return where(Expression.col(column).between(low, high)).toIndices();
+    }
+
+    /**
+     * Produce a data frame with the rows of this data frame that are in a bitmap, in
+     * their original order
+     *
+     * @param rows the bitmap with the rows to retain
+     * @return data frame with the selected rows
+     * @throws IllegalArgumentException if the bitmap does not cover the rows of this data frame
+     */
+    public DataFrame<Double> select(RowBitmap rows) throws IllegalArgumentException {
+        if (rows.size() != storage.rowCount()) {
+            throw new IllegalArgumentException("Bitmap of " + rows.size() + " rows does not match data frame of "
+                    + storage.rowCount() + " rows");
+        }
+        return derive(schema, selectStorage(rows.toIndices()));
+    }
+
+    /**
+     * Produce a data frame with the rows of this data frame for which a condition
+     * holds, in their original order
+     *
+     * @param condition the condition to evaluate for every row
+     * @return data frame with the selected rows
+     * @throws IllegalArgumentException if the condition refers to a column that does not exist
+     */
+    public DataFrame<Double> select(Condition condition) throws IllegalArgumentException {
+        return select(where(condition));
+    }
+
+    /**
+     * Evaluate the row filter once for each row in a range of rows
+     *
+     * @param rowFilter predicate of data vector to be tested against the rows
+     * @param from the index of the first row to test
+     * @param to the index after the last row to test
+     * @return the indices of the accepted rows, in order
+     */
+    private int[] selectRows(Predicate<DataVector<Double>> rowFilter, int from, int to) {
+        int[] selected = new int[to - from];
+        int rowCount = 0;
+        for (int i = from; i < to; i++) {
+            if (rowFilter.test(new DoubleDataVector(storage, i, schema))) {
+                selected[rowCount++] = i;
             }
         }
-        return newDf;
+        return Arrays.copyOf(selected, rowCount);
     }
 
     /**
@@ -263,21 +987,29 @@ public class DoubleDataFrame implements DataFrame<Double> {
      */
     @Override
     public DataFrame<Double> computeColumn(String columnName, Function<DataVector<Double>, Double> function) {
-        List<String> newColumnNames = new ArrayList<>(columnNames);
-        double[][] newData = new double[data.length][data[0].length + 1];
-        newColumnNames.add(columnName);
-        DataFrame<Double> newDf = new DoubleDataFrame(newColumnNames, newData);
-
-        for (int i = 0; i < data.length; i++) {
-            System.arraycopy(data[i], 0, newData[i], 0, data[0].length);
+        double[] values = new double[storage.rowCount()];
+        if (pool != null) {
+            RowChunks.map(pool, values.length, (from, to) -> computeRows(function, values, from, to));
+        } else {
+            computeRows(function, values, 0, values.length);
         }
+        return derive(schema.append(Collections.singletonList(columnName)), storage.appendColumn(values));
+    }
 
-        int rowIndex = 0;
-        for (DataVector<Double> row : this) {
-            newData[rowIndex++][data[0].length] = function.apply(row);
+    /**
+     * Apply a function to each row in a range of rows and store the results
+     *
+     * @param function the function to apply to each row
+     * @param values the array in which the results are stored, indexed by row
+     * @param from the index of the first row
+     * @param to the index after the last row
+     * @return always null, as the results are stored in the values array
+     */
+    private Void computeRows(Function<DataVector<Double>, Double> function, double[] values, int from, int to) {
+        for (int i = from; i < to; i++) {
+            values[i] = function.apply(new DoubleDataVector(storage, i, schema));
         }
-
-        return newDf;
+        return null;
     }
 
     /**
@@ -298,17 +1030,320 @@ public class DoubleDataFrame implements DataFrame<Double> {
      */
     @Override
     public DataVector<Double> summarize(String name, BinaryOperator<Double> summaryFunction) {
+        if (pool != null && storage.rowCount() > 0) {
+            List<double[]> partials = RowChunks.map(pool, storage.rowCount(),
+                    (from, to) -> summarizeRows(summaryFunction, from, to));
+            double[] newData = partials.get(0);
+            for (int k = 1; k < partials.size(); k++) {
+                double[] partial = partials.get(k);
+                for (int i = 0; i < newData.length; i++) {
+                    newData[i] = summaryFunction.apply(newData[i], partial[i]);
+                }
+            }
+            return new DoubleDataVector(newData, schema, name);
+        }
+        if (storage.rowCount() == 0) {
+            return new DoubleDataVector(new double[storage.columnCount()], schema, name);
+        }
+        double[] newData = summarizeRows(summaryFunction, 0, storage.rowCount());
+        return new DoubleDataVector(newData, schema, name);
+    }
 
-        List<Double> newData = new ArrayList<>();
-        double number;
-        for (int i = 0; i < data[0].length; i++) {
-            List<Double> list = new ArrayList<>();
-            for (double[] datum : data) {
-                list.add(datum[i]);
+    /**
+     * Reduce the values of each column in a range of rows, which should not be empty
+     *
+     * @param summaryFunction the binary operator used to reduce the values
+     * @param from the index of the first row
+     * @param to the index after the last row
+     * @return the reduced value for every column
+     */
+    private double[] summarizeRows(BinaryOperator<Double> summaryFunction, int from, int to) {
+        double[] result = new double[storage.columnCount()];
+        double[] buffer = new double[Math.min(Expression.BLOCK_SIZE, to - from)];
+        for (int i = 0; i < result.length; i++) {
+            Double number = storage.get(from, i);
+            for (int start = from + 1; start < to; start += buffer.length) {
+                int length = Math.min(buffer.length, to - start);
+                storage.copyColumn(i, start, start + length, buffer);
+                for (int j = 0; j < length; j++) {
+                    number = summaryFunction.apply(number, buffer[j]);
+                }
             }
-            number = list.stream().reduce(summaryFunction).orElse(0d);
-            newData.add(number);
+            result[i] = number;
+        }
+        return result;
+    }
+
+    /**
+     * Summarize each column using a primitive binary operator, in the same way as
+     * {@link #summarize(String, BinaryOperator)} but without boxing any value. In
+     * parallel mode the partial results of chunks of rows are combined, so the
+     * operator has to be associative.
+     *
+     * @param name name of the produced data vector
+     * @param summaryFunction the operator that is used to reduce the values in each column
+     * @return hold aggregated values for every column in the original DataFrame
+     */
+    public DataVector<Double> reduce(String name, DoubleBinaryOperator summaryFunction) {
+        int rows = storage.rowCount();
+        if (rows == 0) {
+            return new DoubleDataVector(new double[storage.columnCount()], schema, name);
+        }
+        if (pool == null) {
+            return new DoubleDataVector(reduceRows(summaryFunction, 0, rows), schema, name);
+        }
+        List<double[]> partials = RowChunks.map(pool, rows, (from, to) -> reduceRows(summaryFunction, from, to));
+        double[] newData = partials.get(0);
+        for (int k = 1; k < partials.size(); k++) {
+            double[] partial = partials.get(k);
+            for (int i = 0; i < newData.length; i++) {
+                newData[i] = summaryFunction.applyAsDouble(newData[i], partial[i]);
+            }
+        }
+        return new DoubleDataVector(newData, schema, name);
+    }
+
+    /**
+     * Reduce the values of each column in a range of rows with a primitive operator,
+     * the range should not be empty
+     *
+     * @param summaryFunction the operator used to reduce the values
+     * @param from the index of the first row
+     * @param to the index after the last row
+     * @return the reduced value for every column
+     */
+    private double[] reduceRows(DoubleBinaryOperator summaryFunction, int from, int to) {
+        double[] result = new double[storage.columnCount()];
+        double[] buffer = new double[Math.min(Expression.BLOCK_SIZE, to - from)];
+        for (int i = 0; i < result.length; i++) {
+            double number = storage.get(from, i);
+            for (int start = from + 1; start < to; start += buffer.length) {
+                int length = Math.min(buffer.length, to - start);
+                storage.copyColumn(i, start, start + length, buffer);
+                for (int j = 0; j < length; j++) {
+                    number = summaryFunction.applyAsDouble(number, buffer[j]);
+                }
+            }
+            result[i] = number;
+        }
+        return result;
+    }
+
+    /**
+     * Compute the statistics of every column in a single pass over the data. The
+     * statistics of columns with a summary, see {@link #createSummary(String)}, are
+     * read from the summary, so the data is not read at all when every column has one.
+     *
+     * @return the statistics of every column, in the order of the columns
+     */
+    public List<ColumnStatistics> statistics() {
+        ColumnStatistics[] statistics = new ColumnStatistics[storage.columnCount()];
+        boolean complete = true;
+        for (int i = 0; i < statistics.length; i++) {
+            ColumnSummary summary = storage.summary(i);
+            if (summary != null) {
+                statistics[i] = summary.statistics(storage, i);
+            } else {
+                complete = false;
+            }
+        }
+        if (complete) {
+            return Arrays.asList(statistics);
+        }
+        List<ColumnStatistics> scanned = scanStatistics();
+        for (int i = 0; i < statistics.length; i++) {
+            if (statistics[i] == null) {
+                statistics[i] = scanned.get(i);
+            }
+        }
+        return Arrays.asList(statistics);
+    }
+
+    /**
+     * Compute the statistics of every column by reading all rows, in parallel when a
+     * pool is set
+     *
+     * @return the statistics of every column, in the order of the columns
+     */
+    private List<ColumnStatistics> scanStatistics() {
+        int rows = storage.rowCount();
+        if (pool == null || rows == 0) {
+            return Arrays.asList(statisticsOfRows(0, rows));
+        }
+        List<ColumnStatistics[]> partials = RowChunks.map(pool, rows, this::statisticsOfRows);
+        ColumnStatistics[] statistics = partials.get(0);
+        for (int k = 1; k < partials.size(); k++) {
+            for (int i = 0; i < statistics.length; i++) {
+                statistics[i].combine(partials.get(k)[i]);
+            }
+        }
+        return Arrays.asList(statistics);
+    }
+
+    /**
+     * Compute the statistics of every column for a range of rows. The rows are
+     * processed in blocks, so that every block of rows is read from memory only once
+     * for all columns.
+     *
+     * @param from the index of the first row
+     * @param to the index after the last row
+     * @return the statistics of every column
+     */
+    private ColumnStatistics[] statisticsOfRows(int from, int to) {
+        ColumnStatistics[] statistics = new ColumnStatistics[storage.columnCount()];
+        for (int i = 0; i < statistics.length; i++) {
+            statistics[i] = new ColumnStatistics();
+        }
+        double[] buffer = new double[Expression.BLOCK_SIZE];
+        for (int start = from; start < to; start += buffer.length) {
+            int end = Math.min(to, start + buffer.length);
+            for (int i = 0; i < statistics.length; i++) {
+                storage.copyColumn(i, start, end, buffer);
+                statistics[i].addAll(buffer, 0, end - start);
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * Compute an aggregate for every column. The result is produced as a data vector
+     * named after the aggregate.
+     *
+     * @param aggregate the aggregate to compute
+     * @return a data vector with the aggregate for each column
+     */
+    public DataVector<Double> summarize(Aggregate aggregate) {
+        return summarizeAll(aggregate).get(0);
+    }
+
+    /**
+     * Compute several aggregates for every column in a single pass over the data. For
+     * every aggregate a data vector named after the aggregate is produced.
+     *
+     * @param aggregates the aggregates to compute
+     * @return a data vector with the result for each column, for every aggregate in
+     *         the given order
+     */
+    public List<DataVector<Double>> summarizeAll(Aggregate... aggregates) {
+        List<ColumnStatistics> statistics = statistics();
+        List<DataVector<Double>> result = new ArrayList<>(aggregates.length);
+        for (Aggregate aggregate : aggregates) {
+            double[] values = new double[statistics.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = statistics.get(i).get(aggregate);
+            }
+            result.add(new DoubleDataVector(values, schema, aggregate.getName()));
+        }
+        return result;
+    }
+
+    /**
+     * Maintain the statistics of a column, so that statistics, summarize and
+     * summarizeAll read them without scanning the column. The summary is kept current
+     * when setValue changes the column, in constant time per change, and is carried
+     * over to the data frames returned by expand and concat. Like an index, it is
+     * shared by the data frames returned by parallel(), sequential(), views() and
+     * copies(). An existing summary of the column is replaced.
+     *
+     * @param column the name of the column
+     * @throws IllegalArgumentException if the column does not exist
+     */
+    public void createSummary(String column) throws IllegalArgumentException {
+        int col = schema.columnIndex(column);
+        ColumnSummary summary = new ColumnSummary();
+        int rows = storage.rowCount();
+        double[] buffer = new double[Math.min(Expression.BLOCK_SIZE, rows)];
+        for (int start = 0; start < rows; start += buffer.length) {
+            int end = Math.min(rows, start + buffer.length);
+            storage.copyColumn(col, start, end, buffer);
+            summary.addAll(buffer, 0, end - start);
+        }
+        storage.setSummary(col, summary);
+    }
+
+    /**
+     * Stop maintaining the statistics of a column, if they are maintained
+     *
+     * @param column the name of the column
+     * @throws IllegalArgumentException if the column does not exist
+     */
+    public void dropSummary(String column) throws IllegalArgumentException {
+        storage.setSummary(schema.columnIndex(column), null);
+    }
+
+    /**
+     * Return whether the statistics of a column are maintained
+     *
+     * @param column the name of the column
+     * @return true if the column has a summary
+     * @throws IllegalArgumentException if the column does not exist
+     */
+    public boolean hasSummary(String column) throws IllegalArgumentException {
+        return storage.summary(schema.columnIndex(column)) != null;
+    }
+
+    /**
+     * Return the statistics of a column. The summary of the column is used when there
+     * is one, otherwise the column is scanned.
+     *
+     * @param column the name of the column
+     * @return the statistics of the column
+     * @throws IllegalArgumentException if the column does not exist
+     */
+    public ColumnStatistics summary(String column) throws IllegalArgumentException {
+        int col = schema.columnIndex(column);
+        ColumnSummary summary = storage.summary(col);
+        if (summary != null) {
+            return summary.statistics(storage, col);
+        }
+        ColumnStatistics statistics = new ColumnStatistics();
+        int rows = storage.rowCount();
+        double[] buffer = new double[Math.min(Expression.BLOCK_SIZE, rows)];
+        for (int start = 0; start < rows; start += buffer.length) {
+            int end = Math.min(rows, start + buffer.length);
+            storage.copyColumn(col, start, end, buffer);
+            statistics.addAll(buffer, 0, end - start);
+        }
+        return statistics;
+    }
+
+    /**
+     * Copy the summaries of this storage to a new storage whose first columns hold
+     * the same values, followed by a number of rows of zeros
+     *
+     * @param target the new storage
+     * @param appendedRows the number of rows of zeros appended to every column
+     * @return the new storage
+     */
+    private DoubleStorage carrySummaries(DoubleStorage target, int appendedRows) {
+        for (int i = 0; i < storage.columnCount(); i++) {
+            ColumnSummary summary = storage.summary(i);
+            if (summary != null) {
+                ColumnSummary copy = summary.copy();
+                copy.addRepeated(0.0, appendedRows);
+                target.setSummary(i, copy);
+            }
+        }
+        return target;
+    }
+
+    /**
+     * Group the rows of this data frame by the values of one or more key columns. The
+     * aggregates of the groups are computed with the methods of the result, e.g.
+     * {@code df.groupBy("year").agg("revenue", Aggregate.SUM)}.
+     *
+     * @param keyColumns the names of the columns whose values define the groups
+     * @return the grouped data frame
+     * @throws IllegalArgumentException if no key column is given or a key column does not exist
+     */
+    public GroupedDataFrame groupBy(String... keyColumns) throws IllegalArgumentException {
+        if (keyColumns.length == 0) {
+            throw new IllegalArgumentException("At least one key column is needed to group rows");
+        }
+        int[] columns = new int[keyColumns.length];
+        for (int k = 0; k < columns.length; k++) {
+            columns[k] = schema.columnIndex(keyColumns[k]);
         }
-        return new DoubleDataVector(newData, columnNames, name);
+        return new GroupedDataFrame(this, columns);
     }
 }
\ No newline at end of file
@@ -0,0 +1,282 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A data frame builder collects rows and columns whose number is not known in
+ * advance, such as the records of a stream, and freezes them into a
+ * DoubleDataFrame.
+ *
+ * Every column is held in a {@link DoubleColumnBuffer}, whose capacity doubles
+ * when it is full, so appending a row or a batch of rows takes amortized time
+ * proportional to the number of appended values, instead of copying all rows like
+ * expand does. Freezing hands the column arrays to a column-major data frame,
+ * copying a column only when its buffer has spare capacity. The builder can be
+ * used after freezing: the next change, summary or freeze copies the columns
+ * first, so a frozen data frame never shares its arrays with the builder or with
+ * another frozen data frame.
+ *
+ * The statistics of a column can be maintained while rows are appended, see
+ * {@link #createSummary(String)}; every appended value updates them in constant
+ * time, and the frozen data frame starts with a copy of them.
+ *
+ */
+public class DoubleDataFrameBuilder {
+    private final List<String> names;
+    private final List<DoubleColumnBuffer> columns;
+    private final List<ColumnSummary> summaries;
+    private int rows;
+    private boolean shared;
+
+    /**
+     * This constructor creates a builder for the given columns and no rows
+     *
+     * @param columnNames the names of the columns
+     * @throws IllegalArgumentException if a column name occurs twice
+     */
+    public DoubleDataFrameBuilder(String... columnNames) throws IllegalArgumentException {
+        this(Arrays.asList(columnNames), 16);
+    }
+
+    /**
+     * This constructor creates a builder for the given columns and no rows, with room
+     * for an expected number of rows
+     *
+     * @param columnNames the names of the columns
+     * @param expectedRows the number of rows that fit before the columns grow
+     * @throws IllegalArgumentException if a column name occurs twice
+     */
+    public DoubleDataFrameBuilder(List<String> columnNames, int expectedRows) throws IllegalArgumentException {
+        new Schema(columnNames);
+        this.names = new ArrayList<>(columnNames);
+        this.columns = new ArrayList<>(columnNames.size());
+        this.summaries = new ArrayList<>(columnNames.size());
+        for (int j = 0; j < columnNames.size(); j++) {
+            columns.add(new DoubleColumnBuffer(expectedRows));
+            summaries.add(null);
+        }
+    }
+
+    /**
+     * Return the number of rows appended so far
+     *
+     * @return the number of rows
+     */
+    public int getRowCount() {
+        return rows;
+    }
+
+    /**
+     * Return the number of columns
+     *
+     * @return the number of columns
+     */
+    public int getColumnCount() {
+        return columns.size();
+    }
+
+    /**
+     * Return the names of the columns
+     *
+     * @return an unmodifiable list of the column names
+     */
+    public List<String> getColumnNames() {
+        return Collections.unmodifiableList(names);
+    }
+
+    /**
+     * Append a row
+     *
+     * @param values the value of every column of the row
+     * @return this builder
+     * @throws IllegalArgumentException if the number of values does not match the
+     *                                  number of columns
+     */
+    public DoubleDataFrameBuilder appendRow(double... values) throws IllegalArgumentException {
+        checkRowLength(values);
+        unshare();
+        for (int j = 0; j < values.length; j++) {
+            columns.get(j).add(values[j]);
+            ColumnSummary summary = summaries.get(j);
+            if (summary != null) {
+                summary.add(values[j]);
+            }
+        }
+        rows++;
+        return this;
+    }
+
+    /**
+     * Append a batch of rows
+     *
+     * @param data array that holds the rows, indexed by row first
+     * @return this builder
+     * @throws IllegalArgumentException if the number of values of a row does not match
+     *                                  the number of columns
+     */
+    public DoubleDataFrameBuilder appendRows(double[][] data) throws IllegalArgumentException {
+        for (double[] row : data) {
+            checkRowLength(row);
+        }
+        unshare();
+        for (int j = 0; j < columns.size(); j++) {
+            DoubleColumnBuffer column = columns.get(j);
+            for (double[] row : data) {
+                column.add(row[j]);
+            }
+        }
+        summarizeFrom(rows);
+        rows += data.length;
+        return this;
+    }
+
+    /**
+     * Append the rows of a data frame with the same column names
+     *
+     * @param df the data frame whose rows are appended
+     * @return this builder
+     * @throws IllegalArgumentException if the data frame has other columns
+     */
+    public DoubleDataFrameBuilder appendRows(DoubleDataFrame df) throws IllegalArgumentException {
+        if (!df.getColumnNames().equals(names)) {
+            throw new IllegalArgumentException("Expected columns " + names + ", got " + df.getColumnNames());
+        }
+        unshare();
+        DoubleStorage storage = df.storage();
+        int count = storage.rowCount();
+        double[] buffer = new double[Math.max(1, Math.min(Expression.BLOCK_SIZE, count))];
+        for (int j = 0; j < columns.size(); j++) {
+            for (int start = 0; start < count; start += buffer.length) {
+                int end = Math.min(count, start + buffer.length);
+                storage.copyColumn(j, start, end, buffer);
+                columns.get(j).addAll(buffer, 0, end - start);
+            }
+        }
+        summarizeFrom(rows);
+        rows += count;
+        return this;
+    }
+
+    /**
+     * Add a column with a value for every row appended so far. Rows appended later
+     * need a value for this column as well.
+     *
+     * @param name the name of the column
+     * @param values the value of the column for every row
+     * @return this builder
+     * @throws IllegalArgumentException if the name is already used or the number of
+     *                                  values does not match the number of rows
+     */
+    public DoubleDataFrameBuilder addColumn(String name, double[] values) throws IllegalArgumentException {
+        if (names.contains(name)) {
+            throw new IllegalArgumentException("Column names cannot be duplicated: " + name);
+        }
+        if (values.length != rows) {
+            throw new IllegalArgumentException("Expected " + rows + " values, got " + values.length);
+        }
+        DoubleColumnBuffer column = new DoubleColumnBuffer(Math.max(16, rows));
+        column.addAll(values, 0, rows);
+        names.add(name);
+        columns.add(column);
+        summaries.add(null);
+        return this;
+    }
+
+    /**
+     * Maintain the statistics of a column while rows are appended. The frozen data
+     * frames keep them current as well, see {@link DoubleDataFrame#createSummary(String)}.
+     *
+     * @param name the name of the column
+     * @return this builder
+     * @throws IllegalArgumentException if the column does not exist
+     */
+    public DoubleDataFrameBuilder createSummary(String name) throws IllegalArgumentException {
+        int col = names.indexOf(name);
+        if (col < 0) {
+            throw new IllegalArgumentException("No column with name " + name);
+        }
+        unshare();
+        ColumnSummary summary = new ColumnSummary();
+        summary.addAll(columns.get(col).array(), 0, rows);
+        summaries.set(col, summary);
+        return this;
+    }
+
+    /**
+     * Return the statistics of a column, which are maintained when the column has a
+     * summary and computed from the appended values otherwise
+     *
+     * @param name the name of the column
+     * @return the statistics of the values of the column
+     * @throws IllegalArgumentException if the column does not exist
+     */
+    public ColumnStatistics summary(String name) throws IllegalArgumentException {
+        int col = names.indexOf(name);
+        if (col < 0) {
+            throw new IllegalArgumentException("No column with name " + name);
+        }
+        unshare();
+        double[] values = columns.get(col).array();
+        ColumnSummary summary = summaries.get(col);
+        if (summary != null) {
+            return summary.statistics(new ColumnStorage(new double[][] { values }, rows), 0);
+        }
+        ColumnStatistics statistics = new ColumnStatistics();
+        statistics.addAll(values, 0, rows);
+        return statistics;
+    }
+
+    /**
+     * Create a column-major data frame with the rows appended so far. The data frame
+     * takes over the column arrays when they are exactly full and copies them
+     * otherwise. Arrays that an earlier frozen data frame took over are copied first.
+     *
+     * @return a data frame with the columns and rows of this builder
+     */
+    public DoubleDataFrame freeze() {
+        unshare();
+        double[][] arrays = new double[columns.size()][];
+        for (int j = 0; j < arrays.length; j++) {
+            arrays[j] = columns.get(j).toArray();
+        }
+        shared = true;
+        ColumnStorage storage = new ColumnStorage(arrays, rows);
+        for (int j = 0; j < arrays.length; j++) {
+            if (summaries.get(j) != null) {
+                storage.setSummary(j, summaries.get(j).copy());
+            }
+        }
+        return new DoubleDataFrame(new Schema(names), storage);
+    }
+
+    /**
+     * Copy the columns if their arrays were handed to a frozen data frame
+     */
+    private void unshare() {
+        if (shared) {
+            for (int j = 0; j < columns.size(); j++) {
+                columns.set(j, columns.get(j).copy());
+            }
+            shared = false;
+        }
+    }
+
+    /**
+     * Add the values of the rows appended since a given row to the summaries
+     */
+    private void summarizeFrom(int from) {
+        for (int j = 0; j < summaries.size(); j++) {
+            ColumnSummary summary = summaries.get(j);
+            if (summary != null) {
+                summary.addAll(columns.get(j).array(), from, columns.get(j).size());
+            }
+        }
+    }
+
+    private void checkRowLength(double[] values) {
+        if (values.length != columns.size()) {
+            throw new IllegalArgumentException("Expected " + columns.size() + " values, got " + values.length);
+        }
+    }
+}
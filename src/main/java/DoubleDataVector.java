@@ -6,18 +6,20 @@ import java.util.*;
  * It supports a number of useful operations to retrieve name and/or values of the
  * row or column it holds
  *
- * It holds list with column names, list with column data, list with row names,
- * one dimensional array with the data stored in the data vector, the value for row/column
- * the vector should holds and boolean variable to differentiate what vector holds -
- * column or row
+ * The vector is a view on the storage of the data frame: it holds the storage, the
+ * index of the row or column it represents and a boolean variable to differentiate
+ * what vector holds - column or row. No values are copied when the vector is created.
+ * The entries of a row vector are named by the schema of the data frame, which is
+ * shared by all rows. The names of the entries of a column vector ("row_0", "row_1",
+ * etcetera) are only created when they are asked for.
  *
  * @author Detelin Radev
  *
  */
-public class DoubleDataVector implements DataVector<Double> {
-    private List<Double> columnData;
-    private List<String> names;
-    private double[] data;
+public class DoubleDataVector implements DoubleVector {
+    private DoubleStorage storage;
+    private int index;
+    private Schema names;
     private int row;
     private String col;
     private boolean isRow;
@@ -36,10 +38,8 @@ public class DoubleDataVector implements DataVector<Double> {
      *
      */
     DoubleDataVector(double[] data, List<String> names, int row) {
-        this.data = data;
-        this.names = names;
+        this(new RowStorage(new double[][]{data}, data.length), 0, new Schema(names));
         this.row = row;
-        isRow = true;
     }
 
     /**
@@ -56,12 +56,64 @@ public class DoubleDataVector implements DataVector<Double> {
      *
      */
     DoubleDataVector(List<Double> columnData, List<String> names, String col) {
-        this.columnData = columnData;
+        double[] values = new double[columnData.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = columnData.get(i);
+        }
+        this.storage = new ColumnStorage(new double[][]{values}, values.length);
+        this.names = new Schema(names);
+        this.col = col;
+        isRow = false;
+    }
+
+    /**
+     * This constructor creates a data vector that is a view on a row of a storage. The
+     * entries of the vector are named after the columns.
+     *
+     * @param storage the storage that holds the data of the data frame
+     * @param row the index of the row in the storage
+     * @param names the schema that holds the names of the columns of the storage
+     *
+     */
+    DoubleDataVector(DoubleStorage storage, int row, Schema names) {
+        this.storage = storage;
+        this.index = row;
+        this.row = row;
         this.names = names;
+        isRow = true;
+    }
+
+    /**
+     * This constructor creates a data vector that is a view on a column of a storage.
+     * The names of the entries are created when they are asked for.
+     *
+     * @param storage the storage that holds the data of the data frame
+     * @param column the index of the column in the storage
+     * @param col the name of the column
+     *
+     */
+    DoubleDataVector(DoubleStorage storage, int column, String col) {
+        this.storage = storage;
+        this.index = column;
         this.col = col;
         isRow = false;
     }
 
+    /**
+     * This constructor creates a named data vector from an array of values, whose
+     * entries are named after the given names. It is used for vectors that do not
+     * originate from a single row or column, such as the result of a summary.
+     *
+     * @param values array that holds the data of the data vector, it is not copied
+     * @param names the schema that holds the names of the entries
+     * @param name the name of the data vector
+     *
+     */
+    DoubleDataVector(double[] values, Schema names, String name) {
+        this(new RowStorage(new double[][]{values}, values.length), 0, names);
+        this.col = name;
+    }
+
     /**
      * If a DataVector is obtained for a row, the getName() method return "row_0" if it represents
      * the row with index 0, "row_1" if it represents the row with index 1, etc
@@ -72,7 +124,7 @@ public class DoubleDataVector implements DataVector<Double> {
      */
     @Override
     public String getName() {
-        if (isRow) {
+        if (col == null) {
             return "row_" + row;
         }
         return col;
@@ -80,16 +132,68 @@ public class DoubleDataVector implements DataVector<Double> {
 
     /**
      * The getEntryNames() method return a list that contains the names of the column names of the original data
-     * frame
+     * frame. For a column, the names "row_0", "row_1", etcetera are created on demand.
      *
      * @return list with the names of the rows/columns that data vector consists
      */
     @Override
     public List<String> getEntryNames() {
+        if (names == null) {
+            return new AbstractList<String>() {
+                @Override
+                public String get(int i) {
+                    Objects.checkIndex(i, size());
+                    return "row_" + i;
+                }
+
+                @Override
+                public int size() {
+                    return DoubleDataVector.this.size();
+                }
+            };
+        }
+        return new ArrayList<>(names.getNames());
+    }
+
+    /**
+     * Return the number of entries of the vector
+     *
+     * @return the number of columns for a row, or the number of rows for a column
+     */
+    @Override
+    public int size() {
+        if (isRow) {
+            return storage.columnCount();
+        }
+        return storage.rowCount();
+    }
+
+    /**
+     * Return the value stored at a given position of the vector, without boxing it
+     *
+     * @param i the position of the entry
+     * @return the value stored at the given position
+     * @throws IndexOutOfBoundsException if an invalid position is provided
+     */
+    @Override
+    public double getDouble(int i) throws IndexOutOfBoundsException {
         if (isRow) {
-            return new ArrayList<>(names);
+            return storage.get(index, i);
         }
-        return new ArrayList<>(names);
+        return storage.get(i, index);
+    }
+
+    /**
+     * Copy the values of the vector into a new array
+     *
+     * @return a new array with the values of the vector
+     */
+    @Override
+    public double[] toDoubleArray() {
+        if (isRow) {
+            return storage.rowCopy(index);
+        }
+        return storage.columnCopy(index);
     }
 
     /**
@@ -97,22 +201,50 @@ public class DoubleDataVector implements DataVector<Double> {
      * the column name that is passed as an argument
      *
      * @return the value associated with the column name that is passed as an argument
+     * @throws IllegalArgumentException if the entry name does not exist
      */
     @Override
     public Double getValue(String entryName) {
-        if (isRow) {
-            Map<String, Integer> map = new HashMap<>();
-            for (int i = 0; i < names.size(); i++) {
-                map.put(names.get(i), i);
-            }
-            return data[map.get(entryName)];
-        }
-        Map<String, Integer> map = new HashMap<>();
-        for (int i = 0; i < names.size(); i++) {
-            map.put(names.get(i), i);
+        return getDouble(indexOf(entryName));
+    }
+
+    /**
+     * Return the value stored at a given position of the vector
+     *
+     * @param i the position of the entry
+     * @return the value stored at the given position
+     * @throws IndexOutOfBoundsException if an invalid position is provided
+     */
+    @Override
+    public Double getValue(int i) throws IndexOutOfBoundsException {
+        return getDouble(i);
+    }
+
+    /**
+     * Return the value associated with the entry name, without boxing it
+     *
+     * @param entryName the name of the entry
+     * @return the value associated with the entry name
+     * @throws IllegalArgumentException if the entry name does not exist
+     */
+    public double getDouble(String entryName) throws IllegalArgumentException {
+        return getDouble(indexOf(entryName));
+    }
+
+    /**
+     * Transform an entry name into a position in the vector
+     *
+     * @param entryName the name of the entry
+     * @return the position of the entry
+     * @throws IllegalArgumentException if the entry name does not exist
+     */
+    private int indexOf(String entryName) throws IllegalArgumentException {
+        if (names == null) {
+            return rowIndex(entryName);
         }
-        return columnData.get(map.get(entryName));
+        return names.columnIndex(entryName);
     }
+
     /**
      *  The method getValues() return a List of all that are stored in this row
      *  in the original data frame
@@ -121,14 +253,11 @@ public class DoubleDataVector implements DataVector<Double> {
      */
     @Override
     public List<Double> getValues() {
-        if (isRow) {
-            List<Double> list = new ArrayList<>();
-            for (double value : data) {
-                list.add(value);
-            }
-            return list;
+        List<Double> list = new ArrayList<>(size());
+        for (double value : toDoubleArray()) {
+            list.add(value);
         }
-        return columnData;
+        return list;
     }
 
     /**
@@ -139,26 +268,38 @@ public class DoubleDataVector implements DataVector<Double> {
      */
     @Override
     public Map<String, Double> asMap() {
-        if (isRow) {
-            Map<String, Integer> map = new HashMap<>();
-            for (int i = 0; i < names.size(); i++) {
-                map.put(names.get(i), i);
-            }
-            Map<String, Double> asMap = new HashMap<>();
-            for (String name : names) {
-                asMap.put(name, data[map.get(name)]);
-            }
-            return asMap;
-        }
-        Map<String, Integer> map = new HashMap<>();
-        for (int i = 0; i < names.size(); i++) {
-            map.put(names.get(i), i);
-        }
         Map<String, Double> asMap = new HashMap<>();
-        for (String name : names) {
-            asMap.put(name, columnData.get(map.get(name)));
+        List<String> entryNames = getEntryNames();
+        for (int i = 0; i < size(); i++) {
+            asMap.put(entryNames.get(i), getDouble(i));
         }
         return asMap;
     }
 
+    /**
+     * Transform an entry name of a column vector into a position in the vector
+     *
+     * @param entryName the name of the entry, like "row_1"
+     * @return the position of the entry
+     * @throws IllegalArgumentException if the entry name does not exist
+     */
+    private int rowIndex(String entryName) {
+        if (entryName != null && entryName.startsWith("row_") && entryName.length() > 4
+                && entryName.length() < 15 && (entryName.charAt(4) != '0' || entryName.length() == 5)) {
+            long i = 0;
+            for (int k = 4; k < entryName.length(); k++) {
+                char c = entryName.charAt(k);
+                if (c < '0' || c > '9') {
+                    i = -1;
+                    break;
+                }
+                i = i * 10 + (c - '0');
+            }
+            if (i >= 0 && i < size()) {
+                return (int) i;
+            }
+        }
+        throw new IllegalArgumentException("No entry with name " + entryName);
+    }
+
 }
@@ -0,0 +1,290 @@
+import java.util.Arrays;
+
+/**
+ * A hash table that assigns a group number to every distinct key, where a key is a
+ * fixed number of double values. Groups are numbered 0, 1, 2, ... in the order in
+ * which their keys are first added, and the keys are kept in that order, so the
+ * accumulators of a group can be held in plain arrays indexed by group number.
+ *
+ * The table uses open addressing with linear probing over primitive arrays, so no
+ * key is boxed. Every slot holds the group number and the full 64-bit hash of its
+ * key. For keys of a single value the hash is a bijection of the bits of the value,
+ * so equal hashes mean equal keys and the keys are never compared.
+ *
+ * Keys are compared like Double.equals, except that 0.0 and -0.0 are the same key:
+ * all NaN values form a single group.
+ *
+ */
+final class DoubleHashTable {
+    private static final int EMPTY = -1;
+    private static final int MIN_CAPACITY = 16;
+
+    private final int width;
+    private int[] slots;
+    private long[] hashes;
+    private int mask;
+    private double[] keys;
+    private int groups;
+
+    /**
+     * This constructor creates an empty table
+     *
+     * @param width the number of values in a key
+     * @param expectedGroups the number of groups the table holds before it grows
+     */
+    DoubleHashTable(int width, int expectedGroups) {
+        this.width = width;
+        int capacity = Integer.highestOneBit(Math.max(MIN_CAPACITY, expectedGroups) * 2 - 1) << 1;
+        slots = new int[capacity];
+        Arrays.fill(slots, EMPTY);
+        hashes = new long[capacity];
+        mask = capacity - 1;
+        keys = new double[Math.max(MIN_CAPACITY, expectedGroups) * width];
+    }
+
+    /**
+     * Return the number of values in a key
+     *
+     * @return the width of the keys
+     */
+    int width() {
+        return width;
+    }
+
+    /**
+     * Return the number of distinct keys added so far
+     *
+     * @return the number of groups
+     */
+    int groupCount() {
+        return groups;
+    }
+
+    /**
+     * Return one of the values of the key of a group
+     *
+     * @param group the number of the group
+     * @param k the index of the value in the key
+     * @return the value
+     */
+    double key(int group, int k) {
+        return keys[group * width + k];
+    }
+
+    /**
+     * Return the array that holds the keys of all groups, one after the other
+     *
+     * @return the keys, of which the first groupCount() * width() values are used
+     */
+    double[] keys() {
+        return keys;
+    }
+
+    /**
+     * Add the keys of a block of rows, given as one array per value of the key, and
+     * store the group number of every row
+     *
+     * @param keyColumns the values of the keys, one array for every value of a key
+     * @param length the number of rows in the block
+     * @param out the array that receives the group number of every row
+     */
+    void addAll(double[][] keyColumns, int length, int[] out) {
+        if (width == 1) {
+            double[] column = keyColumns[0];
+            for (int i = 0; i < length; i++) {
+                out[i] = add(column[i]);
+            }
+            return;
+        }
+        double[] key = new double[width];
+        for (int i = 0; i < length; i++) {
+            for (int k = 0; k < width; k++) {
+                key[k] = keyColumns[k][i];
+            }
+            out[i] = add(key, 0);
+        }
+    }
+
+    /**
+     * Add a key of a single value
+     *
+     * @param value the key
+     * @return the number of the group of the key
+     */
+    int add(double value) {
+        long hash = mix(bits(value));
+        int slot = (int) hash & mask;
+        while (true) {
+            int group = slots[slot];
+            if (group == EMPTY) {
+                return insert(slot, hash, value);
+            }
+            if (hashes[slot] == hash) {
+                return group;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Add a key
+     *
+     * @param key the array that holds the values of the key
+     * @param offset the index of the first value of the key
+     * @return the number of the group of the key
+     */
+    int add(double[] key, int offset) {
+        if (width == 1) {
+            return add(key[offset]);
+        }
+        long hash = hash(key, offset, width);
+        int slot = (int) hash & mask;
+        while (true) {
+            int group = slots[slot];
+            if (group == EMPTY) {
+                slots[slot] = groups;
+                hashes[slot] = hash;
+                ensureKeyCapacity();
+                for (int k = 0; k < width; k++) {
+                    keys[groups * width + k] = key[offset + k] + 0.0;
+                }
+                return grow();
+            }
+            if (hashes[slot] == hash && equalKey(group, key, offset)) {
+                return group;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Find the group of a key of a single value without adding it
+     *
+     * @param value the key
+     * @return the number of the group of the key, or -1 if the key was never added
+     */
+    int find(double value) {
+        long hash = mix(bits(value));
+        int slot = (int) hash & mask;
+        while (true) {
+            int group = slots[slot];
+            if (group == EMPTY) {
+                return -1;
+            }
+            if (hashes[slot] == hash) {
+                return group;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Find the group of a key without adding it
+     *
+     * @param key the array that holds the values of the key
+     * @param offset the index of the first value of the key
+     * @return the number of the group of the key, or -1 if the key was never added
+     */
+    int find(double[] key, int offset) {
+        long hash = hash(key, offset, width);
+        int slot = (int) hash & mask;
+        while (true) {
+            int group = slots[slot];
+            if (group == EMPTY) {
+                return -1;
+            }
+            if (hashes[slot] == hash && (width == 1 || equalKey(group, key, offset))) {
+                return group;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Return the hash of a key, as used by the table. The table selects a slot by the
+     * low bits of the hash, so the high bits can be used to partition keys.
+     *
+     * @param key the array that holds the values of the key
+     * @param offset the index of the first value of the key
+     * @param width the number of values in the key
+     * @return the hash of the key
+     */
+    static long hash(double[] key, int offset, int width) {
+        long hash = 0;
+        for (int k = 0; k < width; k++) {
+            hash = mix(hash * 31 + bits(key[offset + k]));
+        }
+        return hash;
+    }
+
+    private int insert(int slot, long hash, double value) {
+        slots[slot] = groups;
+        hashes[slot] = hash;
+        ensureKeyCapacity();
+        keys[groups] = value + 0.0;
+        return grow();
+    }
+
+    private boolean equalKey(int group, double[] key, int offset) {
+        for (int k = 0; k < width; k++) {
+            if (bits(keys[group * width + k]) != bits(key[offset + k])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void ensureKeyCapacity() {
+        if ((groups + 1) * width > keys.length) {
+            keys = Arrays.copyOf(keys, keys.length * 2);
+        }
+    }
+
+    /**
+     * Count the group that was just inserted and rehash when the table is half full
+     *
+     * @return the number of the inserted group
+     */
+    private int grow() {
+        int group = groups++;
+        if (groups * 2 > slots.length) {
+            int[] oldSlots = slots;
+            long[] oldHashes = hashes;
+            slots = new int[oldSlots.length * 2];
+            Arrays.fill(slots, EMPTY);
+            hashes = new long[slots.length];
+            mask = slots.length - 1;
+            for (int s = 0; s < oldSlots.length; s++) {
+                if (oldSlots[s] != EMPTY) {
+                    int slot = (int) oldHashes[s] & mask;
+                    while (slots[slot] != EMPTY) {
+                        slot = (slot + 1) & mask;
+                    }
+                    slots[slot] = oldSlots[s];
+                    hashes[slot] = oldHashes[s];
+                }
+            }
+        }
+        return group;
+    }
+
+    /**
+     * Return the bits of a value, with a single representation for zero and for NaN
+     */
+    private static long bits(double value) {
+        return Double.doubleToLongBits(value + 0.0);
+    }
+
+    /**
+     * Spread the bits of a value over the hash, the finalizer of MurmurHash3. It is a
+     * bijection, so different values never get the same hash.
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,408 @@
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A double storage holds the values of a DoubleDataFrame as a matrix of
+ * primitive doubles, addressed by row and column index.
+ *
+ * Implementations decide how the matrix is laid out in memory. The data frame
+ * only talks to its storage through this class, so the same data frame
+ * operations work regardless of the chosen layout, while every implementation
+ * can perform the bulk operations (copying, projecting, selecting) in the way
+ * that is most efficient for its own layout.
+ *
+ * A storage can be shared by views, see {@link ViewStorage}. Before a value of a
+ * shared storage is changed, every view copies the values it shows, so views and
+ * storage never see each other's changes.
+ *
+ * A storage can also hold an index for some of its columns, see {@link ColumnIndex}.
+ * The indexes belong to the storage, so every data frame sharing the storage uses
+ * them, and values set through {@link #update(int, int, double)} keep them current.
+ * The same holds for the maintained statistics of a column, see {@link ColumnSummary}.
+ *
+ */
+abstract class DoubleStorage {
+
+    /**
+     * The views that read the values of this storage, or null if there are none
+     */
+    private List<WeakReference<ViewStorage>> views;
+
+    /**
+     * The indexes of the columns of this storage by column, or null if there are none
+     */
+    private Map<Integer, ColumnIndex> indexes;
+
+    /**
+     * The maintained statistics of the columns of this storage by column, or null if
+     * there are none
+     */
+    private Map<Integer, ColumnSummary> summaries;
+
+    /**
+     * Return the number of rows held by this storage
+     *
+     * @return the number of rows
+     */
+    abstract int rowCount();
+
+    /**
+     * Return the number of columns held by this storage
+     *
+     * @return the number of columns
+     */
+    abstract int columnCount();
+
+    /**
+     * Return the layout used by this storage
+     *
+     * @return the memory layout of the values
+     */
+    abstract DoubleDataFrame.Layout layout();
+
+    /**
+     * Retrieve the value stored at a given position
+     *
+     * @param row the row index of the value
+     * @param col the column index of the value
+     * @return the value at the given position
+     */
+    abstract double get(int row, int col);
+
+    /**
+     * Store a value at a given position
+     *
+     * @param row the row index of the value
+     * @param col the column index of the value
+     * @param value the new value
+     */
+    abstract void set(int row, int col, double value);
+
+    /**
+     * Return an array with the values of a column. If the values of the column are
+     * stored contiguously, the backing array itself is returned, so the result must
+     * be treated as read only.
+     *
+     * @param col the index of the column
+     * @return an array holding the values of the column
+     */
+    abstract double[] column(int col);
+
+    /**
+     * Return an array with the values of a row. If the values of the row are
+     * stored contiguously, the backing array itself is returned, so the result must
+     * be treated as read only.
+     *
+     * @param row the index of the row
+     * @return an array holding the values of the row
+     */
+    abstract double[] row(int row);
+
+    /**
+     * Copy the values of an array into a range of rows of a column
+     *
+     * @param col the index of the column
+     * @param from the index of the first row to set
+     * @param to the index after the last row to set
+     * @param source the array holding the values, starting at index 0
+     */
+    void setColumn(int col, int from, int to, double[] source) {
+        for (int i = from; i < to; i++) {
+            set(i, col, source[i - from]);
+        }
+    }
+
+    /**
+     * Copy the values of a range of rows of a column into an array
+     *
+     * @param col the index of the column
+     * @param from the index of the first row to copy
+     * @param to the index after the last row to copy
+     * @param target the array that receives the values, starting at index 0
+     */
+    void copyColumn(int col, int from, int to, double[] target) {
+        for (int i = from; i < to; i++) {
+            target[i - from] = get(i, col);
+        }
+    }
+
+    /**
+     * Return a new array with the values of a column, which is never the backing
+     * array of this storage
+     *
+     * @param col the index of the column
+     * @return a newly created array holding the values of the column
+     */
+    double[] columnCopy(int col) {
+        return column(col).clone();
+    }
+
+    /**
+     * Return a new array with the values of a row, which is never the backing
+     * array of this storage
+     *
+     * @param row the index of the row
+     * @return a newly created array holding the values of the row
+     */
+    double[] rowCopy(int row) {
+        return row(row).clone();
+    }
+
+    /**
+     * Create a copy of this storage with additional rows and columns. The new
+     * entries are filled with zeros.
+     *
+     * @param additionalRows the number of rows to add at the bottom
+     * @param additionalCols the number of columns to add at the right side
+     * @return a new, independent storage
+     */
+    abstract DoubleStorage expand(int additionalRows, int additionalCols);
+
+    /**
+     * Create a copy of this storage that only holds the given columns, in the
+     * given order
+     *
+     * @param columns the indices of the columns to retain
+     * @return a new, independent storage
+     */
+    abstract DoubleStorage project(int[] columns);
+
+    /**
+     * Create a copy of this storage that only holds the given rows, in the given
+     * order
+     *
+     * @param rows array holding the indices of the rows to retain
+     * @param count the number of entries of the rows array that are used
+     * @return a new, independent storage
+     */
+    abstract DoubleStorage select(int[] rows, int count);
+
+    /**
+     * Create a copy of this storage with one additional column at the right side
+     *
+     * @param values the values of the new column, one for every row
+     * @return a new, independent storage
+     */
+    abstract DoubleStorage appendColumn(double[] values);
+
+    /**
+     * Create a view that only shows the given columns of this storage, in the given
+     * order, without copying any value
+     *
+     * @param columns the indices of the columns to retain
+     * @return a view on this storage
+     */
+    DoubleStorage projectView(int[] columns) {
+        return new ViewStorage(this, null, rowCount(), columns.clone(), columns.length);
+    }
+
+    /**
+     * Create a view that only shows the given rows of this storage, in the given
+     * order, without copying any value
+     *
+     * @param rows array holding the indices of the rows to retain
+     * @param count the number of entries of the rows array that are used
+     * @return a view on this storage
+     */
+    DoubleStorage selectView(int[] rows, int count) {
+        return new ViewStorage(this, Arrays.copyOf(rows, count), count, null, columnCount());
+    }
+
+    /**
+     * Create a view that shows this storage with additional rows and columns filled
+     * with zeros, without copying any value
+     *
+     * @param additionalRows the number of rows to add at the bottom
+     * @param additionalCols the number of columns to add at the right side
+     * @return a view on this storage
+     */
+    DoubleStorage expandView(int additionalRows, int additionalCols) {
+        return new ViewStorage(this, null, rowCount() + additionalRows, null, columnCount() + additionalCols);
+    }
+
+    /**
+     * Create an empty storage of the same kind as this storage, filled with zeros.
+     * By default a storage on the heap with the layout of this storage is created.
+     *
+     * @param rows the number of rows
+     * @param cols the number of columns
+     * @return a new storage
+     */
+    DoubleStorage allocate(int rows, int cols) {
+        return create(layout(), rows, cols);
+    }
+
+    /**
+     * Register a view that reads the values of this storage
+     *
+     * @param view the view on this storage
+     */
+    void addView(ViewStorage view) {
+        if (views == null) {
+            views = new ArrayList<>();
+        } else if (views.size() % 16 == 0) {
+            views.removeIf(reference -> reference.get() == null);
+        }
+        views.add(new WeakReference<>(view));
+    }
+
+    /**
+     * Return the index of a column
+     *
+     * @param col the index of the column
+     * @return the index of the column, or null if the column has no index
+     */
+    ColumnIndex index(int col) {
+        return indexes == null ? null : indexes.get(col);
+    }
+
+    /**
+     * Return whether any column of this storage has an index
+     *
+     * @return true if there is at least one index
+     */
+    boolean hasIndexes() {
+        return indexes != null && !indexes.isEmpty();
+    }
+
+    /**
+     * Set or remove the index of a column
+     *
+     * @param col the index of the column
+     * @param index the index for the column, or null to remove the index
+     */
+    void setIndex(int col, ColumnIndex index) {
+        if (index == null) {
+            if (indexes != null) {
+                indexes.remove(col);
+            }
+            return;
+        }
+        if (indexes == null) {
+            indexes = new HashMap<>();
+        }
+        indexes.put(col, index);
+    }
+
+    /**
+     * Return the maintained statistics of a column
+     *
+     * @param col the index of the column
+     * @return the summary of the column, or null if the column has no summary
+     */
+    ColumnSummary summary(int col) {
+        return summaries == null ? null : summaries.get(col);
+    }
+
+    /**
+     * Set or remove the maintained statistics of a column
+     *
+     * @param col the index of the column
+     * @param summary the summary for the column, or null to remove the summary
+     */
+    void setSummary(int col, ColumnSummary summary) {
+        if (summary == null) {
+            if (summaries != null) {
+                summaries.remove(col);
+            }
+            return;
+        }
+        if (summaries == null) {
+            summaries = new HashMap<>();
+        }
+        summaries.put(col, summary);
+    }
+
+    /**
+     * Set the value at a row and column and update the index and the summary of the
+     * column
+     *
+     * @param row the index of the row
+     * @param col the index of the column
+     * @param value the new value
+     */
+    void update(int row, int col, double value) {
+        ColumnIndex index = index(col);
+        ColumnSummary summary = summary(col);
+        if (index == null && summary == null) {
+            set(row, col, value);
+            return;
+        }
+        double oldValue = get(row, col);
+        set(row, col, value);
+        if (index != null) {
+            index.update(row, oldValue, value);
+        }
+        if (summary != null) {
+            summary.update(oldValue, value);
+        }
+    }
+
+    /**
+     * Prepare for a change of a value: every view on this storage copies the values
+     * it shows, so the change is not visible through the views. Implementations call
+     * this method before they change a value.
+     */
+    final void beforeWrite() {
+        if (views == null) {
+            return;
+        }
+        List<WeakReference<ViewStorage>> detached = views;
+        views = null;
+        for (WeakReference<ViewStorage> reference : detached) {
+            ViewStorage view = reference.get();
+            if (view != null) {
+                view.detach();
+            }
+        }
+    }
+
+    /**
+     * Release the resources held by this storage. Storages on the heap hold no
+     * resources, so by default nothing happens.
+     */
+    void close() {
+    }
+
+    /**
+     * Create an empty storage with the given layout, filled with zeros
+     *
+     * @param layout the memory layout of the new storage
+     * @param rows the number of rows
+     * @param cols the number of columns
+     * @return a new storage
+     */
+    static DoubleStorage create(DoubleDataFrame.Layout layout, int rows, int cols) {
+        if (layout == DoubleDataFrame.Layout.COLUMN_MAJOR) {
+            return new ColumnStorage(new double[cols][rows], rows);
+        }
+        return new RowStorage(new double[rows][cols], cols);
+    }
+
+    /**
+     * Create a storage with the given layout from a row based matrix. The values
+     * are copied when the layout requires it, otherwise the matrix is used as is.
+     *
+     * @param layout the memory layout of the new storage
+     * @param data the values of the matrix, indexed by row first
+     * @param cols the number of columns of the matrix
+     * @return a new storage
+     */
+    static DoubleStorage fromRows(DoubleDataFrame.Layout layout, double[][] data, int cols) {
+        if (layout == DoubleDataFrame.Layout.COLUMN_MAJOR) {
+            double[][] columns = new double[cols][data.length];
+            for (int i = 0; i < data.length; i++) {
+                double[] row = data[i];
+                for (int j = 0; j < cols; j++) {
+                    columns[j][i] = row[j];
+                }
+            }
+            return new ColumnStorage(columns, data.length);
+        }
+        return new RowStorage(data, cols);
+    }
+}
@@ -0,0 +1,37 @@
+/**
+ * A double vector is a data vector that stores primitive double values. Next to
+ * the methods of the DataVector interface, which work with boxed values and entry
+ * names, it provides positional access to the primitive values, so that hot loops
+ * over large vectors do not have to box every value or look up every entry by its
+ * name.
+ *
+ * Implementations are typically views on the storage of a data frame, so reading
+ * a double vector does not copy the underlying data.
+ *
+ */
+public interface DoubleVector extends DataVector<Double>
+{
+
+	/**
+	 * The number of entries in this vector
+	 *
+	 * @return the number of entries
+	 */
+	int size();
+
+	/**
+	 * Getter for the primitive value of the entry at a given position.
+	 *
+	 * @param index the position of the entry, between 0 and size() - 1
+	 * @return the value of the entry at the given position
+	 * @throws IndexOutOfBoundsException if the index is illegal
+	 */
+	double getDouble(int index) throws IndexOutOfBoundsException;
+
+	/**
+	 * Copies the values of all entries in this vector into a new array.
+	 *
+	 * @return a newly created array holding the values of this vector
+	 */
+	double[] toDoubleArray();
+}
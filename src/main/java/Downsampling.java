@@ -0,0 +1,232 @@
+import java.util.Arrays;
+
+/**
+ * Reduces a series of points to a number of points that can be drawn, keeping its
+ * visual shape. Every method returns the indices of the kept points in ascending
+ * order, so the caller gathers the x and y values it needs.
+ *
+ * Largest-Triangle-Three-Buckets (LTTB) splits the points in buckets and keeps from
+ * every bucket the point that forms the largest triangle with the point kept from the
+ * previous bucket and the average of the next bucket, which keeps the peaks and
+ * troughs of a line. Its buckets hold equal numbers of points, or span equal ranges
+ * of x values, which keeps the same weight for parts of a series that were already
+ * reduced and parts that were not. Min/max bucketing keeps the smallest and the largest value of
+ * every bucket, which keeps all extremes and needs no x values.
+ *
+ */
+final class Downsampling {
+
+    private Downsampling() {
+    }
+
+    /**
+     * Move the points of which x or y is NaN out of the way, keeping the order of the
+     * other points
+     *
+     * @param x the x values, changed in place
+     * @param y the y values, changed in place
+     * @param length the number of points
+     * @return the number of points left at the start of the arrays
+     */
+    static int dropNaN(double[] x, double[] y, int length) {
+        int count = 0;
+        for (int i = 0; i < length; i++) {
+            if (x[i] == x[i] && y[i] == y[i]) {
+                x[count] = x[i];
+                y[count] = y[i];
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Select points with Largest-Triangle-Three-Buckets
+     *
+     * @param x the x values, which should be ascending for a meaningful result
+     * @param y the y values
+     * @param length the number of points
+     * @param threshold the number of points to keep, at least 3
+     * @return the indices of the kept points, all points if there are at most
+     *         threshold points
+     */
+    static int[] lttb(double[] x, double[] y, int length, int threshold) {
+        if (length <= threshold) {
+            return all(length);
+        }
+        int[] sampled = new int[threshold];
+        double every = (double) (length - 2) / (threshold - 2);
+        int a = 0;
+        int count = 0;
+        sampled[count++] = 0;
+        for (int i = 0; i < threshold - 2; i++) {
+            int averageFrom = (int) ((i + 1) * every) + 1;
+            int averageTo = Math.min((int) ((i + 2) * every) + 1, length);
+            double averageX = 0;
+            double averageY = 0;
+            for (int j = averageFrom; j < averageTo; j++) {
+                averageX += x[j];
+                averageY += y[j];
+            }
+            averageX /= averageTo - averageFrom;
+            averageY /= averageTo - averageFrom;
+
+            int from = (int) (i * every) + 1;
+            int to = (int) ((i + 1) * every) + 1;
+            double ax = x[a];
+            double ay = y[a];
+            double maxArea = -1;
+            int next = from;
+            for (int j = from; j < to; j++) {
+                double area = Math.abs((ax - averageX) * (y[j] - ay) - (ax - x[j]) * (averageY - ay));
+                if (area > maxArea) {
+                    maxArea = area;
+                    next = j;
+                }
+            }
+            sampled[count++] = next;
+            a = next;
+        }
+        sampled[count] = length - 1;
+        return sampled;
+    }
+
+    /**
+     * Select points with Largest-Triangle-Three-Buckets, with buckets that span equal
+     * ranges of x values instead of equal numbers of points. Buckets without points
+     * keep no point, so fewer points may be kept than the threshold.
+     *
+     * @param x the x values, which should be ascending
+     * @param y the y values
+     * @param length the number of points
+     * @param threshold the largest number of points to keep, at least 3
+     * @return the indices of the kept points, all points if there are at most
+     *         threshold points
+     */
+    static int[] lttbByRange(double[] x, double[] y, int length, int threshold) {
+        if (length <= threshold) {
+            return all(length);
+        }
+        double first = x[0];
+        double last = x[length - 1];
+        if (!(last > first)) {
+            return lttb(x, y, length, threshold);
+        }
+        int buckets = threshold - 2;
+        double width = (last - first) / buckets;
+        // bucket b holds the points from bounds[b] up to bounds[b + 1]
+        int[] bounds = new int[buckets + 1];
+        bounds[0] = 1;
+        bounds[buckets] = length - 1;
+        int j = 1;
+        for (int b = 1; b < buckets; b++) {
+            double limit = first + b * width;
+            while (j < length - 1 && x[j] < limit) {
+                j++;
+            }
+            bounds[b] = j;
+        }
+        int[] sampled = new int[threshold];
+        int a = 0;
+        int count = 0;
+        sampled[count++] = 0;
+        for (int b = 0; b < buckets; b++) {
+            int from = bounds[b];
+            int to = bounds[b + 1];
+            if (from == to) {
+                continue;
+            }
+            int nextBucket = b + 1;
+            while (nextBucket < buckets && bounds[nextBucket] == bounds[nextBucket + 1]) {
+                nextBucket++;
+            }
+            double averageX = x[length - 1];
+            double averageY = y[length - 1];
+            if (nextBucket < buckets) {
+                int averageFrom = bounds[nextBucket];
+                int averageTo = bounds[nextBucket + 1];
+                averageX = 0;
+                averageY = 0;
+                for (int k = averageFrom; k < averageTo; k++) {
+                    averageX += x[k];
+                    averageY += y[k];
+                }
+                averageX /= averageTo - averageFrom;
+                averageY /= averageTo - averageFrom;
+            }
+            double ax = x[a];
+            double ay = y[a];
+            double maxArea = -1;
+            int next = from;
+            for (int k = from; k < to; k++) {
+                double area = Math.abs((ax - averageX) * (y[k] - ay) - (ax - x[k]) * (averageY - ay));
+                if (area > maxArea) {
+                    maxArea = area;
+                    next = k;
+                }
+            }
+            sampled[count++] = next;
+            a = next;
+        }
+        sampled[count++] = length - 1;
+        return count == sampled.length ? sampled : Arrays.copyOf(sampled, count);
+    }
+
+    /**
+     * Select the points with the smallest and the largest y value of every bucket
+     *
+     * @param y the y values
+     * @param length the number of points
+     * @param buckets the number of buckets, at least 1
+     * @return the indices of the kept points, at most two per bucket, or all points if
+     *         there are at most two per bucket
+     */
+    static int[] minMax(double[] y, int length, int buckets) {
+        if (length <= 2 * buckets) {
+            return all(length);
+        }
+        int[] sampled = new int[2 * buckets];
+        int count = 0;
+        for (int b = 0; b < buckets; b++) {
+            int from = (int) ((long) length * b / buckets);
+            int to = (int) ((long) length * (b + 1) / buckets);
+            int min = from;
+            int max = from;
+            for (int j = from + 1; j < to; j++) {
+                if (y[j] < y[min]) {
+                    min = j;
+                } else if (y[j] > y[max]) {
+                    max = j;
+                }
+            }
+            sampled[count++] = Math.min(min, max);
+            if (min != max) {
+                sampled[count++] = Math.max(min, max);
+            }
+        }
+        return count == sampled.length ? sampled : Arrays.copyOf(sampled, count);
+    }
+
+    /**
+     * Gather the values at some indices
+     *
+     * @param values the values
+     * @param indices the indices of the values to gather
+     * @return a new array with the gathered values
+     */
+    static double[] gather(double[] values, int[] indices) {
+        double[] result = new double[indices.length];
+        for (int k = 0; k < indices.length; k++) {
+            result[k] = values[indices[k]];
+        }
+        return result;
+    }
+
+    private static int[] all(int length) {
+        int[] indices = new int[length];
+        for (int i = 0; i < length; i++) {
+            indices[i] = i;
+        }
+        return indices;
+    }
+}
@@ -0,0 +1,712 @@
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * An expression describes how to compute a value from the columns of a row, such
+ * as {@code Expression.col("revenue").minus(Expression.col("costs"))}.
+ *
+ * Unlike a Function that is applied to every row vector, an expression is compiled
+ * by the data frame into loops over blocks of primitive column values: every node of
+ * the expression processes a whole block of rows at once in a simple counted loop,
+ * which the JIT compiler turns into SIMD instructions. No row vectors are created,
+ * no values are boxed and column names are only looked up once.
+ *
+ */
+public abstract class Expression {
+
+    /**
+     * The number of rows that is processed at once by every node of an expression.
+     * The buffers of a block fit comfortably in the level 1 cache.
+     */
+    static final int BLOCK_SIZE = 1024;
+
+    /**
+     * The operations that combine two values
+     */
+    private enum BinaryOp {
+        PLUS, MINUS, TIMES, DIVIDE, MIN, MAX, POW
+    }
+
+    /**
+     * The operations that transform a single value
+     */
+    private enum UnaryOp {
+        NEGATE, ABS, SQRT, LOG, EXP
+    }
+
+    Expression() {
+    }
+
+    /**
+     * Create an expression that refers to the values of a column
+     *
+     * @param name the name of the column
+     * @return the column expression
+     */
+    public static Expression col(String name) {
+        return new Column(Objects.requireNonNull(name));
+    }
+
+    /**
+     * Create an expression with a constant value
+     *
+     * @param value the constant value
+     * @return the literal expression
+     */
+    public static Expression lit(double value) {
+        return new Literal(value);
+    }
+
+    /**
+     * Create an expression for the sum of this expression and another expression
+     *
+     * @param other the expression to add
+     * @return the combined expression
+     */
+    public Expression plus(Expression other) {
+        return new Binary(BinaryOp.PLUS, this, other);
+    }
+
+    /**
+     * Create an expression for the sum of this expression and a constant
+     *
+     * @param value the constant to add
+     * @return the combined expression
+     */
+    public Expression plus(double value) {
+        return plus(lit(value));
+    }
+
+    /**
+     * Create an expression for the difference of this expression and another expression
+     *
+     * @param other the expression to subtract
+     * @return the combined expression
+     */
+    public Expression minus(Expression other) {
+        return new Binary(BinaryOp.MINUS, this, other);
+    }
+
+    /**
+     * Create an expression for the difference of this expression and a constant
+     *
+     * @param value the constant to subtract
+     * @return the combined expression
+     */
+    public Expression minus(double value) {
+        return minus(lit(value));
+    }
+
+    /**
+     * Create an expression for the product of this expression and another expression
+     *
+     * @param other the expression to multiply with
+     * @return the combined expression
+     */
+    public Expression times(Expression other) {
+        return new Binary(BinaryOp.TIMES, this, other);
+    }
+
+    /**
+     * Create an expression for the product of this expression and a constant
+     *
+     * @param value the constant to multiply with
+     * @return the combined expression
+     */
+    public Expression times(double value) {
+        return times(lit(value));
+    }
+
+    /**
+     * Create an expression for the quotient of this expression and another expression
+     *
+     * @param other the expression to divide by
+     * @return the combined expression
+     */
+    public Expression div(Expression other) {
+        return new Binary(BinaryOp.DIVIDE, this, other);
+    }
+
+    /**
+     * Create an expression for the quotient of this expression and a constant
+     *
+     * @param value the constant to divide by
+     * @return the combined expression
+     */
+    public Expression div(double value) {
+        return div(lit(value));
+    }
+
+    /**
+     * Create an expression for the smallest of this expression and another expression
+     *
+     * @param other the expression to compare with
+     * @return the combined expression
+     */
+    public Expression min(Expression other) {
+        return new Binary(BinaryOp.MIN, this, other);
+    }
+
+    /**
+     * Create an expression for the largest of this expression and another expression
+     *
+     * @param other the expression to compare with
+     * @return the combined expression
+     */
+    public Expression max(Expression other) {
+        return new Binary(BinaryOp.MAX, this, other);
+    }
+
+    /**
+     * Create an expression for this expression raised to a constant power
+     *
+     * @param exponent the power
+     * @return the combined expression
+     */
+    public Expression pow(double exponent) {
+        return new Binary(BinaryOp.POW, this, lit(exponent));
+    }
+
+    /**
+     * Create an expression for the negated value of this expression
+     *
+     * @return the combined expression
+     */
+    public Expression negate() {
+        return new Unary(UnaryOp.NEGATE, this);
+    }
+
+    /**
+     * Create an expression for the absolute value of this expression
+     *
+     * @return the combined expression
+     */
+    public Expression abs() {
+        return new Unary(UnaryOp.ABS, this);
+    }
+
+    /**
+     * Create an expression for the square root of this expression
+     *
+     * @return the combined expression
+     */
+    public Expression sqrt() {
+        return new Unary(UnaryOp.SQRT, this);
+    }
+
+    /**
+     * Create an expression for the natural logarithm of this expression
+     *
+     * @return the combined expression
+     */
+    public Expression log() {
+        return new Unary(UnaryOp.LOG, this);
+    }
+
+    /**
+     * Create an expression for Euler's number raised to the power of this expression
+     *
+     * @return the combined expression
+     */
+    public Expression exp() {
+        return new Unary(UnaryOp.EXP, this);
+    }
+
+    /**
+     * Create a condition that holds when this expression is greater than another expression
+     *
+     * @param other the expression to compare with
+     * @return the condition
+     */
+    public Condition gt(Expression other) {
+        return new Condition.Comparison(Condition.CompareOp.GT, this, other);
+    }
+
+    /**
+     * Create a condition that holds when this expression is greater than a constant
+     *
+     * @param value the constant to compare with
+     * @return the condition
+     */
+    public Condition gt(double value) {
+        return gt(lit(value));
+    }
+
+    /**
+     * Create a condition that holds when this expression is greater than or equal to another expression
+     *
+     * @param other the expression to compare with
+     * @return the condition
+     */
+    public Condition ge(Expression other) {
+        return new Condition.Comparison(Condition.CompareOp.GE, this, other);
+    }
+
+    /**
+     * Create a condition that holds when this expression is greater than or equal to a constant
+     *
+     * @param value the constant to compare with
+     * @return the condition
+     */
+    public Condition ge(double value) {
+        return ge(lit(value));
+    }
+
+    /**
+     * Create a condition that holds when this expression is less than another expression
+     *
+     * @param other the expression to compare with
+     * @return the condition
+     */
+    public Condition lt(Expression other) {
+        return new Condition.Comparison(Condition.CompareOp.LT, this, other);
+    }
+
+    /**
+     * Create a condition that holds when this expression is less than a constant
+     *
+     * @param value the constant to compare with
+     * @return the condition
+     */
+    public Condition lt(double value) {
+        return lt(lit(value));
+    }
+
+    /**
+     * Create a condition that holds when this expression is less than or equal to another expression
+     *
+     * @param other the expression to compare with
+     * @return the condition
+     */
+    public Condition le(Expression other) {
+        return new Condition.Comparison(Condition.CompareOp.LE, this, other);
+    }
+
+    /**
+     * Create a condition that holds when this expression is less than or equal to a constant
+     *
+     * @param value the constant to compare with
+     * @return the condition
+     */
+    public Condition le(double value) {
+        return le(lit(value));
+    }
+
+    /**
+     * Create a condition that holds when this expression equals another expression
+     *
+     * @param other the expression to compare with
+     * @return the condition
+     */
+    public Condition eq(Expression other) {
+        return new Condition.Comparison(Condition.CompareOp.EQ, this, other);
+    }
+
+    /**
+     * Create a condition that holds when this expression equals a constant
+     *
+     * @param value the constant to compare with
+     * @return the condition
+     */
+    public Condition eq(double value) {
+        return eq(lit(value));
+    }
+
+    /**
+     * Create a condition that holds when this expression does not equal another expression
+     *
+     * @param other the expression to compare with
+     * @return the condition
+     */
+    public Condition ne(Expression other) {
+        return new Condition.Comparison(Condition.CompareOp.NE, this, other);
+    }
+
+    /**
+     * Create a condition that holds when this expression does not equal a constant
+     *
+     * @param value the constant to compare with
+     * @return the condition
+     */
+    public Condition ne(double value) {
+        return ne(lit(value));
+    }
+
+    /**
+     * Create a condition that holds when this expression lies between two constants,
+     * both inclusive
+     *
+     * @param low the lower bound
+     * @param high the upper bound
+     * @return the condition
+     */
+    public Condition between(double low, double high) {
+        return new Condition.Between(this, low, high);
+    }
+
+    /**
+     * Create a condition that holds when this expression is NaN
+     *
+     * @return the condition
+     */
+    public Condition isNaN() {
+        return new Condition.IsNaN(this);
+    }
+
+    /**
+     * Compile this expression for the columns of a schema. The resulting kernel holds
+     * its own buffers, so it must only be used by a single thread.
+     *
+     * @param schema the schema used to look up the column names
+     * @return the compiled expression
+     * @throws IllegalArgumentException if the expression refers to a column that does not exist
+     */
+    abstract Kernel compile(Schema schema) throws IllegalArgumentException;
+
+    /**
+     * Return the name of the column this expression reads, if it does nothing else
+     *
+     * @return the name of the column, or null if this expression is not a plain column
+     */
+    String columnName() {
+        return null;
+    }
+
+    /**
+     * Return whether this expression is a constant
+     *
+     * @return true if this expression is a literal
+     */
+    boolean isLiteral() {
+        return false;
+    }
+
+    /**
+     * Return the value of a constant expression
+     *
+     * @return the value of the literal
+     * @throws UnsupportedOperationException if this expression is not a literal
+     */
+    double literal() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Evaluate this expression for every row of a storage
+     *
+     * @param schema the schema with the names of the columns of the storage
+     * @param storage the storage that holds the values of the columns
+     * @param values the array that receives the value for every row
+     * @param from the index of the first row to evaluate
+     * @param to the index after the last row to evaluate
+     * @throws IllegalArgumentException if the expression refers to a column that does not exist
+     */
+    void evaluate(Schema schema, DoubleStorage storage, double[] values, int from, int to)
+            throws IllegalArgumentException {
+        Kernel kernel = compile(schema);
+        double[] block = new double[BLOCK_SIZE];
+        for (int start = from; start < to; start += BLOCK_SIZE) {
+            int length = Math.min(BLOCK_SIZE, to - start);
+            kernel.evaluate(storage, start, length, block);
+            System.arraycopy(block, 0, values, start, length);
+        }
+    }
+
+    /**
+     * An expression compiled against a schema, that evaluates blocks of rows
+     */
+    abstract static class Kernel {
+
+        /**
+         * Evaluate the expression for a block of rows
+         *
+         * @param storage the storage that holds the values of the columns
+         * @param from the index of the first row of the block
+         * @param length the number of rows in the block, at most BLOCK_SIZE
+         * @param out the array that receives the values, starting at index 0
+         */
+        abstract void evaluate(DoubleStorage storage, int from, int length, double[] out);
+
+        /**
+         * Return whether this kernel always produces the same value
+         *
+         * @return true for a constant
+         */
+        boolean isConstant() {
+            return false;
+        }
+
+        /**
+         * Return the value of a constant kernel
+         *
+         * @return the constant value
+         */
+        double constant() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static final class Column extends Expression {
+        private final String name;
+
+        Column(String name) {
+            this.name = name;
+        }
+
+        @Override
+        Kernel compile(Schema schema) {
+            int col = schema.columnIndex(name);
+            return new Kernel() {
+                @Override
+                void evaluate(DoubleStorage storage, int from, int length, double[] out) {
+                    storage.copyColumn(col, from, from + length, out);
+                }
+            };
+        }
+
+        @Override
+        String columnName() {
+            return name;
+        }
+
+        @Override
+        public String toString() {
+            return "col(" + name + ")";
+        }
+    }
+
+    private static final class Literal extends Expression {
+        private final double value;
+
+        Literal(double value) {
+            this.value = value;
+        }
+
+        @Override
+        Kernel compile(Schema schema) {
+            return new Kernel() {
+                @Override
+                void evaluate(DoubleStorage storage, int from, int length, double[] out) {
+                    Arrays.fill(out, 0, length, value);
+                }
+
+                @Override
+                boolean isConstant() {
+                    return true;
+                }
+
+                @Override
+                double constant() {
+                    return value;
+                }
+            };
+        }
+
+        @Override
+        boolean isLiteral() {
+            return true;
+        }
+
+        @Override
+        double literal() {
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            return Double.toString(value);
+        }
+    }
+
+    private static final class Binary extends Expression {
+        private final BinaryOp op;
+        private final Expression left;
+        private final Expression right;
+
+        Binary(BinaryOp op, Expression left, Expression right) {
+            this.op = op;
+            this.left = Objects.requireNonNull(left);
+            this.right = Objects.requireNonNull(right);
+        }
+
+        @Override
+        Kernel compile(Schema schema) {
+            Kernel l = left.compile(schema);
+            Kernel r = right.compile(schema);
+            if (r.isConstant()) {
+                double value = r.constant();
+                return new Kernel() {
+                    @Override
+                    void evaluate(DoubleStorage storage, int from, int length, double[] out) {
+                        l.evaluate(storage, from, length, out);
+                        applyScalar(op, out, value, length);
+                    }
+                };
+            }
+            double[] buffer = new double[BLOCK_SIZE];
+            return new Kernel() {
+                @Override
+                void evaluate(DoubleStorage storage, int from, int length, double[] out) {
+                    l.evaluate(storage, from, length, out);
+                    r.evaluate(storage, from, length, buffer);
+                    apply(op, out, buffer, length);
+                }
+            };
+        }
+
+        @Override
+        public String toString() {
+            return op.name().toLowerCase() + "(" + left + ", " + right + ")";
+        }
+    }
+
+    private static final class Unary extends Expression {
+        private final UnaryOp op;
+        private final Expression child;
+
+        Unary(UnaryOp op, Expression child) {
+            this.op = op;
+            this.child = child;
+        }
+
+        @Override
+        Kernel compile(Schema schema) {
+            Kernel c = child.compile(schema);
+            return new Kernel() {
+                @Override
+                void evaluate(DoubleStorage storage, int from, int length, double[] out) {
+                    c.evaluate(storage, from, length, out);
+                    apply(op, out, length);
+                }
+            };
+        }
+
+        @Override
+        public String toString() {
+            return op.name().toLowerCase() + "(" + child + ")";
+        }
+    }
+
+    /**
+     * Combine two blocks of values, storing the result in the first block. Every
+     * operation has its own loop, so that each loop can be vectorized.
+     */
+    private static void apply(BinaryOp op, double[] a, double[] b, int length) {
+        switch (op) {
+            case PLUS:
+                for (int i = 0; i < length; i++) {
+                    a[i] += b[i];
+                }
+                break;
+            case MINUS:
+                for (int i = 0; i < length; i++) {
+                    a[i] -= b[i];
+                }
+                break;
+            case TIMES:
+                for (int i = 0; i < length; i++) {
+                    a[i] *= b[i];
+                }
+                break;
+            case DIVIDE:
+                for (int i = 0; i < length; i++) {
+                    a[i] /= b[i];
+                }
+                break;
+            case MIN:
+                for (int i = 0; i < length; i++) {
+                    a[i] = Math.min(a[i], b[i]);
+                }
+                break;
+            case MAX:
+                for (int i = 0; i < length; i++) {
+                    a[i] = Math.max(a[i], b[i]);
+                }
+                break;
+            default:
+                for (int i = 0; i < length; i++) {
+                    a[i] = Math.pow(a[i], b[i]);
+                }
+        }
+    }
+
+    /**
+     * Combine a block of values with a constant, storing the result in the block
+     */
+    private static void applyScalar(BinaryOp op, double[] a, double b, int length) {
+        switch (op) {
+            case PLUS:
+                for (int i = 0; i < length; i++) {
+                    a[i] += b;
+                }
+                break;
+            case MINUS:
+                for (int i = 0; i < length; i++) {
+                    a[i] -= b;
+                }
+                break;
+            case TIMES:
+                for (int i = 0; i < length; i++) {
+                    a[i] *= b;
+                }
+                break;
+            case DIVIDE:
+                for (int i = 0; i < length; i++) {
+                    a[i] /= b;
+                }
+                break;
+            case MIN:
+                for (int i = 0; i < length; i++) {
+                    a[i] = Math.min(a[i], b);
+                }
+                break;
+            case MAX:
+                for (int i = 0; i < length; i++) {
+                    a[i] = Math.max(a[i], b);
+                }
+                break;
+            default:
+                if (b == 2) {
+                    for (int i = 0; i < length; i++) {
+                        a[i] *= a[i];
+                    }
+                } else {
+                    for (int i = 0; i < length; i++) {
+                        a[i] = Math.pow(a[i], b);
+                    }
+                }
+        }
+    }
+
+    /**
+     * Transform a block of values in place
+     */
+    private static void apply(UnaryOp op, double[] a, int length) {
+        switch (op) {
+            case NEGATE:
+                for (int i = 0; i < length; i++) {
+                    a[i] = -a[i];
+                }
+                break;
+            case ABS:
+                for (int i = 0; i < length; i++) {
+                    a[i] = Math.abs(a[i]);
+                }
+                break;
+            case SQRT:
+                for (int i = 0; i < length; i++) {
+                    a[i] = Math.sqrt(a[i]);
+                }
+                break;
+            case LOG:
+                for (int i = 0; i < length; i++) {
+                    a[i] = Math.log(a[i]);
+                }
+                break;
+            default:
+                for (int i = 0; i < length; i++) {
+                    a[i] = Math.exp(a[i]);
+                }
+        }
+    }
+}
@@ -0,0 +1,653 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.DecompositionSolver;
+import org.apache.commons.math3.linear.EigenDecomposition;
+import org.apache.commons.math3.linear.QRDecomposition;
+import org.apache.commons.math3.linear.RealMatrix;
+
+/**
+ * Frame algebra connects data frames to the linear algebra of commons-math: it shows
+ * a data frame as a RealMatrix, and computes covariance and correlation matrices,
+ * ordinary least squares regressions and principal components of its columns.
+ *
+ * All of them are built on the centered cross products of the columns, computed in
+ * a single pass over the rows. The rows are processed in blocks: the values of a
+ * block are copied column by column into a buffer that fits in the cache, centered
+ * on the means of the block, and multiplied in tiles of four by four columns, so
+ * every value loaded is used for four products. The cross products of the blocks
+ * are combined with the pairwise update of Chan et al., which keeps them accurate
+ * when the values are far from zero. A data frame in parallel mode, see
+ * {@link DoubleDataFrame#parallel()}, splits the rows into chunks that are processed
+ * on its pool and combined in row order.
+ *
+ * Like {@link ColumnStatistics}, a NaN value makes the results that depend on it NaN.
+ *
+ */
+public class FrameAlgebra {
+
+    /**
+     * The number of rows of a block, so the buffer of a block of a few hundred
+     * columns fits in the cache
+     */
+    static final int BLOCK_ROWS = 256;
+
+    /**
+     * The smallest pivot of the QR decomposition of the correlations of the
+     * independent columns, below which they are taken as linearly dependent
+     */
+    static final double RANK_TOLERANCE = 1e-10;
+
+    private FrameAlgebra() {
+    }
+
+    /**
+     * Show a data frame as a matrix with a row for every row and a column for every
+     * column of the data frame. The matrix reads and writes the values of the data
+     * frame, without copying them.
+     *
+     * @param df the data frame
+     * @return the matrix
+     */
+    public static RealMatrix asMatrix(DoubleDataFrame df) {
+        return new FrameMatrix(df.storage());
+    }
+
+    /**
+     * Compute the sample covariance matrix of all columns of a data frame
+     *
+     * @param df the data frame
+     * @return the covariance matrix, with a row and a column for every column
+     */
+    public static RealMatrix covariance(DoubleDataFrame df) {
+        return covariance(df, df.getColumnNames());
+    }
+
+    /**
+     * Compute the sample covariance matrix of some columns of a data frame
+     *
+     * @param df the data frame
+     * @param columns the names of the columns
+     * @return the covariance matrix, with a row and a column for every given column
+     * @throws IllegalArgumentException if a column does not exist
+     */
+    public static RealMatrix covariance(DoubleDataFrame df, List<String> columns) throws IllegalArgumentException {
+        return new Array2DRowRealMatrix(crossProducts(df, columns).covariance(), false);
+    }
+
+    /**
+     * Compute the Pearson correlation matrix of all columns of a data frame
+     *
+     * @param df the data frame
+     * @return the correlation matrix, with a row and a column for every column
+     */
+    public static RealMatrix correlation(DoubleDataFrame df) {
+        return correlation(df, df.getColumnNames());
+    }
+
+    /**
+     * Compute the Pearson correlation matrix of some columns of a data frame. The
+     * correlations with a column of which all values are equal are NaN.
+     *
+     * @param df the data frame
+     * @param columns the names of the columns
+     * @return the correlation matrix, with a row and a column for every given column
+     * @throws IllegalArgumentException if a column does not exist
+     */
+    public static RealMatrix correlation(DoubleDataFrame df, List<String> columns) throws IllegalArgumentException {
+        double[][] c = crossProducts(df, columns).comoments;
+        int p = columns.size();
+        double[][] correlation = new double[p][p];
+        for (int a = 0; a < p; a++) {
+            for (int b = 0; b < p; b++) {
+                correlation[a][b] = a == b && c[a][a] > 0 ? 1 : c[a][b] / Math.sqrt(c[a][a] * c[b][b]);
+            }
+        }
+        return new Array2DRowRealMatrix(correlation, false);
+    }
+
+    /**
+     * Fit a linear model with an intercept by ordinary least squares
+     *
+     * @param df the data frame
+     * @param yColumn the name of the column with the dependent values
+     * @param xColumns the names of the columns with the independent values
+     * @return the fitted model, with NaN coefficients if a column with independent
+     *         values holds a NaN
+     * @throws IllegalArgumentException if a column does not exist or the columns with
+     *                                  the independent values are linearly dependent
+     */
+    public static Regression ols(DoubleDataFrame df, String yColumn, List<String> xColumns)
+            throws IllegalArgumentException {
+        List<String> columns = new ArrayList<>(xColumns);
+        columns.add(yColumn);
+        CrossProducts products = crossProducts(df, columns);
+        int k = xColumns.size();
+        double[][] c = products.comoments;
+        double[] beta = new double[k];
+        boolean nan = false;
+        for (int a = 0; a < k; a++) {
+            nan |= Double.isNaN(c[a][a]);
+        }
+        if (nan) {
+            // a NaN in a predictor makes every coefficient NaN
+            Arrays.fill(beta, Double.NaN);
+        } else if (k > 0) {
+            // the normal equations are scaled to correlations, so the rank threshold
+            // does not depend on the units of the columns
+            double[] scale = new double[k];
+            for (int a = 0; a < k; a++) {
+                if (c[a][a] == 0) {
+                    throw new IllegalArgumentException("Column " + xColumns.get(a)
+                            + " is constant and depends on the intercept");
+                }
+                scale[a] = Math.sqrt(c[a][a]);
+            }
+            double[][] rxx = new double[k][k];
+            double[] rxy = new double[k];
+            for (int a = 0; a < k; a++) {
+                for (int b = 0; b < k; b++) {
+                    rxx[a][b] = c[a][b] / (scale[a] * scale[b]);
+                }
+                rxy[a] = c[a][k] / scale[a];
+            }
+            DecompositionSolver solver = new QRDecomposition(new Array2DRowRealMatrix(rxx, false),
+                    RANK_TOLERANCE * k).getSolver();
+            if (!solver.isNonSingular()) {
+                throw new IllegalArgumentException("Columns " + xColumns + " are linearly dependent");
+            }
+            beta = solver.solve(new Array2DRowRealMatrix(rxy)).getColumn(0);
+            for (int a = 0; a < k; a++) {
+                beta[a] /= scale[a];
+            }
+        }
+        double intercept = products.means[k];
+        double explained = 0;
+        for (int a = 0; a < k; a++) {
+            intercept -= beta[a] * products.means[a];
+            explained += beta[a] * c[a][k];
+        }
+        return new Regression(xColumns, intercept, beta, products.count, explained, c[k][k]);
+    }
+
+    /**
+     * Fit a linear model with an intercept by ordinary least squares
+     *
+     * @param df the data frame
+     * @param yColumn the name of the column with the dependent values
+     * @param xColumns the names of the columns with the independent values
+     * @return the fitted model, with NaN coefficients if a column with independent
+     *         values holds a NaN
+     * @throws IllegalArgumentException if a column does not exist or the columns with
+     *                                  the independent values are linearly dependent
+     */
+    public static Regression ols(DoubleDataFrame df, String yColumn, String... xColumns)
+            throws IllegalArgumentException {
+        return ols(df, yColumn, Arrays.asList(xColumns));
+    }
+
+    /**
+     * Compute the principal components of all columns of a data frame
+     *
+     * @param df the data frame
+     * @return the principal components
+     */
+    public static Pca pca(DoubleDataFrame df) {
+        return pca(df, df.getColumnNames());
+    }
+
+    /**
+     * Compute the principal components of some columns of a data frame from the
+     * eigenvectors of their covariance matrix. Columns on different scales should be
+     * standardized first, or the columns with the largest variance dominate.
+     *
+     * @param df the data frame
+     * @param columns the names of the columns
+     * @return the principal components
+     * @throws IllegalArgumentException if a column does not exist
+     */
+    public static Pca pca(DoubleDataFrame df, List<String> columns) throws IllegalArgumentException {
+        CrossProducts products = crossProducts(df, columns);
+        int p = columns.size();
+        double[] variances = new double[p];
+        double[][] components = new double[p][p];
+        if (p > 0) {
+            EigenDecomposition eigen = new EigenDecomposition(new Array2DRowRealMatrix(products.covariance(), false));
+            double[] values = eigen.getRealEigenvalues();
+            Integer[] order = new Integer[p];
+            for (int k = 0; k < p; k++) {
+                order[k] = k;
+            }
+            Arrays.sort(order, (u, v) -> Double.compare(values[v], values[u]));
+            for (int k = 0; k < p; k++) {
+                variances[k] = Math.max(0, values[order[k]]);
+                double[] vector = eigen.getEigenvector(order[k]).toArray();
+                for (int a = 0; a < p; a++) {
+                    components[a][k] = vector[a];
+                }
+            }
+        }
+        return new Pca(columns, products.means, variances, components);
+    }
+
+    /**
+     * Compute the centered cross products of some columns of a data frame
+     */
+    private static CrossProducts crossProducts(DoubleDataFrame df, List<String> columns) {
+        int[] cols = new int[columns.size()];
+        for (int a = 0; a < cols.length; a++) {
+            cols[a] = df.getSchema().columnIndex(columns.get(a));
+        }
+        DoubleStorage storage = df.storage();
+        int rows = storage.rowCount();
+        ForkJoinPool pool = df.pool();
+        if (pool == null || rows == 0) {
+            return CrossProducts.of(storage, cols, 0, rows);
+        }
+        List<CrossProducts> partials = RowChunks.map(pool, rows, (from, to) -> CrossProducts.of(storage, cols, from, to));
+        CrossProducts total = partials.get(0);
+        for (int k = 1; k < partials.size(); k++) {
+            total.merge(partials.get(k));
+        }
+        return total;
+    }
+
+    /**
+     * The number of rows, the means and the sums of the products of the deviations
+     * from the means of some columns
+     */
+    private static final class CrossProducts {
+        private long count;
+        private final double[] means;
+        private final double[][] comoments;
+
+        private CrossProducts(int p) {
+            means = new double[p];
+            comoments = new double[p][p];
+        }
+
+        /**
+         * Compute the cross products of a range of rows, block by block
+         */
+        static CrossProducts of(DoubleStorage storage, int[] cols, int from, int to) {
+            int p = cols.length;
+            // pad to whole tiles with columns of zeros
+            int padded = (p + 3) & ~3;
+            CrossProducts total = new CrossProducts(p);
+            CrossProducts block = new CrossProducts(padded);
+            double[][] buffer = new double[padded][Math.min(BLOCK_ROWS, to - from)];
+            for (int start = from; start < to; start += BLOCK_ROWS) {
+                int end = Math.min(to, start + BLOCK_ROWS);
+                int length = end - start;
+                for (int a = 0; a < p; a++) {
+                    double[] values = buffer[a];
+                    storage.copyColumn(cols[a], start, end, values);
+                    double sum = 0;
+                    for (int i = 0; i < length; i++) {
+                        sum += values[i];
+                    }
+                    double mean = sum / length;
+                    for (int i = 0; i < length; i++) {
+                        values[i] -= mean;
+                    }
+                    block.means[a] = mean;
+                }
+                block.count = length;
+                for (int a = 0; a < padded; a += 4) {
+                    for (int b = a; b < padded; b += 4) {
+                        tile(buffer, a, b, length, block.comoments);
+                    }
+                }
+                total.merge(block);
+            }
+            return total;
+        }
+
+        /**
+         * Compute the products of the centered values of four columns starting at a
+         * with four columns starting at b
+         */
+        private static void tile(double[][] buffer, int a, int b, int length, double[][] target) {
+            double[] x0 = buffer[a];
+            double[] x1 = buffer[a + 1];
+            double[] x2 = buffer[a + 2];
+            double[] x3 = buffer[a + 3];
+            double[] y0 = buffer[b];
+            double[] y1 = buffer[b + 1];
+            double[] y2 = buffer[b + 2];
+            double[] y3 = buffer[b + 3];
+            double s00 = 0, s01 = 0, s02 = 0, s03 = 0;
+            double s10 = 0, s11 = 0, s12 = 0, s13 = 0;
+            double s20 = 0, s21 = 0, s22 = 0, s23 = 0;
+            double s30 = 0, s31 = 0, s32 = 0, s33 = 0;
+            for (int i = 0; i < length; i++) {
+                double u0 = x0[i];
+                double u1 = x1[i];
+                double u2 = x2[i];
+                double u3 = x3[i];
+                double v0 = y0[i];
+                double v1 = y1[i];
+                double v2 = y2[i];
+                double v3 = y3[i];
+                s00 += u0 * v0;
+                s01 += u0 * v1;
+                s02 += u0 * v2;
+                s03 += u0 * v3;
+                s10 += u1 * v0;
+                s11 += u1 * v1;
+                s12 += u1 * v2;
+                s13 += u1 * v3;
+                s20 += u2 * v0;
+                s21 += u2 * v1;
+                s22 += u2 * v2;
+                s23 += u2 * v3;
+                s30 += u3 * v0;
+                s31 += u3 * v1;
+                s32 += u3 * v2;
+                s33 += u3 * v3;
+            }
+            double[] t0 = target[a];
+            double[] t1 = target[a + 1];
+            double[] t2 = target[a + 2];
+            double[] t3 = target[a + 3];
+            t0[b] = s00;
+            t0[b + 1] = s01;
+            t0[b + 2] = s02;
+            t0[b + 3] = s03;
+            t1[b] = s10;
+            t1[b + 1] = s11;
+            t1[b + 2] = s12;
+            t1[b + 3] = s13;
+            t2[b] = s20;
+            t2[b + 1] = s21;
+            t2[b + 2] = s22;
+            t2[b + 3] = s23;
+            t3[b] = s30;
+            t3[b + 1] = s31;
+            t3[b + 2] = s32;
+            t3[b + 3] = s33;
+        }
+
+        /**
+         * Add the cross products of other rows, of which only the entries on and
+         * above the diagonal are read
+         */
+        void merge(CrossProducts other) {
+            if (other.count == 0) {
+                return;
+            }
+            int p = means.length;
+            long n = count + other.count;
+            double factor = (double) count * other.count / n;
+            double[] delta = new double[p];
+            for (int a = 0; a < p; a++) {
+                delta[a] = other.means[a] - means[a];
+            }
+            for (int a = 0; a < p; a++) {
+                double[] target = comoments[a];
+                double[] source = other.comoments[a];
+                double scaled = delta[a] * factor;
+                for (int b = a; b < p; b++) {
+                    target[b] += source[b] + scaled * delta[b];
+                }
+                // the other half, so the result is symmetric
+                for (int b = a + 1; b < p; b++) {
+                    comoments[b][a] = target[b];
+                }
+            }
+            for (int a = 0; a < p; a++) {
+                means[a] += delta[a] * other.count / n;
+            }
+            count = n;
+        }
+
+        /**
+         * Return the sample covariance matrix, like the variance of {@link ColumnStatistics}
+         */
+        double[][] covariance() {
+            int p = means.length;
+            double[][] covariance = new double[p][p];
+            for (int a = 0; a < p; a++) {
+                for (int b = 0; b < p; b++) {
+                    covariance[a][b] = count == 0 ? Double.NaN : count == 1 ? 0 : comoments[a][b] / (count - 1);
+                }
+            }
+            return covariance;
+        }
+    }
+
+    /**
+     * A linear model fitted by ordinary least squares
+     */
+    public static final class Regression {
+        private final List<String> columnNames;
+        private final double intercept;
+        private final double[] coefficients;
+        private final long count;
+        private final double explained;
+        private final double total;
+
+        private Regression(List<String> columnNames, double intercept, double[] coefficients, long count,
+                double explained, double total) {
+            this.columnNames = Collections.unmodifiableList(new ArrayList<>(columnNames));
+            this.intercept = intercept;
+            this.coefficients = coefficients;
+            this.count = count;
+            this.explained = explained;
+            this.total = total;
+        }
+
+        /**
+         * Return the names of the columns with the independent values
+         *
+         * @return the names, in the order of the coefficients
+         */
+        public List<String> getColumnNames() {
+            return columnNames;
+        }
+
+        /**
+         * Return the intercept of the model
+         *
+         * @return the intercept
+         */
+        public double getIntercept() {
+            return intercept;
+        }
+
+        /**
+         * Return the coefficients of the columns with the independent values
+         *
+         * @return a new array with the coefficients
+         */
+        public double[] getCoefficients() {
+            return coefficients.clone();
+        }
+
+        /**
+         * Return the number of rows the model was fitted on
+         *
+         * @return the number of rows
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Return the coefficient of determination, the part of the variance of the
+         * dependent values explained by the model
+         *
+         * @return the coefficient of determination
+         */
+        public double getRSquared() {
+            return explained / total;
+        }
+
+        /**
+         * Return the estimated variance of the residuals
+         *
+         * @return the variance of the residuals, NaN if there are not more rows than
+         *         coefficients
+         */
+        public double getResidualVariance() {
+            long degrees = count - coefficients.length - 1;
+            return degrees > 0 ? Math.max(0, total - explained) / degrees : Double.NaN;
+        }
+
+        /**
+         * Predict the dependent value for some independent values
+         *
+         * @param x the independent values, one for every column
+         * @return the predicted value
+         * @throws IllegalArgumentException if the number of values differs from the
+         *                                  number of columns
+         */
+        public double predict(double... x) throws IllegalArgumentException {
+            if (x.length != coefficients.length) {
+                throw new IllegalArgumentException("Expected " + coefficients.length + " values, got " + x.length);
+            }
+            double value = intercept;
+            for (int a = 0; a < x.length; a++) {
+                value += coefficients[a] * x[a];
+            }
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            return "intercept=" + intercept + ", coefficients=" + Arrays.toString(coefficients) + ", rSquared="
+                    + getRSquared();
+        }
+    }
+
+    /**
+     * The principal components of some columns, ordered by decreasing variance
+     */
+    public static final class Pca {
+        private final List<String> columnNames;
+        private final double[] means;
+        private final double[] variances;
+        private final double[][] components;
+
+        private Pca(List<String> columnNames, double[] means, double[] variances, double[][] components) {
+            this.columnNames = Collections.unmodifiableList(new ArrayList<>(columnNames));
+            this.means = means;
+            this.variances = variances;
+            this.components = components;
+        }
+
+        /**
+         * Return the names of the columns the components were computed from
+         *
+         * @return the names of the columns
+         */
+        public List<String> getColumnNames() {
+            return columnNames;
+        }
+
+        /**
+         * Return the means of the columns
+         *
+         * @return a new array with the means
+         */
+        public double[] getMeans() {
+            return means.clone();
+        }
+
+        /**
+         * Return the variance along every component, in decreasing order
+         *
+         * @return a new array with the variances
+         */
+        public double[] getVariances() {
+            return variances.clone();
+        }
+
+        /**
+         * Return the part of the total variance along every component
+         *
+         * @return a new array with the parts, which add up to 1
+         */
+        public double[] getExplainedVarianceRatio() {
+            double total = 0;
+            for (double variance : variances) {
+                total += variance;
+            }
+            double[] ratios = new double[variances.length];
+            for (int k = 0; k < ratios.length; k++) {
+                ratios[k] = variances[k] / total;
+            }
+            return ratios;
+        }
+
+        /**
+         * Return the components as the columns of a matrix, with a row for every
+         * column of the data frame
+         *
+         * @return a new matrix with the unit vectors of the components
+         */
+        public RealMatrix getComponents() {
+            return new Array2DRowRealMatrix(components);
+        }
+
+        /**
+         * Project the rows of a data frame on the first components. The result has a
+         * column "PC1", "PC2", ... for every component.
+         *
+         * @param df the data frame, holding the columns the components were computed from
+         * @param count the number of components
+         * @return a column-major data frame with the coordinates of the rows
+         * @throws IllegalArgumentException if a column does not exist or the number of
+         *                                  components is out of range
+         */
+        public DoubleDataFrame transform(DoubleDataFrame df, int count) throws IllegalArgumentException {
+            if (count < 0 || count > variances.length) {
+                throw new IllegalArgumentException("The number of components should be between 0 and "
+                        + variances.length + ": " + count);
+            }
+            int p = columnNames.size();
+            int[] cols = new int[p];
+            for (int a = 0; a < p; a++) {
+                cols[a] = df.getSchema().columnIndex(columnNames.get(a));
+            }
+            DoubleStorage storage = df.storage();
+            int rows = storage.rowCount();
+            double[][] scores = new double[count][rows];
+            if (df.pool() == null || rows == 0) {
+                project(storage, cols, count, 0, rows, scores);
+            } else {
+                RowChunks.map(df.pool(), rows, (from, to) -> {
+                    project(storage, cols, count, from, to, scores);
+                    return null;
+                });
+            }
+            List<String> names = new ArrayList<>();
+            for (int k = 1; k <= count; k++) {
+                names.add("PC" + k);
+            }
+            return DoubleDataFrame.fromColumns(names, scores);
+        }
+
+        private void project(DoubleStorage storage, int[] cols, int count, int from, int to, double[][] scores) {
+            double[] buffer = new double[Math.min(BLOCK_ROWS, to - from)];
+            for (int start = from; start < to; start += BLOCK_ROWS) {
+                int end = Math.min(to, start + BLOCK_ROWS);
+                for (int a = 0; a < cols.length; a++) {
+                    storage.copyColumn(cols[a], start, end, buffer);
+                    double mean = means[a];
+                    for (int k = 0; k < count; k++) {
+                        double weight = components[a][k];
+                        double[] score = scores[k];
+                        for (int i = start; i < end; i++) {
+                            score[i] += weight * (buffer[i - start] - mean);
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
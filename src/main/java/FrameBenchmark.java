@@ -0,0 +1,313 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Measures the hot paths of DoubleDataFrame on frames of different shapes and
+ * sizes, in both layouts. Every operation is first run for a warm-up period, so
+ * the JIT compiler has compiled it, and then for a number of measurement
+ * iterations of fixed duration. For each operation the average time per call is
+ * reported with the 99.9% confidence interval over the iterations, together with
+ * the number of bytes allocated per call and the resulting allocation rate, as
+ * measured by the allocation counter of the running thread.
+ *
+ * The shapes are tall-narrow (10 columns), short-wide (10 rows) and square, each
+ * with 1K, 1M and 10M cells. Run with a heap large enough for a few copies of the
+ * largest frame, e.g.
+ * java -Xmx4g FrameBenchmark [cells,...] [operation,...]
+ * where the optional arguments restrict the run to the given numbers of cells and
+ * operations, e.g. java FrameBenchmark 1000,1000000 select,project
+ */
+public class FrameBenchmark
+{
+
+	private static final long WARMUP_NANOS = 300_000_000L;
+	private static final long ITERATION_NANOS = 200_000_000L;
+	private static final int ITERATIONS = 5;
+
+	/**
+	 * Student's t quantile for a 99.9% confidence interval with ITERATIONS - 1 degrees of freedom
+	 */
+	private static final double T_QUANTILE = 8.610;
+
+	/**
+	 * The number of calls between two reads of the clock is doubled until a batch
+	 * takes at least this long, so the clock reads are not part of the measurement
+	 */
+	private static final long BATCH_NANOS = 1_000_000L;
+
+	/**
+	 * Receives a hash of the results of every run, so the JIT compiler cannot drop
+	 * the calls whose results are never used
+	 */
+	private static volatile long sink;
+
+	/**
+	 * The frame an operation runs on, with the prepared arguments of the operations
+	 */
+	private static final class Fixture
+	{
+		private final DoubleDataFrame df;
+		private final List<String> names;
+		private final Set<String> half;
+		private final DataFrame<Double> left;
+		private final DataFrame<Double> right;
+		private final int[] positionRows;
+		private final String[] positionColumns;
+		private int next;
+
+		Fixture(DoubleDataFrame df)
+		{
+			this.df = df;
+			this.names = df.getColumnNames();
+			this.half = new HashSet<>(names.subList(0, names.size() / 2));
+			this.left = df.project(half);
+			Set<String> otherHalf = new HashSet<>(names.subList(names.size() / 2, names.size()));
+			this.right = df.project(otherHalf);
+			Random random = new Random(42);
+			positionRows = new int[4096];
+			positionColumns = new String[4096];
+			for (int k = 0; k < positionRows.length; k++)
+			{
+				positionRows[k] = random.nextInt(df.getRowCount());
+				positionColumns[k] = names.get(random.nextInt(names.size()));
+			}
+		}
+
+		int next()
+		{
+			next = (next + 1) & 4095;
+			return next;
+		}
+	}
+
+	private static final Map<String, Function<Fixture, Object>> OPERATIONS = new LinkedHashMap<>();
+
+	static
+	{
+		OPERATIONS.put("getValue", f ->
+		{
+			int k = f.next();
+			return f.df.getValue(f.positionRows[k], f.positionColumns[k]);
+		});
+		OPERATIONS.put("setValue", f ->
+		{
+			int k = f.next();
+			f.df.setValue(f.positionRows[k], f.positionColumns[k], 1.5);
+			return f;
+		});
+		OPERATIONS.put("getRow", f -> f.df.getRow(f.positionRows[f.next()]));
+		OPERATIONS.put("getColumn", f -> f.df.getColumn(f.positionColumns[f.next()]));
+		OPERATIONS.put("select", f -> f.df.select(row -> ((DoubleVector) row).getDouble(0) > 0.5));
+		OPERATIONS.put("selectCondition", f -> f.df.select(Expression.col(f.names.get(0)).gt(0.5)));
+		OPERATIONS.put("project", f -> f.df.project(f.half));
+		OPERATIONS.put("expand", f -> f.df.expand(1, "extra"));
+		OPERATIONS.put("computeColumn", f -> f.df.computeColumn("extra",
+				row -> ((DoubleVector) row).getDouble(0) + ((DoubleVector) row).getDouble(1)));
+		OPERATIONS.put("computeColumnExpression", f -> f.df.computeColumn("extra",
+				Expression.col(f.names.get(0)).plus(Expression.col(f.names.get(1)))));
+		OPERATIONS.put("summarize", f -> f.df.summarize("sum", Double::sum));
+		OPERATIONS.put("groupBy", f -> f.df.groupBy(f.names.get(0)).agg(f.names.get(1), Aggregate.SUM, Aggregate.MEAN));
+		OPERATIONS.put("sortBy", f -> f.df.sortBy(f.names.get(0), true));
+		OPERATIONS.put("topK", f -> f.df.topK(f.names.get(0), 100));
+		OPERATIONS.put("concat", f -> f.left.concat(f.right));
+		OPERATIONS.put("formatMatrix", f ->
+		{
+			CountingAppendable out = new CountingAppendable();
+			try
+			{
+				f.df.formatMatrix(DataFrame.DEFAULT_FORMAT_WIDTH, out);
+			}
+			catch (IOException e)
+			{
+				throw new UncheckedIOException(e);
+			}
+			return out;
+		});
+	}
+
+	public static void main(String[] args)
+	{
+		int[] sizes = { 1_000, 1_000_000, 10_000_000 };
+		if (args.length > 0)
+		{
+			sizes = Arrays.stream(args[0].split(",")).mapToInt(Integer::parseInt).toArray();
+		}
+		List<String> operations = args.length > 1 ? Arrays.asList(args[1].split(",")) : new ArrayList<>(OPERATIONS.keySet());
+		for (String operation : operations)
+		{
+			if (!OPERATIONS.containsKey(operation))
+			{
+				throw new IllegalArgumentException("Unknown operation " + operation + ", expected one of " + OPERATIONS.keySet());
+			}
+		}
+
+		System.out.println(String.format("%-12s %-13s %-24s %14s %12s %14s %12s", "shape", "layout", "operation",
+				"ns/op", "error", "bytes/op", "MB/s alloc"));
+		for (int cells : sizes)
+		{
+			int side = (int) Math.round(Math.sqrt(cells));
+			int[][] shapes = { { cells / 10, 10 }, { 10, cells / 10 }, { side, side } };
+			for (int[] shape : shapes)
+			{
+				for (DoubleDataFrame.Layout layout : DoubleDataFrame.Layout.values())
+				{
+					Fixture fixture = new Fixture(createFrame(shape[0], shape[1], layout));
+					for (String operation : operations)
+					{
+						measure(shape[0] + "x" + shape[1], layout, operation, fixture);
+					}
+				}
+			}
+		}
+	}
+
+	private static void measure(String shape, DoubleDataFrame.Layout layout, String operation, Fixture fixture)
+	{
+		Function<Fixture, Object> function = OPERATIONS.get(operation);
+		run(function, fixture, WARMUP_NANOS);
+		double[] nanosPerOp = new double[ITERATIONS];
+		long totalOps = 0;
+		long totalBytes = 0;
+		long totalNanos = 0;
+		for (int i = 0; i < ITERATIONS; i++)
+		{
+			long bytes = allocatedBytes();
+			long time = System.nanoTime();
+			long ops = run(function, fixture, ITERATION_NANOS);
+			time = System.nanoTime() - time;
+			bytes = allocatedBytes() - bytes;
+			nanosPerOp[i] = (double) time / ops;
+			totalOps += ops;
+			totalBytes += bytes;
+			totalNanos += time;
+		}
+		double mean = 0;
+		for (double value : nanosPerOp)
+		{
+			mean += value / ITERATIONS;
+		}
+		double variance = 0;
+		for (double value : nanosPerOp)
+		{
+			variance += (value - mean) * (value - mean) / (ITERATIONS - 1);
+		}
+		double error = T_QUANTILE * Math.sqrt(variance / ITERATIONS);
+		System.out.println(String.format("%-12s %-13s %-24s %14.1f %12.1f %14d %12.1f", shape, layout, operation,
+				mean, error, totalBytes / totalOps, totalBytes / 1e6 / (totalNanos / 1e9)));
+	}
+
+	/**
+	 * Run an operation in batches until the given time has passed, at least once.
+	 * The result of every call is folded into the sink.
+	 *
+	 * @return the number of calls
+	 */
+	private static long run(Function<Fixture, Object> function, Fixture fixture, long nanos)
+	{
+		long start = System.nanoTime();
+		long end = start + nanos;
+		long ops = 0;
+		long hash = 0;
+		int batch = 1;
+		long now;
+		do
+		{
+			for (int k = 0; k < batch; k++)
+			{
+				hash = hash * 31 + hash(function.apply(fixture));
+			}
+			ops += batch;
+			now = System.nanoTime();
+			if (now - start < BATCH_NANOS && batch < (1 << 20))
+			{
+				batch *= 2;
+			}
+			start = now;
+		}
+		while (now < end);
+		sink += hash;
+		return ops;
+	}
+
+	/**
+	 * Return a hash of a result that is cheap to compute: the value of a number, the
+	 * identity of any other object
+	 */
+	private static int hash(Object result)
+	{
+		return result instanceof Double ? Double.hashCode((Double) result) : System.identityHashCode(result);
+	}
+
+	private static DoubleDataFrame createFrame(int rows, int cols, DoubleDataFrame.Layout layout)
+	{
+		List<String> header = new ArrayList<>(cols);
+		for (int j = 0; j < cols; j++)
+		{
+			header.add("x_" + j);
+		}
+		Random random = new Random(12345);
+		double[][] data = new double[rows][cols];
+		for (int i = 0; i < rows; i++)
+		{
+			for (int j = 0; j < cols; j++)
+			{
+				data[i][j] = random.nextDouble();
+			}
+		}
+		return new DoubleDataFrame(header, data, layout);
+	}
+
+	/**
+	 * Return the number of bytes allocated by the current thread so far, or 0 if the
+	 * JVM does not count them
+	 */
+	private static long allocatedBytes()
+	{
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean)
+		{
+			return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return 0;
+	}
+
+	/**
+	 * An Appendable that only counts the characters, so formatMatrix is measured
+	 * without the cost of keeping its output
+	 */
+	private static final class CountingAppendable implements Appendable
+	{
+		private long count;
+
+		@Override
+		public Appendable append(CharSequence csq)
+		{
+			count += csq.length();
+			return this;
+		}
+
+		@Override
+		public Appendable append(CharSequence csq, int start, int end)
+		{
+			count += end - start;
+			return this;
+		}
+
+		@Override
+		public Appendable append(char c)
+		{
+			count++;
+			return this;
+		}
+	}
+}
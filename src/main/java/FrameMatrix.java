@@ -0,0 +1,143 @@
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.linear.AbstractRealMatrix;
+import org.apache.commons.math3.linear.MatrixUtils;
+import org.apache.commons.math3.linear.RealMatrix;
+
+/**
+ * A frame matrix shows the storage of a DoubleDataFrame as a commons-math
+ * RealMatrix, without copying it: entry (i, j) is the value of row i in column j.
+ * Setting an entry sets the value in the data frame, keeping its indexes and
+ * summaries current, so the data frame and the matrix always see the same values.
+ *
+ * Rows, columns and products with vectors are computed from the storage in bulk.
+ * Operations that produce a new matrix, such as multiply or transpose, return an
+ * ordinary commons-math matrix. Created with {@link FrameAlgebra#asMatrix(DoubleDataFrame)}.
+ *
+ */
+final class FrameMatrix extends AbstractRealMatrix {
+    private final DoubleStorage storage;
+
+    /**
+     * This constructor creates a matrix showing a storage
+     *
+     * @param storage the storage of a data frame
+     */
+    FrameMatrix(DoubleStorage storage) {
+        this.storage = storage;
+    }
+
+    @Override
+    public int getRowDimension() {
+        return storage.rowCount();
+    }
+
+    @Override
+    public int getColumnDimension() {
+        return storage.columnCount();
+    }
+
+    @Override
+    public RealMatrix createMatrix(int rowDimension, int columnDimension) {
+        return MatrixUtils.createRealMatrix(rowDimension, columnDimension);
+    }
+
+    @Override
+    public RealMatrix copy() {
+        return MatrixUtils.createRealMatrix(getData());
+    }
+
+    @Override
+    public double getEntry(int row, int column) {
+        MatrixUtils.checkMatrixIndex(this, row, column);
+        return storage.get(row, column);
+    }
+
+    @Override
+    public void setEntry(int row, int column, double value) {
+        MatrixUtils.checkMatrixIndex(this, row, column);
+        storage.update(row, column, value);
+    }
+
+    @Override
+    public double[] getColumn(int column) {
+        MatrixUtils.checkColumnIndex(this, column);
+        double[] values = new double[storage.rowCount()];
+        storage.copyColumn(column, 0, values.length, values);
+        return values;
+    }
+
+    @Override
+    public double[] getRow(int row) {
+        MatrixUtils.checkRowIndex(this, row);
+        return storage.rowCopy(row);
+    }
+
+    @Override
+    public double[][] getData() {
+        int rows = storage.rowCount();
+        int cols = storage.columnCount();
+        double[][] data = new double[rows][cols];
+        double[] buffer = new double[Math.min(Expression.BLOCK_SIZE, rows)];
+        for (int j = 0; j < cols; j++) {
+            for (int start = 0; start < rows; start += buffer.length) {
+                int end = Math.min(rows, start + buffer.length);
+                storage.copyColumn(j, start, end, buffer);
+                for (int i = start; i < end; i++) {
+                    data[i][j] = buffer[i - start];
+                }
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Multiply this matrix by a vector, adding the columns scaled by the entries of
+     * the vector block by block
+     */
+    @Override
+    public double[] operate(double[] v) {
+        if (v.length != storage.columnCount()) {
+            throw new DimensionMismatchException(v.length, storage.columnCount());
+        }
+        int rows = storage.rowCount();
+        double[] result = new double[rows];
+        double[] buffer = new double[Math.min(Expression.BLOCK_SIZE, rows)];
+        for (int start = 0; start < rows; start += buffer.length) {
+            int end = Math.min(rows, start + buffer.length);
+            for (int j = 0; j < v.length; j++) {
+                storage.copyColumn(j, start, end, buffer);
+                double factor = v[j];
+                for (int i = start; i < end; i++) {
+                    result[i] += factor * buffer[i - start];
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Multiply the transpose of this matrix by a vector, taking the dot product of
+     * every column with the vector block by block
+     */
+    @Override
+    public double[] preMultiply(double[] v) {
+        if (v.length != storage.rowCount()) {
+            throw new DimensionMismatchException(v.length, storage.rowCount());
+        }
+        int rows = storage.rowCount();
+        double[] result = new double[storage.columnCount()];
+        double[] buffer = new double[Math.min(Expression.BLOCK_SIZE, rows)];
+        for (int j = 0; j < result.length; j++) {
+            double sum = 0;
+            for (int start = 0; start < rows; start += buffer.length) {
+                int end = Math.min(rows, start + buffer.length);
+                storage.copyColumn(j, start, end, buffer);
+                for (int i = start; i < end; i++) {
+                    sum += buffer[i - start] * v[i];
+                }
+            }
+            result[j] = sum;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,311 @@
+import java.util.Arrays;
+import java.util.List;
+
+import org.knowm.xchart.CategoryChart;
+import org.knowm.xchart.CategoryChartBuilder;
+import org.knowm.xchart.XYChart;
+import org.knowm.xchart.XYChartBuilder;
+import org.knowm.xchart.XYSeries;
+import org.knowm.xchart.style.markers.SeriesMarkers;
+
+/**
+ * Frame plots create XChart charts of the columns of a data frame: line charts,
+ * scatter charts and histograms. The charts can be shown with a SwingWrapper or
+ * saved with a BitmapEncoder.
+ *
+ * The values of a column are read as primitive doubles and reduced to a number of
+ * points that can be drawn before they are handed to XChart, so a column of millions
+ * of values is never boxed. Line charts are reduced with Largest-Triangle-Three-Buckets
+ * and scatter charts with min/max bucketing, see {@link Downsampling}. Histograms are
+ * counted in a single pass over the column. Points with a NaN coordinate are not
+ * drawn, and a column without other points gets no series. Charts that receive new
+ * points over time are made with {@link LiveChart}.
+ *
+ */
+public class FramePlots {
+
+    /**
+     * The number of points a series is reduced to when no other number is given
+     */
+    public static final int DEFAULT_MAX_POINTS = 2000;
+
+    static final int WIDTH = 800;
+    static final int HEIGHT = 600;
+
+    private FramePlots() {
+    }
+
+    /**
+     * Create a line chart of one or more columns
+     *
+     * @param df the data frame
+     * @param xColumn the name of the column with the x values, or null to use the row numbers
+     * @param yColumns the names of the columns with the y values, one series per column
+     * @return the chart
+     * @throws IllegalArgumentException if a column does not exist
+     */
+    public static XYChart line(DataFrame<Double> df, String xColumn, String... yColumns)
+            throws IllegalArgumentException {
+        return line(df, xColumn, Arrays.asList(yColumns), DEFAULT_MAX_POINTS);
+    }
+
+    /**
+     * Create a line chart of one or more columns, reducing every series to at most a
+     * given number of points
+     *
+     * @param df the data frame
+     * @param xColumn the name of the column with the x values, or null to use the row numbers
+     * @param yColumns the names of the columns with the y values, one series per column
+     * @param maxPoints the maximum number of points of a series, at least 3
+     * @return the chart
+     * @throws IllegalArgumentException if a column does not exist or maxPoints is less than 3
+     */
+    public static XYChart line(DataFrame<Double> df, String xColumn, List<String> yColumns, int maxPoints)
+            throws IllegalArgumentException {
+        checkMaxPoints(maxPoints, 3);
+        XYChart chart = xyChart(xColumn, yColumns);
+        double[] x = xValues(df, xColumn);
+        for (String yColumn : yColumns) {
+            double[] xs = x.clone();
+            double[] ys = DoubleDataFrame.columnValues(df, yColumn);
+            int length = Downsampling.dropNaN(xs, ys, ys.length);
+            int[] kept = Downsampling.lttb(xs, ys, length, maxPoints);
+            // XChart does not accept a series without points
+            if (kept.length > 0) {
+                chart.addSeries(yColumn, Downsampling.gather(xs, kept), Downsampling.gather(ys, kept))
+                        .setMarker(SeriesMarkers.NONE);
+            }
+        }
+        return chart;
+    }
+
+    /**
+     * Create a scatter chart of two columns
+     *
+     * @param df the data frame
+     * @param xColumn the name of the column with the x values
+     * @param yColumn the name of the column with the y values
+     * @return the chart
+     * @throws IllegalArgumentException if a column does not exist
+     */
+    public static XYChart scatter(DataFrame<Double> df, String xColumn, String yColumn)
+            throws IllegalArgumentException {
+        return scatter(df, xColumn, yColumn, DEFAULT_MAX_POINTS);
+    }
+
+    /**
+     * Create a scatter chart of two columns, reducing the points to at most a given
+     * number. The rows are split in buckets, and of every bucket the points with the
+     * smallest and the largest y value are drawn.
+     *
+     * @param df the data frame
+     * @param xColumn the name of the column with the x values
+     * @param yColumn the name of the column with the y values
+     * @param maxPoints the maximum number of points, at least 2
+     * @return the chart
+     * @throws IllegalArgumentException if a column does not exist or maxPoints is less than 2
+     */
+    public static XYChart scatter(DataFrame<Double> df, String xColumn, String yColumn, int maxPoints)
+            throws IllegalArgumentException {
+        checkMaxPoints(maxPoints, 2);
+        XYChart chart = xyChart(xColumn, Arrays.asList(yColumn));
+        double[] xs = DoubleDataFrame.columnValues(df, xColumn);
+        double[] ys = DoubleDataFrame.columnValues(df, yColumn);
+        int length = Downsampling.dropNaN(xs, ys, ys.length);
+        int[] kept = Downsampling.minMax(ys, length, maxPoints / 2);
+        if (kept.length > 0) {
+            chart.addSeries(yColumn, Downsampling.gather(xs, kept), Downsampling.gather(ys, kept))
+                    .setXYSeriesRenderStyle(XYSeries.XYSeriesRenderStyle.Scatter);
+        }
+        return chart;
+    }
+
+    /**
+     * Create a histogram of a column, with bins of equal width between the smallest and
+     * the largest finite value. The range is read from the summary of the column when
+     * it has one, see {@link DoubleDataFrame#createSummary(String)}, and computed
+     * otherwise.
+     *
+     * @param df the data frame
+     * @param column the name of the column
+     * @param bins the number of bins
+     * @return the chart, with a bar for every bin at the center of the bin
+     * @throws IllegalArgumentException if the column does not exist or the number of
+     *                                  bins is not positive
+     */
+    public static CategoryChart histogram(DataFrame<Double> df, String column, int bins)
+            throws IllegalArgumentException {
+        double low = Double.NaN;
+        double high = Double.NaN;
+        if (df instanceof DoubleDataFrame && ((DoubleDataFrame) df).hasSummary(column)) {
+            ColumnStatistics statistics = ((DoubleDataFrame) df).summary(column);
+            low = statistics.getMin();
+            high = statistics.getMax();
+        }
+        if (!isFinite(low) || !isFinite(high)) {
+            double[] range = finiteRange(df, column);
+            low = range[0];
+            high = range[1];
+            if (low > high) {
+                low = 0;
+                high = 1;
+            }
+        }
+        return histogram(df, column, bins, low, high);
+    }
+
+    /**
+     * Find the smallest and the largest finite value of a column, reading the column
+     * of a DoubleDataFrame in blocks
+     *
+     * @return the smallest and the largest value, or infinities in reverse order if
+     *         the column has no finite value
+     */
+    private static double[] finiteRange(DataFrame<Double> df, String column) throws IllegalArgumentException {
+        double[] range = { Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY };
+        if (df instanceof DoubleDataFrame) {
+            DoubleDataFrame frame = (DoubleDataFrame) df;
+            DoubleStorage storage = frame.storage();
+            int col = frame.getSchema().columnIndex(column);
+            int rows = storage.rowCount();
+            double[] buffer = new double[Math.min(Expression.BLOCK_SIZE, rows)];
+            for (int start = 0; start < rows; start += buffer.length) {
+                int end = Math.min(rows, start + buffer.length);
+                storage.copyColumn(col, start, end, buffer);
+                extendRange(buffer, end - start, range);
+            }
+        } else {
+            double[] values = DoubleDataFrame.columnValues(df, column);
+            extendRange(values, values.length, range);
+        }
+        return range;
+    }
+
+    private static void extendRange(double[] values, int length, double[] range) {
+        for (int i = 0; i < length; i++) {
+            double value = values[i];
+            if (isFinite(value)) {
+                range[0] = Math.min(range[0], value);
+                range[1] = Math.max(range[1], value);
+            }
+        }
+    }
+
+    /**
+     * Create a histogram of a column, with bins of equal width in a given range. The
+     * values are counted in a single pass over the column; values outside the range
+     * and NaN values are not counted.
+     *
+     * @param df the data frame
+     * @param column the name of the column
+     * @param bins the number of bins
+     * @param low the lower bound of the first bin
+     * @param high the upper bound of the last bin, which is included in the last bin
+     * @return the chart, with a bar for every bin at the center of the bin
+     * @throws IllegalArgumentException if the column does not exist, the number of bins
+     *                                  is not positive or the bounds are not finite and ordered
+     */
+    public static CategoryChart histogram(DataFrame<Double> df, String column, int bins, double low, double high)
+            throws IllegalArgumentException {
+        double[] counts = histogramCounts(df, column, bins, low, high);
+        double[] centers = new double[bins];
+        double width = (high - low) / bins;
+        for (int b = 0; b < bins; b++) {
+            centers[b] = low + (b + 0.5) * width;
+        }
+        CategoryChart chart = new CategoryChartBuilder().width(WIDTH).height(HEIGHT).title(column)
+                .xAxisTitle(column).yAxisTitle("count").build();
+        chart.getStyler().setLegendVisible(false);
+        chart.getStyler().setAvailableSpaceFill(0.99);
+        chart.getStyler().setXAxisDecimalPattern("#.###");
+        chart.addSeries(column, centers, counts);
+        return chart;
+    }
+
+    /**
+     * Count the values of a column in bins of equal width
+     *
+     * @param df the data frame
+     * @param column the name of the column
+     * @param bins the number of bins
+     * @param low the lower bound of the first bin
+     * @param high the upper bound of the last bin, which is included in the last bin
+     * @return the number of values in every bin
+     * @throws IllegalArgumentException if the column does not exist, the number of bins
+     *                                  is not positive or the bounds are not finite and ordered
+     */
+    static double[] histogramCounts(DataFrame<Double> df, String column, int bins, double low, double high)
+            throws IllegalArgumentException {
+        if (bins <= 0) {
+            throw new IllegalArgumentException("The number of bins should be positive: " + bins);
+        }
+        if (!(low <= high) || !isFinite(low) || !isFinite(high)) {
+            throw new IllegalArgumentException("Invalid range of a histogram: " + low + " to " + high);
+        }
+        double scale = high > low ? bins / (high - low) : 0;
+        long[] counts = new long[bins];
+        if (df instanceof DoubleDataFrame) {
+            DoubleDataFrame frame = (DoubleDataFrame) df;
+            DoubleStorage storage = frame.storage();
+            int col = frame.getSchema().columnIndex(column);
+            int rows = storage.rowCount();
+            double[] buffer = new double[Math.min(Expression.BLOCK_SIZE, rows)];
+            for (int start = 0; start < rows; start += buffer.length) {
+                int end = Math.min(rows, start + buffer.length);
+                storage.copyColumn(col, start, end, buffer);
+                count(buffer, end - start, low, high, scale, counts);
+            }
+        } else {
+            double[] values = DoubleDataFrame.columnValues(df, column);
+            count(values, values.length, low, high, scale, counts);
+        }
+        double[] result = new double[bins];
+        for (int b = 0; b < bins; b++) {
+            result[b] = counts[b];
+        }
+        return result;
+    }
+
+    private static void count(double[] values, int length, double low, double high, double scale, long[] counts) {
+        int last = counts.length - 1;
+        for (int i = 0; i < length; i++) {
+            double value = values[i];
+            // NaN fails both comparisons
+            if (value >= low && value <= high) {
+                counts[Math.min(last, (int) ((value - low) * scale))]++;
+            }
+        }
+    }
+
+    /**
+     * Return the x values of a line chart: a column, or the row numbers
+     */
+    private static double[] xValues(DataFrame<Double> df, String xColumn) {
+        if (xColumn != null) {
+            return DoubleDataFrame.columnValues(df, xColumn);
+        }
+        double[] rows = new double[df.getRowCount()];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = i;
+        }
+        return rows;
+    }
+
+    private static XYChart xyChart(String xColumn, List<String> yColumns) {
+        return new XYChartBuilder().width(WIDTH).height(HEIGHT)
+                .title(String.join(", ", yColumns))
+                .xAxisTitle(xColumn == null ? "row" : xColumn)
+                .yAxisTitle(yColumns.size() == 1 ? yColumns.get(0) : "")
+                .build();
+    }
+
+    private static boolean isFinite(double value) {
+        return value - value == 0;
+    }
+
+    private static void checkMaxPoints(int maxPoints, int minimum) {
+        if (maxPoints < minimum) {
+            throw new IllegalArgumentException("The number of points should be at least " + minimum + ": " + maxPoints);
+        }
+    }
+}
@@ -0,0 +1,354 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A grouped data frame splits the rows of a DoubleDataFrame into groups of rows
+ * with equal values in the key columns, created by
+ * {@link DoubleDataFrame#groupBy(String...)}. The aggregates of other columns are
+ * computed for every group with agg, e.g.
+ * {@code df.groupBy("year").agg("revenue", Aggregate.SUM)}.
+ *
+ * The groups are found with a {@link DoubleHashTable}, which numbers them in the
+ * order of their first row. The rows are processed in blocks: the key columns of a
+ * block are hashed into an array of group numbers, after which each aggregated
+ * column is accumulated into primitive arrays indexed by group number. In parallel
+ * mode every chunk of rows is aggregated into a table of its own, and the partial
+ * tables are merged in row order, so the result is the same as in sequential mode.
+ *
+ * The result is a column-major data frame with one row per group, holding the key
+ * columns followed by a column named column_aggregate for every aggregate, such
+ * as revenue_sum. The variance and standard deviation are computed from sums of
+ * deviations from the first value of each group, which keeps them accurate for
+ * values far from zero.
+ *
+ */
+public final class GroupedDataFrame {
+    private final DoubleDataFrame df;
+    private final int[] keyColumns;
+
+    /**
+     * This constructor groups the rows of a data frame
+     *
+     * @param df the data frame to group
+     * @param keyColumns the indices of the key columns
+     */
+    GroupedDataFrame(DoubleDataFrame df, int[] keyColumns) {
+        this.df = df;
+        this.keyColumns = keyColumns;
+    }
+
+    /**
+     * Return the names of the key columns
+     *
+     * @return the names of the columns that define the groups
+     */
+    public List<String> getKeyNames() {
+        List<String> names = new ArrayList<>(keyColumns.length);
+        for (int col : keyColumns) {
+            names.add(df.getSchema().getName(col));
+        }
+        return names;
+    }
+
+    /**
+     * Count the rows of every group
+     *
+     * @return a data frame with the key columns and a column named count
+     */
+    public DataFrame<Double> count() {
+        return aggregate(new int[0], new Aggregate[0], true);
+    }
+
+    /**
+     * Compute aggregates of a column for every group
+     *
+     * @param column the name of the column to aggregate
+     * @param aggregates the aggregates to compute
+     * @return a data frame with the key columns and a column for every aggregate
+     * @throws IllegalArgumentException if the column does not exist
+     */
+    public DataFrame<Double> agg(String column, Aggregate... aggregates) throws IllegalArgumentException {
+        return agg(Collections.singletonList(column), aggregates);
+    }
+
+    /**
+     * Compute aggregates of several columns for every group, in a single pass over
+     * the rows. Every aggregate is computed for every column.
+     *
+     * @param columns the names of the columns to aggregate
+     * @param aggregates the aggregates to compute
+     * @return a data frame with the key columns and, for every column, a column for
+     *         every aggregate
+     * @throws IllegalArgumentException if a column does not exist
+     */
+    public DataFrame<Double> agg(List<String> columns, Aggregate... aggregates) throws IllegalArgumentException {
+        int[] valueColumns = new int[columns.size()];
+        for (int j = 0; j < valueColumns.length; j++) {
+            valueColumns[j] = df.getSchema().columnIndex(columns.get(j));
+        }
+        return aggregate(valueColumns, aggregates, false);
+    }
+
+    private DataFrame<Double> aggregate(int[] valueColumns, Aggregate[] aggregates, boolean countOnly) {
+        Accumulators result;
+        int rows = df.getRowCount();
+        ForkJoinPool pool = df.pool();
+        if (pool != null && rows > 0) {
+            List<Accumulators> partials = RowChunks.map(pool, rows,
+                    (from, to) -> aggregateRows(valueColumns, aggregates, from, to));
+            result = partials.get(0);
+            for (int k = 1; k < partials.size(); k++) {
+                result.merge(partials.get(k));
+            }
+        } else {
+            result = aggregateRows(valueColumns, aggregates, 0, rows);
+        }
+
+        int groups = result.table.groupCount();
+        List<String> names = getKeyNames();
+        List<double[]> columns = new ArrayList<>();
+        for (int k = 0; k < keyColumns.length; k++) {
+            double[] values = new double[groups];
+            for (int g = 0; g < groups; g++) {
+                values[g] = result.table.key(g, k);
+            }
+            columns.add(values);
+        }
+        if (countOnly) {
+            names.add("count");
+            columns.add(result.get(Aggregate.COUNT, 0));
+        }
+        for (int j = 0; j < valueColumns.length; j++) {
+            for (Aggregate aggregate : aggregates) {
+                names.add(df.getSchema().getName(valueColumns[j]) + "_" + aggregate.getName());
+                columns.add(result.get(aggregate, j));
+            }
+        }
+        return df.derive(new Schema(names), new ColumnStorage(columns.toArray(new double[0][]), groups));
+    }
+
+    /**
+     * Aggregate a range of rows into a new table
+     */
+    private Accumulators aggregateRows(int[] valueColumns, Aggregate[] aggregates, int from, int to) {
+        DoubleStorage storage = df.storage();
+        Accumulators accumulators = new Accumulators(keyColumns.length, valueColumns.length, aggregates);
+        int blockSize = Math.max(1, Math.min(Expression.BLOCK_SIZE, to - from));
+        double[][] keys = new double[keyColumns.length][blockSize];
+        double[] values = new double[blockSize];
+        int[] groups = new int[blockSize];
+        int[] firstRows = new int[blockSize];
+        for (int start = from; start < to; start += blockSize) {
+            int length = Math.min(blockSize, to - start);
+            for (int k = 0; k < keyColumns.length; k++) {
+                storage.copyColumn(keyColumns[k], start, start + length, keys[k]);
+            }
+            int known = accumulators.table.groupCount();
+            accumulators.table.addAll(keys, length, groups);
+            int added = accumulators.table.groupCount() - known;
+            if (added > 0) {
+                accumulators.ensureCapacity();
+                Arrays.fill(firstRows, 0, added, -1);
+                for (int i = 0; i < length; i++) {
+                    int g = groups[i] - known;
+                    if (g >= 0 && firstRows[g] < 0) {
+                        firstRows[g] = i;
+                    }
+                }
+            }
+            long[] counts = accumulators.counts;
+            for (int i = 0; i < length; i++) {
+                counts[groups[i]]++;
+            }
+            for (int j = 0; j < valueColumns.length; j++) {
+                storage.copyColumn(valueColumns[j], start, start + length, values);
+                accumulators.add(j, values, groups, length, known, firstRows, added);
+            }
+        }
+        return accumulators;
+    }
+
+    /**
+     * The group table of a range of rows with the accumulators of every group, held
+     * in one array per aggregated column and kind of accumulator
+     */
+    private static final class Accumulators {
+        private final DoubleHashTable table;
+        private final boolean sum;
+        private final boolean minimum;
+        private final boolean maximum;
+        private final boolean moments;
+        private long[] counts;
+        private final double[][] sums;
+        private final double[][] mins;
+        private final double[][] maxs;
+        private final double[][] shifts;
+        private final double[][] shiftedSums;
+        private final double[][] shiftedSquares;
+
+        Accumulators(int keyWidth, int valueColumns, Aggregate[] aggregates) {
+            table = new DoubleHashTable(keyWidth, 16);
+            List<Aggregate> list = Arrays.asList(aggregates);
+            sum = list.contains(Aggregate.SUM) || list.contains(Aggregate.MEAN);
+            minimum = list.contains(Aggregate.MIN);
+            maximum = list.contains(Aggregate.MAX);
+            moments = list.contains(Aggregate.VARIANCE) || list.contains(Aggregate.STD);
+            counts = new long[0];
+            sums = new double[valueColumns][0];
+            mins = new double[valueColumns][0];
+            maxs = new double[valueColumns][0];
+            shifts = new double[valueColumns][0];
+            shiftedSums = new double[valueColumns][0];
+            shiftedSquares = new double[valueColumns][0];
+        }
+
+        /**
+         * Make room in the arrays for every group of the table, and initialize the
+         * minimum and maximum of the new groups
+         */
+        void ensureCapacity() {
+            int groups = table.groupCount();
+            int capacity = counts.length;
+            if (groups <= capacity) {
+                return;
+            }
+            int newCapacity = Math.max(groups, capacity * 2);
+            counts = Arrays.copyOf(counts, newCapacity);
+            for (int j = 0; j < sums.length; j++) {
+                if (sum) {
+                    sums[j] = Arrays.copyOf(sums[j], newCapacity);
+                }
+                if (minimum) {
+                    mins[j] = Arrays.copyOf(mins[j], newCapacity);
+                    Arrays.fill(mins[j], capacity, newCapacity, Double.POSITIVE_INFINITY);
+                }
+                if (maximum) {
+                    maxs[j] = Arrays.copyOf(maxs[j], newCapacity);
+                    Arrays.fill(maxs[j], capacity, newCapacity, Double.NEGATIVE_INFINITY);
+                }
+                if (moments) {
+                    shifts[j] = Arrays.copyOf(shifts[j], newCapacity);
+                    shiftedSums[j] = Arrays.copyOf(shiftedSums[j], newCapacity);
+                    shiftedSquares[j] = Arrays.copyOf(shiftedSquares[j], newCapacity);
+                }
+            }
+        }
+
+        /**
+         * Accumulate a block of values of a column. The groups numbered from known
+         * were added in this block; the first of their rows sets the value the
+         * deviations of the group are taken from.
+         */
+        void add(int j, double[] values, int[] groups, int length, int known, int[] firstRows, int added) {
+            if (sum) {
+                double[] s = sums[j];
+                for (int i = 0; i < length; i++) {
+                    s[groups[i]] += values[i];
+                }
+            }
+            if (minimum) {
+                double[] m = mins[j];
+                for (int i = 0; i < length; i++) {
+                    int g = groups[i];
+                    m[g] = Math.min(m[g], values[i]);
+                }
+            }
+            if (maximum) {
+                double[] m = maxs[j];
+                for (int i = 0; i < length; i++) {
+                    int g = groups[i];
+                    m[g] = Math.max(m[g], values[i]);
+                }
+            }
+            if (moments) {
+                double[] shift = shifts[j];
+                for (int g = 0; g < added; g++) {
+                    shift[known + g] = values[firstRows[g]];
+                }
+                double[] s1 = shiftedSums[j];
+                double[] s2 = shiftedSquares[j];
+                for (int i = 0; i < length; i++) {
+                    int g = groups[i];
+                    double deviation = values[i] - shift[g];
+                    s1[g] += deviation;
+                    s2[g] += deviation * deviation;
+                }
+            }
+        }
+
+        /**
+         * Add the groups of the accumulators of a later range of rows
+         */
+        void merge(Accumulators other) {
+            int width = table.width();
+            double[] otherKeys = other.table.keys();
+            for (int h = 0; h < other.table.groupCount(); h++) {
+                int known = table.groupCount();
+                int g = table.add(otherKeys, h * width);
+                if (g >= known) {
+                    ensureCapacity();
+                    if (moments) {
+                        for (int j = 0; j < shifts.length; j++) {
+                            shifts[j][g] = other.shifts[j][h];
+                        }
+                    }
+                }
+                long n = other.counts[h];
+                counts[g] += n;
+                for (int j = 0; j < sums.length; j++) {
+                    if (sum) {
+                        sums[j][g] += other.sums[j][h];
+                    }
+                    if (minimum) {
+                        mins[j][g] = Math.min(mins[j][g], other.mins[j][h]);
+                    }
+                    if (maximum) {
+                        maxs[j][g] = Math.max(maxs[j][g], other.maxs[j][h]);
+                    }
+                    if (moments) {
+                        double d = other.shifts[j][h] - shifts[j][g];
+                        double s1 = other.shiftedSums[j][h];
+                        shiftedSums[j][g] += s1 + n * d;
+                        shiftedSquares[j][g] += other.shiftedSquares[j][h] + 2 * d * s1 + n * d * d;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Return the value of an aggregate of a column for every group
+         */
+        double[] get(Aggregate aggregate, int j) {
+            int groups = table.groupCount();
+            double[] result = new double[groups];
+            for (int g = 0; g < groups; g++) {
+                long n = counts[g];
+                switch (aggregate) {
+                    case COUNT:
+                        result[g] = n;
+                        break;
+                    case SUM:
+                        result[g] = sums[j][g];
+                        break;
+                    case MEAN:
+                        result[g] = sums[j][g] / n;
+                        break;
+                    case MIN:
+                        result[g] = mins[j][g];
+                        break;
+                    case MAX:
+                        result[g] = maxs[j][g];
+                        break;
+                    default:
+                        double s1 = shiftedSums[j][g];
+                        double variance = n == 1 ? 0 : Math.max(0, (shiftedSquares[j][g] - s1 * s1 / n) / (n - 1));
+                        result[g] = aggregate == Aggregate.VARIANCE ? variance : Math.sqrt(variance);
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+/**
+ * The kinds of join between two data frames on key columns, see
+ * {@link DoubleDataFrame#join(DataFrame, JoinType, String...)}.
+ *
+ */
+public enum JoinType {
+    /**
+     * A row for every pair of a left row and a right row with equal keys
+     */
+    INNER,
+    /**
+     * A row for every pair of a left row and a right row with equal keys, and a row
+     * with NaN in the right columns for every left row without a matching right row
+     */
+    LEFT,
+    /**
+     * Every left row that has at least one matching right row, with the left columns only
+     */
+    SEMI,
+    /**
+     * Every left row that has no matching right row, with the left columns only
+     */
+    ANTI
+}
@@ -0,0 +1,88 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Compares the running time of the column based operations getColumn, project
+ * and summarize on a row-major and a column-major DoubleDataFrame holding the
+ * same data.
+ *
+ * Run with a heap large enough to hold two copies of the frame, e.g.
+ * java -Xmx2g LayoutBenchmark [rows] [columns]
+ */
+public class LayoutBenchmark
+{
+
+	private static final int REPETITIONS = 10;
+
+	public static void main(String[] args)
+	{
+		int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+		int cols = args.length > 1 ? Integer.parseInt(args[1]) : 24;
+		List<String> header = new ArrayList<>(cols);
+		for (int j = 0; j < cols; j++)
+		{
+			header.add("x_" + j);
+		}
+		Random random = new Random(12345);
+		double[][] data = new double[rows][cols];
+		for (int i = 0; i < rows; i++)
+		{
+			for (int j = 0; j < cols; j++)
+			{
+				data[i][j] = random.nextDouble();
+			}
+		}
+		DataFrame<Double> rowMajor = new DoubleDataFrame(header, data, DoubleDataFrame.Layout.ROW_MAJOR);
+		DataFrame<Double> columnMajor = new DoubleDataFrame(header, data, DoubleDataFrame.Layout.COLUMN_MAJOR);
+		System.out.println("Frame of " + rows + " rows and " + cols + " columns");
+		compare(rowMajor, columnMajor, header);
+		// second round, after the JIT compiler has warmed up
+		compare(rowMajor, columnMajor, header);
+	}
+
+	private static void compare(DataFrame<Double> rowMajor, DataFrame<Double> columnMajor, List<String> header)
+	{
+		List<String> half = header.subList(0, header.size() / 2);
+		System.out.println(String.format("%-12s %12s %12s", "operation", "row-major", "column-major"));
+		System.out.println(String.format("%-12s %10dms %10dms", "summarize",
+				time(() -> rowMajor.summarize("sum", Double::sum)),
+				time(() -> columnMajor.summarize("sum", Double::sum))));
+		System.out.println(String.format("%-12s %10dms %10dms", "getColumn",
+				time(() -> rowMajor.getColumn(header.get(0))),
+				time(() -> columnMajor.getColumn(header.get(0)))));
+		System.out.println(String.format("%-12s %10dms %10dms", "project",
+				time(() -> rowMajor.project(half)),
+				time(() -> columnMajor.project(half))));
+		System.out.println(String.format("%-12s %10dms %10dms", "sum x_0",
+				time(() -> sumColumn(rowMajor, header.get(0))),
+				time(() -> sumColumn(columnMajor, header.get(0)))));
+	}
+
+	private static Object sumColumn(DataFrame<Double> df, String colName)
+	{
+		double sum = 0;
+		for (int i = 0; i < df.getRowCount(); i++)
+		{
+			sum += df.getValue(i, colName);
+		}
+		return sum;
+	}
+
+	private static long time(Supplier<Object> operation)
+	{
+		long time = System.nanoTime();
+		Object sink = null;
+		for (int r = 0; r < REPETITIONS; r++)
+		{
+			sink = operation.get();
+		}
+		time = System.nanoTime() - time;
+		if (sink == null)
+		{
+			System.out.println("no result");
+		}
+		return time / REPETITIONS / 1_000_000;
+	}
+}
@@ -0,0 +1,512 @@
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * A lazy data frame records the operations applied to a DoubleDataFrame as a
+ * logical plan instead of executing them one by one. The plan is executed the
+ * first time a terminal operation needs the data, such as summarize, getValue,
+ * print or an explicit call to collect(). The result is kept, so later terminal
+ * operations do not execute the plan again.
+ *
+ * When the plan is executed, all consecutive select and computeColumn steps are
+ * fused into a single pass over the rows of the source frame. The rows are read
+ * directly from the source storage and only the columns that are part of the
+ * final result are copied: columns dropped by project are never copied, and rows
+ * rejected by select are never copied. Expanding with additional rows cannot be
+ * fused; the steps before such an expand are executed first.
+ *
+ * Within the fused pass the name of a row vector refers to the index of the row
+ * in the source frame. When the source frame is parallel, the pass is split into
+ * chunks of rows, see {@link DoubleDataFrame#parallel()}.
+ *
+ */
+public class LazyDataFrame implements DataFrame<Double> {
+    private Supplier<DoubleDataFrame> source;
+    private Schema sourceSchema;
+    private List<Step> steps;
+    private Schema schema;
+    private int[] mapping;
+    private int slots;
+    private DoubleDataFrame result;
+
+    /**
+     * A step of the plan that is evaluated for every row: either a filter of a
+     * select or a function of a computeColumn. The step sees the columns as they
+     * were when the step was recorded.
+     */
+    private static final class Step {
+        private final Predicate<DataVector<Double>> filter;
+        private final Function<DataVector<Double>, Double> function;
+        private final Schema schema;
+        private final int[] mapping;
+        private final int slot;
+
+        Step(Predicate<DataVector<Double>> filter, Function<DataVector<Double>, Double> function,
+             Schema schema, int[] mapping, int slot) {
+            this.filter = filter;
+            this.function = function;
+            this.schema = schema;
+            this.mapping = mapping;
+            this.slot = slot;
+        }
+    }
+
+    /**
+     * The values produced by the fused pass over a chunk of rows
+     */
+    private static final class Chunk {
+        private final double[][] values;
+        private final int count;
+
+        Chunk(double[][] values, int count) {
+            this.values = values;
+            this.count = count;
+        }
+    }
+
+    /**
+     * This constructor creates an empty plan on top of an existing data frame
+     *
+     * @param source the data frame the plan starts from
+     */
+    LazyDataFrame(DoubleDataFrame source) {
+        this(() -> source, source.getSchema());
+    }
+
+    /**
+     * This constructor creates an empty plan on top of a data frame that is only
+     * computed when the plan is executed
+     *
+     * @param source supplies the data frame the plan starts from
+     * @param sourceSchema the schema of the supplied data frame
+     */
+    private LazyDataFrame(Supplier<DoubleDataFrame> source, Schema sourceSchema) {
+        this.source = source;
+        this.sourceSchema = sourceSchema;
+        this.steps = Collections.emptyList();
+        this.schema = sourceSchema;
+        this.mapping = new int[sourceSchema.size()];
+        for (int j = 0; j < mapping.length; j++) {
+            mapping[j] = j;
+        }
+    }
+
+    /**
+     * Create a copy of this plan, to which a step can be added without changing this plan
+     *
+     * @return a copy of this plan
+     */
+    private LazyDataFrame copy() {
+        LazyDataFrame plan = new LazyDataFrame(source, sourceSchema);
+        plan.steps = steps;
+        plan.schema = schema;
+        plan.mapping = mapping;
+        plan.slots = slots;
+        return plan;
+    }
+
+    /**
+     * Execute the plan, unless it was executed before, and return the resulting data frame
+     *
+     * @return the data frame produced by the plan
+     */
+    public DoubleDataFrame collect() {
+        if (result == null) {
+            result = execute();
+        }
+        return result;
+    }
+
+    /**
+     * Execute the plan in a single pass over the rows of the source frame
+     *
+     * @return the data frame produced by the plan
+     */
+    private DoubleDataFrame execute() {
+        DoubleDataFrame df = source.get();
+        DoubleStorage storage = df.storage();
+        ForkJoinPool pool = df.pool();
+        boolean rowMajor = storage.layout() == DoubleDataFrame.Layout.ROW_MAJOR;
+        List<Chunk> chunks;
+        if (pool != null) {
+            chunks = RowChunks.map(pool, storage.rowCount(), (from, to) -> run(storage, rowMajor, from, to));
+        } else {
+            chunks = Collections.singletonList(run(storage, rowMajor, 0, storage.rowCount()));
+        }
+        DoubleStorage merged = rowMajor ? mergeRows(chunks) : mergeColumns(chunks);
+        return pool == null ? new DoubleDataFrame(schema, merged) : new DoubleDataFrame(schema, merged).parallel(pool);
+    }
+
+    /**
+     * Run all steps of the plan on a range of rows of the source storage
+     *
+     * @param storage the storage of the source frame
+     * @param rowMajor whether the result is produced row by row or column by column
+     * @param from the index of the first row
+     * @param to the index after the last row
+     * @return the produced values, one array per row or per column
+     */
+    private Chunk run(DoubleStorage storage, boolean rowMajor, int from, int to) {
+        int cols = mapping.length;
+        double[] computed = new double[slots];
+        int capacity = Math.max(16, steps.isEmpty() ? to - from : (to - from) / 4);
+        double[][] out = rowMajor ? new double[capacity][] : new double[cols][capacity];
+        int count = 0;
+        rows:
+        for (int i = from; i < to; i++) {
+            for (Step step : steps) {
+                PlanRow row = new PlanRow(storage, i, computed, step.schema, step.mapping);
+                if (step.filter != null) {
+                    if (!step.filter.test(row)) {
+                        continue rows;
+                    }
+                } else {
+                    computed[step.slot] = step.function.apply(row);
+                }
+            }
+            if (count == capacity) {
+                capacity = Math.min(to - from, capacity * 2);
+                if (rowMajor) {
+                    out = Arrays.copyOf(out, capacity);
+                } else {
+                    for (int j = 0; j < cols; j++) {
+                        out[j] = Arrays.copyOf(out[j], capacity);
+                    }
+                }
+            }
+            if (rowMajor) {
+                double[] values = new double[cols];
+                for (int j = 0; j < cols; j++) {
+                    values[j] = mapping[j] >= 0 ? storage.get(i, mapping[j]) : computed[-mapping[j] - 1];
+                }
+                out[count] = values;
+            } else {
+                for (int j = 0; j < cols; j++) {
+                    out[j][count] = mapping[j] >= 0 ? storage.get(i, mapping[j]) : computed[-mapping[j] - 1];
+                }
+            }
+            count++;
+        }
+        return new Chunk(out, count);
+    }
+
+    /**
+     * Merge the rows produced by the chunks into a row-major storage
+     *
+     * @param chunks the produced values of every chunk, in row order
+     * @return the merged storage
+     */
+    private DoubleStorage mergeRows(List<Chunk> chunks) {
+        int rows = 0;
+        for (Chunk chunk : chunks) {
+            rows += chunk.count;
+        }
+        double[][] data = new double[rows][];
+        int offset = 0;
+        for (Chunk chunk : chunks) {
+            System.arraycopy(chunk.values, 0, data, offset, chunk.count);
+            offset += chunk.count;
+        }
+        return new RowStorage(data, mapping.length);
+    }
+
+    /**
+     * Merge the columns produced by the chunks into a column-major storage
+     *
+     * @param chunks the produced values of every chunk, in row order
+     * @return the merged storage
+     */
+    private DoubleStorage mergeColumns(List<Chunk> chunks) {
+        int rows = 0;
+        for (Chunk chunk : chunks) {
+            rows += chunk.count;
+        }
+        double[][] columns = new double[mapping.length][];
+        for (int j = 0; j < columns.length; j++) {
+            if (chunks.size() == 1 && chunks.get(0).values[j].length == rows) {
+                columns[j] = chunks.get(0).values[j];
+                continue;
+            }
+            columns[j] = new double[rows];
+            int offset = 0;
+            for (Chunk chunk : chunks) {
+                System.arraycopy(chunk.values[j], 0, columns[j], offset, chunk.count);
+                offset += chunk.count;
+            }
+        }
+        return new ColumnStorage(columns, rows);
+    }
+
+    /**
+     * Return the number of rows, which executes the plan
+     *
+     * @return the number of the rows in the data frame
+     */
+    @Override
+    public int getRowCount() {
+        return collect().getRowCount();
+    }
+
+    /**
+     * Return the number of columns, which is known without executing the plan
+     *
+     * @return the number of the column in the data frame
+     */
+    @Override
+    public int getColumnCount() {
+        return schema.size();
+    }
+
+    /**
+     * Return the names of the columns, which are known without executing the plan
+     *
+     * @return the names of the columns in the data frame
+     */
+    @Override
+    public List<String> getColumnNames() {
+        return schema.getNames();
+    }
+
+    /**
+     * Execute the plan and set a value in the resulting data frame
+     *
+     * @param rowIndex the index of the row where value will be set
+     * @param colName the index of the column where value will be set
+     * @param value holds the value that will be set
+     * @throws IllegalArgumentException if a non-existing column name is provided
+     * @throws IndexOutOfBoundsException if an invalid row index is provided
+     */
+    @Override
+    public void setValue(int rowIndex, String colName, Double value)
+            throws IndexOutOfBoundsException, IllegalArgumentException {
+        collect().setValue(rowIndex, colName, value);
+    }
+
+    /**
+     * Execute the plan and retrieve a value of the resulting data frame
+     *
+     * @param rowIndex the index of the row where value will be retrieved
+     * @param colName the index of the column where value will be retrieved
+     * @return the value of specific position in the data frame
+     * @throws IllegalArgumentException if a non-existing column name is provided.
+     * @throws IndexOutOfBoundsException if an invalid row index is provided
+     */
+    @Override
+    public Double getValue(int rowIndex, String colName) throws IndexOutOfBoundsException, IllegalArgumentException {
+        return collect().getValue(rowIndex, colName);
+    }
+
+    @Override
+    public DataVector<Double> getRow(int rowIndex) throws IndexOutOfBoundsException {
+        return collect().getRow(rowIndex);
+    }
+
+    @Override
+    public DataVector<Double> getColumn(String colName) throws IllegalArgumentException {
+        return collect().getColumn(colName);
+    }
+
+    @Override
+    public List<DataVector<Double>> getRows() {
+        return collect().getRows();
+    }
+
+    @Override
+    public List<DataVector<Double>> getColumns() {
+        return collect().getColumns();
+    }
+
+    /**
+     * Record an expand. New columns are added to the plan as columns filled with
+     * zeros; additional rows end the fused pass, so the steps recorded before are
+     * executed before the rows are added.
+     *
+     * @param additionalRows the extra rows are added to the bottom of the matrix
+     * @param newCols list with the names of additional columns
+     * @return the lazy data frame with the recorded step
+     * @throws IllegalArgumentException if the number of additional rows is negative or
+     *                                  a column name is duplicated
+     */
+    @Override
+    public LazyDataFrame expand(int additionalRows, List<String> newCols) throws IllegalArgumentException {
+        if (additionalRows < 0) {
+            throw new IllegalArgumentException("The number of additional rows cannot be negative");
+        }
+        Schema newSchema = schema.append(newCols);
+        if (additionalRows > 0) {
+            return new LazyDataFrame(() -> (DoubleDataFrame) collect().expand(additionalRows, newCols), newSchema);
+        }
+        LazyDataFrame plan = copy();
+        plan.schema = newSchema;
+        plan.mapping = Arrays.copyOf(mapping, mapping.length + newCols.size());
+        for (int j = mapping.length; j < plan.mapping.length; j++) {
+            plan.mapping[j] = -(plan.slots++) - 1;
+        }
+        return plan;
+    }
+
+    @Override
+    public LazyDataFrame expand(int additionalRows, String... newCols) throws IllegalArgumentException {
+        return expand(additionalRows, Arrays.asList(newCols));
+    }
+
+    @Override
+    public LazyDataFrame project(String... retainColumns) {
+        return project(Arrays.asList(retainColumns));
+    }
+
+    /**
+     * Record a projection. Only the names and positions of the columns change, no
+     * values are copied for the columns that are dropped.
+     *
+     * @param retainColumns collection of columns to be extracted from the original data frame
+     * @return the lazy data frame with the recorded step
+     */
+    @Override
+    public LazyDataFrame project(Collection<String> retainColumns) {
+        int[] indices = new int[schema.size()];
+        int count = 0;
+        for (int j = 0; j < schema.size(); j++) {
+            if (retainColumns.contains(schema.getName(j))) {
+                indices[count++] = j;
+            }
+        }
+        indices = Arrays.copyOf(indices, count);
+        LazyDataFrame plan = copy();
+        plan.schema = schema.project(indices);
+        plan.mapping = new int[count];
+        for (int j = 0; j < count; j++) {
+            plan.mapping[j] = mapping[indices[j]];
+        }
+        return plan;
+    }
+
+    /**
+     * Record a selection, which is fused with the neighbouring row based steps
+     *
+     * @param rowFilter predicate of data vector to be tested against rows
+     * @return the lazy data frame with the recorded step
+     */
+    @Override
+    public LazyDataFrame select(Predicate<DataVector<Double>> rowFilter) {
+        LazyDataFrame plan = copy();
+        plan.steps = new ArrayList<>(steps);
+        plan.steps.add(new Step(Objects.requireNonNull(rowFilter), null, schema, mapping, -1));
+        return plan;
+    }
+
+    /**
+     * Record the computation of an additional column, which is fused with the
+     * neighbouring row based steps
+     *
+     * @param columnName name of the additional column
+     * @param function computing the values in the additional column
+     * @return the lazy data frame with the recorded step
+     */
+    @Override
+    public LazyDataFrame computeColumn(String columnName, Function<DataVector<Double>, Double> function) {
+        LazyDataFrame plan = copy();
+        int slot = plan.slots++;
+        plan.steps = new ArrayList<>(steps);
+        plan.steps.add(new Step(null, Objects.requireNonNull(function), schema, mapping, slot));
+        plan.schema = schema.append(Collections.singletonList(columnName));
+        plan.mapping = Arrays.copyOf(mapping, mapping.length + 1);
+        plan.mapping[mapping.length] = -slot - 1;
+        return plan;
+    }
+
+    /**
+     * Execute the plan and summarize each column of the result
+     *
+     * @param name name of the produced data vector
+     * @param summaryFunction binary operator that is used to reduce each column
+     * @return hold aggregated values for every column in the resulting data frame
+     */
+    @Override
+    public DataVector<Double> summarize(String name, BinaryOperator<Double> summaryFunction) {
+        return collect().summarize(name, summaryFunction);
+    }
+
+    /**
+     * A row vector seen by a step of the plan. The values of source columns are read
+     * from the source storage, the values of computed columns from the values
+     * computed for the current row.
+     */
+    private static final class PlanRow implements DoubleVector {
+        private final DoubleStorage storage;
+        private final int row;
+        private final double[] computed;
+        private final Schema schema;
+        private final int[] mapping;
+
+        PlanRow(DoubleStorage storage, int row, double[] computed, Schema schema, int[] mapping) {
+            this.storage = storage;
+            this.row = row;
+            this.computed = computed;
+            this.schema = schema;
+            this.mapping = mapping;
+        }
+
+        @Override
+        public int size() {
+            return mapping.length;
+        }
+
+        @Override
+        public double getDouble(int index) throws IndexOutOfBoundsException {
+            int m = mapping[index];
+            return m >= 0 ? storage.get(row, m) : computed[-m - 1];
+        }
+
+        @Override
+        public double[] toDoubleArray() {
+            double[] values = new double[mapping.length];
+            for (int j = 0; j < values.length; j++) {
+                values[j] = getDouble(j);
+            }
+            return values;
+        }
+
+        @Override
+        public String getName() {
+            return "row_" + row;
+        }
+
+        @Override
+        public List<String> getEntryNames() {
+            return new ArrayList<>(schema.getNames());
+        }
+
+        @Override
+        public Double getValue(String entryName) {
+            return getDouble(schema.columnIndex(entryName));
+        }
+
+        @Override
+        public Double getValue(int index) throws IndexOutOfBoundsException {
+            return getDouble(index);
+        }
+
+        @Override
+        public List<Double> getValues() {
+            List<Double> list = new ArrayList<>(mapping.length);
+            for (int j = 0; j < mapping.length; j++) {
+                list.add(getDouble(j));
+            }
+            return list;
+        }
+
+        @Override
+        public Map<String, Double> asMap() {
+            Map<String, Double> asMap = new HashMap<>();
+            for (int j = 0; j < mapping.length; j++) {
+                asMap.put(schema.getName(j), getDouble(j));
+            }
+            return asMap;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.knowm.xchart.XYChart;
+import org.knowm.xchart.XYChartBuilder;
+import org.knowm.xchart.style.markers.SeriesMarkers;
+
+/**
+ * A live chart is a line chart to which points are appended over time, such as the
+ * rows a dashboard receives. Every series keeps at most twice the maximum number of
+ * points in primitive buffers; when a series outgrows that, its points are reduced to
+ * at most the maximum with Largest-Triangle-Three-Buckets over buckets of equal x
+ * range, see {@link Downsampling}. Every reduction thus gives the reduced history the
+ * same weight per x range as the new points, provided the x values are appended in
+ * ascending order. Appending a point therefore takes amortized constant time and
+ * memory, however long the chart runs, while the reduced history keeps the shape of
+ * the whole series.
+ *
+ * Appends only change the buffers; the data of the changed series is handed to the
+ * XChart chart by {@link #flush()}, which copies at most twice the maximum number of
+ * points per changed series, and by {@link #getChart()}. When the chart is shown in a
+ * Swing panel, a batch of appends should be followed by a flush on the event dispatch
+ * thread and a repaint of the panel.
+ *
+ */
+public class LiveChart {
+    private final XYChart chart;
+    private final int maxPoints;
+    private final Map<String, Series> series = new LinkedHashMap<>();
+
+    /**
+     * The points of one series
+     */
+    private static final class Series {
+        private DoubleColumnBuffer x = new DoubleColumnBuffer();
+        private DoubleColumnBuffer y = new DoubleColumnBuffer();
+        private long appended;
+        private boolean changed;
+    }
+
+    /**
+     * This constructor creates a live chart with an empty line chart
+     *
+     * @param title the title of the chart
+     * @param maxPoints the number of points every series is reduced to, at least 3
+     * @throws IllegalArgumentException if maxPoints is less than 3
+     */
+    public LiveChart(String title, int maxPoints) throws IllegalArgumentException {
+        this(new XYChartBuilder().width(FramePlots.WIDTH).height(FramePlots.HEIGHT).title(title).build(), maxPoints);
+    }
+
+    /**
+     * This constructor creates a live chart that appends to an existing chart. Series
+     * that are already in the chart are replaced when points are appended to them.
+     *
+     * @param chart the chart
+     * @param maxPoints the number of points every series is reduced to, at least 3
+     * @throws IllegalArgumentException if maxPoints is less than 3
+     */
+    public LiveChart(XYChart chart, int maxPoints) throws IllegalArgumentException {
+        if (maxPoints < 3) {
+            throw new IllegalArgumentException("The number of points should be at least 3: " + maxPoints);
+        }
+        this.chart = chart;
+        this.maxPoints = maxPoints;
+    }
+
+    /**
+     * Return the chart that shows the series, after handing it the points appended
+     * since the last flush
+     *
+     * @return the chart
+     */
+    public XYChart getChart() {
+        flush();
+        return chart;
+    }
+
+    /**
+     * Hand the points of every series that changed since the last flush to the chart
+     */
+    public void flush() {
+        for (Map.Entry<String, Series> entry : series.entrySet()) {
+            Series target = entry.getValue();
+            // XChart does not accept a series without points
+            if (!target.changed || target.x.size() == 0) {
+                continue;
+            }
+            target.changed = false;
+            String name = entry.getKey();
+            double[] xs = Arrays.copyOf(target.x.array(), target.x.size());
+            double[] ys = Arrays.copyOf(target.y.array(), target.y.size());
+            if (chart.getSeriesMap().containsKey(name)) {
+                chart.updateXYSeries(name, xs, ys, null);
+            } else {
+                chart.addSeries(name, xs, ys).setMarker(SeriesMarkers.NONE);
+            }
+        }
+    }
+
+    /**
+     * Append a point to a series, creating the series if it does not exist
+     *
+     * @param name the name of the series
+     * @param x the x value of the point
+     * @param y the y value of the point
+     */
+    public void append(String name, double x, double y) {
+        append(name, new double[] { x }, new double[] { y }, 1);
+    }
+
+    /**
+     * Append points to a series, creating the series if it does not exist. Points with
+     * a NaN coordinate are skipped.
+     *
+     * @param name the name of the series
+     * @param x the x values of the points
+     * @param y the y values of the points
+     * @throws IllegalArgumentException if the number of x and y values differ
+     */
+    public void append(String name, double[] x, double[] y) throws IllegalArgumentException {
+        if (x.length != y.length) {
+            throw new IllegalArgumentException("Expected " + x.length + " y values, got " + y.length);
+        }
+        append(name, x.clone(), y.clone(), x.length);
+    }
+
+    /**
+     * Append values to a series, at the x values following the number of values
+     * appended to the series before: 0, 1, 2, ...
+     *
+     * @param name the name of the series
+     * @param y the y values of the points
+     */
+    public void append(String name, double[] y) {
+        Series target = series.get(name);
+        long first = target == null ? 0 : target.appended;
+        double[] x = new double[y.length];
+        for (int i = 0; i < x.length; i++) {
+            x[i] = first + i;
+        }
+        append(name, x, y.clone(), y.length);
+    }
+
+    /**
+     * Append the rows of a data frame, such as a batch of new rows, with one series
+     * for every y column
+     *
+     * @param df the data frame
+     * @param xColumn the name of the column with the x values
+     * @param yColumns the names of the columns with the y values, which are also the
+     *                 names of the series
+     * @throws IllegalArgumentException if a column does not exist
+     */
+    public void append(DataFrame<Double> df, String xColumn, String... yColumns) throws IllegalArgumentException {
+        double[] x = DoubleDataFrame.columnValues(df, xColumn);
+        for (String yColumn : yColumns) {
+            append(yColumn, x.clone(), DoubleDataFrame.columnValues(df, yColumn), x.length);
+        }
+    }
+
+    /**
+     * Append points from arrays that may be changed
+     */
+    private void append(String name, double[] x, double[] y, int length) {
+        Series target = series.get(name);
+        if (target == null) {
+            target = new Series();
+            series.put(name, target);
+        }
+        target.appended += length;
+        length = Downsampling.dropNaN(x, y, length);
+        target.x.addAll(x, 0, length);
+        target.y.addAll(y, 0, length);
+        int size = target.x.size();
+        if (size > 2 * maxPoints) {
+            int[] kept = Downsampling.lttbByRange(target.x.array(), target.y.array(), size, maxPoints);
+            DoubleColumnBuffer keptX = new DoubleColumnBuffer(2 * maxPoints);
+            DoubleColumnBuffer keptY = new DoubleColumnBuffer(2 * maxPoints);
+            keptX.addAll(Downsampling.gather(target.x.array(), kept), 0, kept.length);
+            keptY.addAll(Downsampling.gather(target.y.array(), kept), 0, kept.length);
+            target.x = keptX;
+            target.y = keptY;
+        }
+        target.changed = true;
+    }
+}
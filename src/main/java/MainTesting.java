@@ -27,6 +27,8 @@ public class MainTesting
 		testRestructure();
 		testAnalysis();
 		testRandom();
+		testAlgebra();
+		testLiveChart();
 	}
 
 	private static void dataFrameCore()
@@ -120,12 +122,19 @@ public class MainTesting
 		profitFunction = row -> row.getValue("revenue") - row.getValue("costs");
 		DataFrame<Double> df2 = df.computeColumn("profit", profitFunction);
 		df2.print();
+		Expression profit = Expression.col("revenue").minus(Expression.col("costs"));
+		DataFrame<Double> df3 = ((DoubleDataFrame) df).computeColumn("profit", profit);
+		System.out.println(df3.getColumn("profit").getValues().equals(df2.getColumn("profit").getValues()));
 
 		BinaryOperator<Double> sumOp = Double::sum;
 		DataVector<Double> dv = df2.summarize("sum", sumOp);
 		dv.print();
 		df2.summarize("max", Math::max).print();
 		df2.summarize("min", Math::min).print();
+		for (DataVector<Double> aggregate : ((DoubleDataFrame) df2).summarizeAll(Aggregate.MEAN, Aggregate.STD))
+		{
+			aggregate.print();
+		}
 	}
 
 	private static void testRandom()
@@ -140,4 +149,47 @@ public class MainTesting
 		df = df.concat(rt.generate(1337, rows, Collections.singletonList("exponential")));
 		df.print();
 	}
+
+	private static void testAlgebra()
+	{
+		DataFrame<Double> df = testDataFrame();
+		DoubleDataFrame dependent = (DoubleDataFrame) ((DoubleDataFrame) df).computeColumn("mix",
+				Expression.col("revenue").div(3).plus(Expression.col("costs").times(0.1)));
+		FrameAlgebra.Regression fit = FrameAlgebra.ols(dependent, "year", "revenue", "costs");
+		System.out.println(Arrays.toString(fit.getCoefficients()));
+		try
+		{
+			FrameAlgebra.ols(dependent, "year", "revenue", "costs", "mix");
+			System.out.println(false);
+		}
+		catch (IllegalArgumentException e)
+		{
+			System.out.println(true);
+		}
+	}
+
+	private static void testLiveChart()
+	{
+		LiveChart live = new LiveChart("live", 100);
+		double[] y = new double[1000];
+		for (int batch = 0; batch < 100; batch++)
+		{
+			for (int i = 0; i < y.length; i++)
+			{
+				y[i] = Math.sin((batch * y.length + i) / 500.0);
+			}
+			live.append("sine", y);
+		}
+		double[] x = live.getChart().getSeriesMap().get("sine").getXData();
+		int firstHalf = 0;
+		for (double value : x)
+		{
+			if (value < 50_000)
+			{
+				firstHalf++;
+			}
+		}
+		System.out.println(x.length + " points, " + firstHalf + " in the first half");
+		System.out.println(firstHalf >= x.length / 3 && x.length - firstHalf >= x.length / 3);
+	}
 }
@@ -0,0 +1,136 @@
+import java.nio.DoubleBuffer;
+
+/**
+ * A mapped storage keeps the values of a data frame in column-major order in
+ * memory-mapped regions of a column file, see {@link ColumnFile}. The values are
+ * not loaded when the storage is created; the operating system pages them in when
+ * they are accessed, so the data does not count against the heap and a column
+ * file larger than the heap can be opened.
+ *
+ * The regions are mapped read only and the file is never modified. The first time
+ * a value of a column is set, the column is copied to an array on the heap, which
+ * backs the column from then on. The storages created by expand, project, select
+ * and appendColumn are regular column storages on the heap.
+ *
+ */
+class MappedStorage extends DoubleStorage {
+    private DoubleBuffer[] columns;
+    private int rows;
+
+    /**
+     * This constructor stores the mapped buffers of the columns
+     *
+     * @param columns array that holds one buffer with the values of every column
+     * @param rows the number of rows, also needed when there are no columns
+     */
+    MappedStorage(DoubleBuffer[] columns, int rows) {
+        this.columns = columns;
+        this.rows = rows;
+    }
+
+    @Override
+    int rowCount() {
+        return rows;
+    }
+
+    @Override
+    int columnCount() {
+        return columns.length;
+    }
+
+    @Override
+    DoubleDataFrame.Layout layout() {
+        return DoubleDataFrame.Layout.COLUMN_MAJOR;
+    }
+
+    @Override
+    double get(int row, int col) {
+        return columns[col].get(row);
+    }
+
+    @Override
+    void set(int row, int col, double value) {
+        if (row < 0 || row >= rows) {
+            throw new IndexOutOfBoundsException("Row index " + row + " out of bounds for " + rows + " rows");
+        }
+        beforeWrite();
+        if (columns[col].isReadOnly()) {
+            columns[col] = DoubleBuffer.wrap(columnCopy(col));
+        }
+        columns[col].put(row, value);
+    }
+
+    @Override
+    double[] column(int col) {
+        return columnCopy(col);
+    }
+
+    @Override
+    double[] row(int row) {
+        double[] values = new double[columns.length];
+        for (int j = 0; j < columns.length; j++) {
+            values[j] = columns[j].get(row);
+        }
+        return values;
+    }
+
+    @Override
+    void copyColumn(int col, int from, int to, double[] target) {
+        DoubleBuffer source = columns[col].duplicate();
+        source.position(from);
+        source.get(target, 0, to - from);
+    }
+
+    @Override
+    double[] columnCopy(int col) {
+        double[] values = new double[rows];
+        copyColumn(col, 0, rows, values);
+        return values;
+    }
+
+    @Override
+    double[] rowCopy(int row) {
+        return row(row);
+    }
+
+    @Override
+    DoubleStorage expand(int additionalRows, int additionalCols) {
+        double[][] newColumns = new double[columns.length + additionalCols][rows + additionalRows];
+        for (int j = 0; j < columns.length; j++) {
+            copyColumn(j, 0, rows, newColumns[j]);
+        }
+        return new ColumnStorage(newColumns, rows + additionalRows);
+    }
+
+    @Override
+    DoubleStorage project(int[] retain) {
+        double[][] newColumns = new double[retain.length][];
+        for (int j = 0; j < retain.length; j++) {
+            newColumns[j] = columnCopy(retain[j]);
+        }
+        return new ColumnStorage(newColumns, rows);
+    }
+
+    @Override
+    DoubleStorage select(int[] selected, int count) {
+        double[][] newColumns = new double[columns.length][count];
+        for (int j = 0; j < columns.length; j++) {
+            DoubleBuffer source = columns[j];
+            double[] target = newColumns[j];
+            for (int i = 0; i < count; i++) {
+                target[i] = source.get(selected[i]);
+            }
+        }
+        return new ColumnStorage(newColumns, count);
+    }
+
+    @Override
+    DoubleStorage appendColumn(double[] values) {
+        double[][] newColumns = new double[columns.length + 1][];
+        for (int j = 0; j < columns.length; j++) {
+            newColumns[j] = columnCopy(j);
+        }
+        newColumns[columns.length] = values;
+        return new ColumnStorage(newColumns, rows);
+    }
+}
@@ -0,0 +1,139 @@
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the heap footprint and the time spent in garbage collection of an
+ * on-heap and an off-heap DoubleDataFrame holding the same data, while running
+ * select, computeColumn and summarize on the frame and allocating short-lived
+ * objects next to it, as a service handling requests would.
+ *
+ * Run with a heap and direct memory large enough to hold the frame, e.g.
+ * java -Xmx2g -XX:MaxDirectMemorySize=2g -Xlog:gc OffHeapBenchmark [rows] [columns]
+ */
+public class OffHeapBenchmark
+{
+
+	private static final int REPETITIONS = 10;
+
+	public static void main(String[] args)
+	{
+		int rows = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+		int cols = args.length > 1 ? Integer.parseInt(args[1]) : 24;
+		System.out.println("Frame of " + rows + " rows and " + cols + " columns");
+		System.out.println(String.format("%-10s %12s %12s %10s %10s %10s", "frame", "heap", "direct",
+				"gc count", "gc time", "total"));
+		run("on-heap", false, rows, cols);
+		run("off-heap", true, rows, cols);
+		// second round, after the JIT compiler has warmed up
+		run("on-heap", false, rows, cols);
+		run("off-heap", true, rows, cols);
+	}
+
+	private static void run(String label, boolean offHeap, int rows, int cols)
+	{
+		long heapBefore = usedHeap();
+		long directBefore = usedDirect();
+		DoubleDataFrame df = offHeap ? createFrame(rows, cols).offHeap() : createFrame(rows, cols);
+		long heap = usedHeap() - heapBefore;
+		long direct = usedDirect() - directBefore;
+
+		long gcCount = gcCount();
+		long gcTime = gcTime();
+		long time = System.nanoTime();
+		double sink = 0;
+		for (int r = 0; r < REPETITIONS; r++)
+		{
+			DataFrame<Double> selected = df.select(row -> ((DoubleVector) row).getDouble(0) > 0.5);
+			DataFrame<Double> computed = df.computeColumn("y", Expression.col("x_0").times(2).plus(Expression.col("x_1")));
+			sink += df.reduce("sum", Double::sum).getValue(0) + selected.getRowCount() + computed.getColumnCount();
+			sink += churn();
+			if (offHeap)
+			{
+				((DoubleDataFrame) selected).close();
+				((DoubleDataFrame) computed).close();
+			}
+		}
+		time = System.nanoTime() - time;
+		df.close();
+		if (Double.isNaN(sink))
+		{
+			System.out.println("no result");
+		}
+		System.out.println(String.format("%-10s %10dMB %10dMB %10d %8dms %8dms", label, heap >> 20, direct >> 20,
+				gcCount() - gcCount, gcTime() - gcTime, time / 1_000_000));
+	}
+
+	private static DoubleDataFrame createFrame(int rows, int cols)
+	{
+		List<String> header = new ArrayList<>(cols);
+		double[][] columns = new double[cols][rows];
+		Random random = new Random(12345);
+		for (int j = 0; j < cols; j++)
+		{
+			header.add("x_" + j);
+			for (int i = 0; i < rows; i++)
+			{
+				columns[j][i] = random.nextDouble();
+			}
+		}
+		return DoubleDataFrame.fromColumns(header, columns);
+	}
+
+	/**
+	 * Allocate short-lived objects, as the handling of a request would
+	 */
+	private static double churn()
+	{
+		double sum = 0;
+		for (int k = 0; k < 200_000; k++)
+		{
+			double[] garbage = new double[16];
+			garbage[k & 15] = k;
+			sum += garbage[k & 15];
+		}
+		return sum;
+	}
+
+	private static long usedHeap()
+	{
+		System.gc();
+		Runtime runtime = Runtime.getRuntime();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private static long usedDirect()
+	{
+		for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class))
+		{
+			if (pool.getName().equals("direct"))
+			{
+				return pool.getMemoryUsed();
+			}
+		}
+		return 0;
+	}
+
+	private static long gcCount()
+	{
+		long count = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+		{
+			count += Math.max(0, gc.getCollectionCount());
+		}
+		return count;
+	}
+
+	private static long gcTime()
+	{
+		long time = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+		{
+			time += Math.max(0, gc.getCollectionTime());
+		}
+		return time;
+	}
+}
@@ -0,0 +1,278 @@
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+
+/**
+ * An off-heap storage keeps the values of a data frame in column-major order in
+ * direct buffers, one per column. The values do not live on the Java heap, so
+ * the garbage collector never has to scan or copy them, which keeps collection
+ * pauses short even for frames with hundreds of millions of cells. Only the small
+ * buffer objects themselves are on the heap.
+ *
+ * The storages created by expand, project, select and appendColumn are off-heap
+ * as well. The memory of a storage is released by {@link #close()}; a storage
+ * that is never closed is released when its buffers are garbage collected.
+ * After close the storage keeps its dimensions, but every access to its values
+ * throws an IllegalStateException. Closing a storage
+ * while another thread is still reading it is not supported.
+ *
+ * The total size of all direct buffers is limited by -XX:MaxDirectMemorySize,
+ * which defaults to the maximum heap size.
+ *
+ */
+class OffHeapStorage extends DoubleStorage {
+
+    /**
+     * Releases the memory of a direct buffer immediately, or null if the running
+     * JVM does not allow it
+     */
+    private static final MethodHandle INVOKE_CLEANER = findCleaner();
+
+    private ByteBuffer[] buffers;
+    private DoubleBuffer[] columns;
+    private int rows;
+    private final int cols;
+    private boolean closed;
+
+    /**
+     * This constructor allocates a storage filled with zeros
+     *
+     * @param rows the number of rows
+     * @param cols the number of columns
+     * @throws IllegalArgumentException if a column would exceed the maximum size of a buffer
+     */
+    OffHeapStorage(int rows, int cols) throws IllegalArgumentException {
+        if ((long) rows * Double.BYTES > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Columns of more than " + (Integer.MAX_VALUE / Double.BYTES)
+                    + " rows cannot be stored off-heap");
+        }
+        this.rows = rows;
+        this.cols = cols;
+        this.buffers = new ByteBuffer[cols];
+        this.columns = new DoubleBuffer[cols];
+        for (int j = 0; j < cols; j++) {
+            buffers[j] = ByteBuffer.allocateDirect(rows * Double.BYTES).order(ByteOrder.nativeOrder());
+            columns[j] = buffers[j].asDoubleBuffer();
+        }
+    }
+
+    /**
+     * Create an off-heap copy of a storage
+     *
+     * @param storage the storage to copy
+     * @return an off-heap storage holding the same values
+     */
+    static OffHeapStorage copyOf(DoubleStorage storage) {
+        OffHeapStorage copy = new OffHeapStorage(storage.rowCount(), storage.columnCount());
+        for (int j = 0; j < copy.cols; j++) {
+            copy.copyFrom(storage, j, j);
+        }
+        return copy;
+    }
+
+    @Override
+    int rowCount() {
+        return rows;
+    }
+
+    @Override
+    int columnCount() {
+        return cols;
+    }
+
+    @Override
+    DoubleDataFrame.Layout layout() {
+        return DoubleDataFrame.Layout.COLUMN_MAJOR;
+    }
+
+    @Override
+    double get(int row, int col) {
+        checkOpen();
+        return columns[col].get(row);
+    }
+
+    @Override
+    void set(int row, int col, double value) {
+        checkOpen();
+        beforeWrite();
+        columns[col].put(row, value);
+    }
+
+    @Override
+    double[] column(int col) {
+        return columnCopy(col);
+    }
+
+    @Override
+    double[] row(int row) {
+        checkOpen();
+        double[] values = new double[cols];
+        for (int j = 0; j < cols; j++) {
+            values[j] = columns[j].get(row);
+        }
+        return values;
+    }
+
+    @Override
+    void copyColumn(int col, int from, int to, double[] target) {
+        checkOpen();
+        DoubleBuffer source = columns[col].duplicate();
+        source.position(from);
+        source.get(target, 0, to - from);
+    }
+
+    @Override
+    void setColumn(int col, int from, int to, double[] source) {
+        checkOpen();
+        beforeWrite();
+        DoubleBuffer target = columns[col].duplicate();
+        target.position(from);
+        target.put(source, 0, to - from);
+    }
+
+    @Override
+    double[] columnCopy(int col) {
+        double[] values = new double[rows];
+        copyColumn(col, 0, rows, values);
+        return values;
+    }
+
+    @Override
+    double[] rowCopy(int row) {
+        return row(row);
+    }
+
+    @Override
+    DoubleStorage expand(int additionalRows, int additionalCols) {
+        checkOpen();
+        OffHeapStorage expanded = new OffHeapStorage(rows + additionalRows, cols + additionalCols);
+        for (int j = 0; j < cols; j++) {
+            expanded.copyFrom(this, j, j);
+        }
+        return expanded;
+    }
+
+    @Override
+    DoubleStorage project(int[] retain) {
+        checkOpen();
+        OffHeapStorage projected = new OffHeapStorage(rows, retain.length);
+        for (int j = 0; j < retain.length; j++) {
+            projected.copyFrom(this, retain[j], j);
+        }
+        return projected;
+    }
+
+    @Override
+    DoubleStorage select(int[] selected, int count) {
+        checkOpen();
+        OffHeapStorage result = new OffHeapStorage(count, cols);
+        for (int j = 0; j < cols; j++) {
+            DoubleBuffer source = columns[j];
+            DoubleBuffer target = result.columns[j];
+            for (int i = 0; i < count; i++) {
+                target.put(i, source.get(selected[i]));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    DoubleStorage appendColumn(double[] values) {
+        checkOpen();
+        OffHeapStorage appended = new OffHeapStorage(rows, cols + 1);
+        for (int j = 0; j < cols; j++) {
+            appended.copyFrom(this, j, j);
+        }
+        DoubleBuffer target = appended.columns[cols].duplicate();
+        target.put(values, 0, rows);
+        return appended;
+    }
+
+    @Override
+    DoubleStorage allocate(int newRows, int newCols) {
+        return new OffHeapStorage(newRows, newCols);
+    }
+
+    /**
+     * Release the memory of all columns. Views on this storage copy their values
+     * first. Closing a closed storage has no effect.
+     */
+    @Override
+    void close() {
+        if (closed) {
+            return;
+        }
+        beforeWrite();
+        closed = true;
+        ByteBuffer[] released = buffers;
+        buffers = null;
+        columns = null;
+        if (INVOKE_CLEANER == null) {
+            return;
+        }
+        for (ByteBuffer buffer : released) {
+            try {
+                INVOKE_CLEANER.invokeExact(buffer);
+            } catch (Throwable e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Copy the values of a column of another storage into a column of this
+     * storage, starting at the first row. The source column may be shorter.
+     *
+     * @param source the storage to copy from
+     * @param sourceCol the index of the column in the source storage
+     * @param col the index of the column in this storage
+     * @throws IllegalStateException if either storage has been closed
+     */
+    private void copyFrom(DoubleStorage source, int sourceCol, int col) throws IllegalStateException {
+        checkOpen();
+        int count = Math.min(rows, source.rowCount());
+        DoubleBuffer target = columns[col].duplicate();
+        if (source instanceof OffHeapStorage) {
+            OffHeapStorage offHeap = (OffHeapStorage) source;
+            offHeap.checkOpen();
+            DoubleBuffer values = offHeap.columns[sourceCol].duplicate();
+            values.limit(count);
+            target.put(values);
+            return;
+        }
+        double[] block = new double[Math.min(Expression.BLOCK_SIZE, count)];
+        for (int from = 0; from < count; from += block.length) {
+            int to = Math.min(count, from + block.length);
+            source.copyColumn(sourceCol, from, to, block);
+            target.put(block, 0, to - from);
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("The off-heap storage has been closed");
+        }
+    }
+
+    /**
+     * Look up sun.misc.Unsafe.invokeCleaner, which releases the memory of a direct
+     * buffer without waiting for the garbage collector
+     */
+    private static MethodHandle findCleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            Object unsafe = field.get(null);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(unsafe);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+}
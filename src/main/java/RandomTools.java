@@ -2,8 +2,18 @@ import org.apache.commons.math3.distribution.ExponentialDistribution;
 import org.apache.commons.math3.distribution.NormalDistribution;
 import org.apache.commons.math3.distribution.RealDistribution;
 import org.apache.commons.math3.distribution.UniformRealDistribution;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.CholeskyDecomposition;
+import org.apache.commons.math3.random.AbstractRandomGenerator;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.apache.commons.math3.random.Well19937c;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
 
 /**
  * The Random tools class works with some of the functionality available in the Apache Commons Math
@@ -18,19 +28,52 @@ import java.util.List;
  * It holds Real distribution variable what is used to create dependency with different distribution types
  * hold in the RealDistribution interface of Apache Commons Math API
  *
+ * Large data frames are generated in parallel on a ForkJoinPool. Every column is split
+ * in blocks of a fixed number of rows, and every block is sampled from its own
+ * SplittableRandom split from the seed in a fixed order, so the values depend on the
+ * seed and the number of rows, not on the number of threads. The same blocks are
+ * sampled chunk by chunk by {@link #stream(long, long, int, List)}, which produces
+ * data sets of any size without holding them in memory.
+ *
+ * A multivariate normal distribution produces correlated columns: standard normal
+ * columns are sampled as above and multiplied, row by row, by the lower triangular
+ * Cholesky factor of the covariance matrix.
+ *
  * @author Detelin Radev
  *
  */
 class RandomTools {
+
+    /**
+     * The number of rows of a block that is sampled from a single generator in
+     * parallel generation
+     */
+    static final int BLOCK_ROWS = 1 << 16;
+
     private RealDistribution realDistribution;
+    private final Function<RandomGenerator, RealDistribution> factory;
+    private final double[] means;
+    private final double[][] lower;
 
     /**
-     * This constructor stores Real distribution variable
+     * This constructor stores the factory of the distribution and creates the
+     * distribution used by sequential generation
      *
-     * @param realDistribution dependency variable presenting interface in Apache common API
+     * @param factory creates the distribution sampling from a given generator
+     */
+    private RandomTools(Function<RandomGenerator, RealDistribution> factory) {
+        this(factory, null, null);
+    }
+
+    /**
+     * This constructor also stores the means and the Cholesky factor of a multivariate
+     * normal distribution, which are null for independent columns
      */
-    private RandomTools(RealDistribution realDistribution) {
-        this.realDistribution = realDistribution;
+    private RandomTools(Function<RandomGenerator, RealDistribution> factory, double[] means, double[][] lower) {
+        this.factory = factory;
+        this.realDistribution = factory.apply(new Well19937c());
+        this.means = means;
+        this.lower = lower;
     }
 
     /**
@@ -41,7 +84,7 @@ class RandomTools {
      * @return instance of the class with uniform real distribution implementation injected
      */
     static RandomTools uniform(double i, double i1) {
-        return new RandomTools(new UniformRealDistribution(i,i1));
+        return new RandomTools(random -> new UniformRealDistribution(random, i, i1));
     }
 
     /**
@@ -52,7 +95,7 @@ class RandomTools {
      * @return instance of the class with normal real distribution implementation injected
      */
     static RandomTools gaussian(double i, double i1) {
-        return new RandomTools(new NormalDistribution(i,i1));
+        return new RandomTools(random -> new NormalDistribution(random, i, i1));
     }
 
     /**
@@ -62,7 +105,27 @@ class RandomTools {
      * @return instance of the class with exponential real distribution implementation injected
      */
     static RandomTools exponential(double i) {
-        return new RandomTools(new ExponentialDistribution(i));
+        return new RandomTools(random -> new ExponentialDistribution(random, i));
+    }
+
+    /**
+     * Method creates instance of the class that generates correlated columns, one per
+     * dimension of a multivariate normal distribution
+     *
+     * @param means the means of the columns
+     * @param covariance the covariance matrix of the columns, symmetric and positive definite
+     * @return instance of the class with a multivariate normal distribution
+     * @throws IllegalArgumentException if the covariance matrix does not match the means,
+     *                                  is not symmetric or not positive definite
+     */
+    static RandomTools multivariateNormal(double[] means, double[][] covariance) throws IllegalArgumentException {
+        if (covariance.length != means.length) {
+            throw new IllegalArgumentException("Expected a " + means.length + " x " + means.length
+                    + " covariance matrix, got " + covariance.length + " rows");
+        }
+        double[][] lower = means.length == 0 ? new double[0][]
+                : new CholeskyDecomposition(new Array2DRowRealMatrix(covariance)).getL().getData();
+        return new RandomTools(random -> new NormalDistribution(random, 0, 1), means.clone(), lower);
     }
 
     /**
@@ -76,13 +139,214 @@ class RandomTools {
      * @return data frame filled with sample data
      */
     DataFrame<Double> generate(long i, int rows, List<String> asList) {
+        checkDimension(asList);
         double [][] data = new double[rows][asList.size()];
         realDistribution.reseedRandomGenerator(i);
         for (int j = 0; j < rows; j++) {
             for (int k = 0; k < asList.size(); k++) {
                 data[j][k] = realDistribution.sample();
             }
+            if (lower != null) {
+                correlate(data[j]);
+            }
         }
         return new DoubleDataFrame(asList,data);
     }
-}
\ No newline at end of file
+
+    /**
+     * Generate a column-major data frame in parallel. The values are reproducible: the
+     * same seed and number of rows give the same data frame on any pool, but not the
+     * same values as the sequential generate.
+     *
+     * @param seed given seed for the random generators
+     * @param rows amount of rows to be created
+     * @param colNames list with the column names
+     * @param pool the pool that samples the blocks of the columns
+     * @return data frame filled with sample data
+     * @throws IllegalArgumentException if the number of rows is negative, or the number
+     *                                  of columns differs from the dimension of a
+     *                                  multivariate distribution
+     */
+    DoubleDataFrame generate(long seed, int rows, List<String> colNames, ForkJoinPool pool)
+            throws IllegalArgumentException {
+        if (rows < 0) {
+            throw new IllegalArgumentException("The number of rows should not be negative: " + rows);
+        }
+        checkDimension(colNames);
+        return DoubleDataFrame.fromColumns(colNames, sample(new SplittableRandom(seed), rows, colNames.size(), pool));
+    }
+
+    /**
+     * Create a source that generates rows chunk by chunk, on the thread that reads the
+     * chunk, so only one chunk is held in memory. Every chunk is sampled from a
+     * generator split from the seed, so the same seed, number of rows and chunk size
+     * give the same rows. Use Long.MAX_VALUE rows for a source that does not end in
+     * practice, and {@link StreamingDataFrame#readAhead()} to generate the next chunk
+     * while the current one is processed.
+     *
+     * @param seed given seed for the random generators
+     * @param rows the total number of rows
+     * @param chunkRows the number of rows in a chunk
+     * @param colNames list with the column names
+     * @return the source
+     * @throws IllegalArgumentException if a column name occurs twice, the number of rows
+     *                                  is negative, the number of rows in a chunk is not
+     *                                  positive, or the number of columns differs from
+     *                                  the dimension of a multivariate distribution
+     */
+    ChunkSource stream(long seed, long rows, int chunkRows, List<String> colNames) throws IllegalArgumentException {
+        if (rows < 0) {
+            throw new IllegalArgumentException("The number of rows should not be negative: " + rows);
+        }
+        if (chunkRows <= 0) {
+            throw new IllegalArgumentException("The number of rows in a chunk should be positive: " + chunkRows);
+        }
+        checkDimension(colNames);
+        new Schema(colNames);
+        List<String> names = new ArrayList<>(colNames);
+        SplittableRandom root = new SplittableRandom(seed);
+        return new ChunkSource() {
+            private long position;
+
+            @Override
+            public List<String> getColumnNames() {
+                return names;
+            }
+
+            @Override
+            public DoubleDataFrame nextChunk() {
+                if (position >= rows) {
+                    return null;
+                }
+                int count = (int) Math.min(chunkRows, rows - position);
+                position += count;
+                return DoubleDataFrame.fromColumns(names, sample(root.split(), count, names.size(), null));
+            }
+        };
+    }
+
+    /**
+     * Sample the columns block by block, every block from its own generator split
+     * from the root in column-major block order, and correlate them
+     *
+     * @param pool the pool that samples the blocks, or null to sample them on this thread
+     */
+    private double[][] sample(SplittableRandom root, int rows, int cols, ForkJoinPool pool) {
+        double[][] columns = new double[cols][rows];
+        List<ForkJoinTask<?>> blocks = new ArrayList<>();
+        for (double[] column : columns) {
+            for (int from = 0; from < rows; from += BLOCK_ROWS) {
+                int start = from;
+                int end = Math.min(rows, from + BLOCK_ROWS);
+                // split on this thread, so the order does not depend on the pool
+                RandomGenerator random = new SplittableGenerator(root.split());
+                blocks.add(ForkJoinTask.adapt(() -> {
+                    RealDistribution distribution = factory.apply(random);
+                    for (int j = start; j < end; j++) {
+                        column[j] = distribution.sample();
+                    }
+                }));
+            }
+        }
+        if (pool == null) {
+            for (ForkJoinTask<?> block : blocks) {
+                block.invoke();
+            }
+        } else if (!blocks.isEmpty()) {
+            pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(blocks)));
+        }
+        if (lower != null) {
+            if (pool == null) {
+                correlate(columns, 0, rows);
+            } else {
+                RowChunks.map(pool, rows, (from, to) -> {
+                    correlate(columns, from, to);
+                    return null;
+                });
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Turn standard normal values of a row into values of the multivariate distribution
+     */
+    private void correlate(double[] row) {
+        // the value of column i depends on columns 0 to i, so go from the last column
+        for (int i = row.length - 1; i >= 0; i--) {
+            double value = means[i];
+            for (int k = 0; k <= i; k++) {
+                value += lower[i][k] * row[k];
+            }
+            row[i] = value;
+        }
+    }
+
+    /**
+     * Turn standard normal columns into columns of the multivariate distribution, for
+     * a range of rows
+     */
+    private void correlate(double[][] columns, int from, int to) {
+        for (int i = columns.length - 1; i >= 0; i--) {
+            double[] column = columns[i];
+            double diagonal = lower[i][i];
+            for (int r = from; r < to; r++) {
+                column[r] *= diagonal;
+            }
+            for (int k = 0; k < i; k++) {
+                double factor = lower[i][k];
+                double[] other = columns[k];
+                for (int r = from; r < to; r++) {
+                    column[r] += factor * other[r];
+                }
+            }
+            double mean = means[i];
+            for (int r = from; r < to; r++) {
+                column[r] += mean;
+            }
+        }
+    }
+
+    private void checkDimension(List<String> colNames) {
+        if (lower != null && colNames.size() != lower.length) {
+            throw new IllegalArgumentException("Expected " + lower.length + " columns, got " + colNames.size());
+        }
+    }
+
+    /**
+     * Adapts a SplittableRandom to the generator interface of Apache Commons Math
+     */
+    private static final class SplittableGenerator extends AbstractRandomGenerator {
+        private SplittableRandom random;
+
+        SplittableGenerator(SplittableRandom random) {
+            this.random = random;
+        }
+
+        @Override
+        public void setSeed(long seed) {
+            clear();
+            random = new SplittableRandom(seed);
+        }
+
+        @Override
+        public double nextDouble() {
+            return random.nextDouble();
+        }
+
+        @Override
+        public int nextInt() {
+            return random.nextInt();
+        }
+
+        @Override
+        public int nextInt(int n) {
+            return random.nextInt(n);
+        }
+
+        @Override
+        public long nextLong() {
+            return random.nextLong();
+        }
+    }
+}
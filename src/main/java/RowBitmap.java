@@ -0,0 +1,253 @@
+import java.util.Arrays;
+
+/**
+ * A row bitmap is a compact set of row indices of a data frame, one bit per row.
+ * It is produced by evaluating a {@link Condition} with
+ * {@link DoubleDataFrame#where(Condition)} and applied to a data frame with
+ * {@link DoubleDataFrame#select(RowBitmap)}.
+ *
+ * Bitmaps are immutable, so they can be cached and reused. They are combined
+ * with and, or, andNot and not, which process 64 rows per machine word. A bitmap
+ * describes the rows of a data frame at the time it was evaluated; changing the
+ * values of the data frame afterwards does not change the bitmap.
+ *
+ */
+public final class RowBitmap {
+    private final long[] words;
+    private final int size;
+
+    /**
+     * This constructor stores the words of the bitmap. The bits at positions of
+     * size and higher must be zero.
+     *
+     * @param words array that holds the bits, row i at bit i % 64 of word i / 64
+     * @param size the number of rows covered by the bitmap
+     */
+    RowBitmap(long[] words, int size) {
+        this.words = words;
+        this.size = size;
+    }
+
+    /**
+     * Create a bitmap that holds the given rows
+     *
+     * @param size the number of rows covered by the bitmap
+     * @param rows the indices of the rows in the bitmap
+     * @return the bitmap
+     * @throws IndexOutOfBoundsException if a row index is negative or not smaller than size
+     */
+    public static RowBitmap of(int size, int... rows) throws IndexOutOfBoundsException {
+        long[] words = new long[wordCount(size)];
+        for (int row : rows) {
+            if (row < 0 || row >= size) {
+                throw new IndexOutOfBoundsException("Row index " + row + " out of bounds for " + size + " rows");
+            }
+            words[row >>> 6] |= 1L << row;
+        }
+        return new RowBitmap(words, size);
+    }
+
+    /**
+     * Create a bitmap that holds all rows
+     *
+     * @param size the number of rows covered by the bitmap
+     * @return the bitmap
+     */
+    public static RowBitmap all(int size) {
+        return new RowBitmap(new long[wordCount(size)], size).not();
+    }
+
+    /**
+     * Return the number of words needed for a number of rows
+     */
+    static int wordCount(int size) {
+        return (size + 63) >>> 6;
+    }
+
+    /**
+     * Return the number of rows covered by this bitmap, which is the number of rows
+     * of the data frame it was evaluated on
+     *
+     * @return the number of rows covered
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Return whether a row is in this bitmap
+     *
+     * @param row the index of the row
+     * @return true if the row is in the bitmap
+     * @throws IndexOutOfBoundsException if the row index is negative or not smaller than size
+     */
+    public boolean contains(int row) throws IndexOutOfBoundsException {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row index " + row + " out of bounds for " + size + " rows");
+        }
+        return (words[row >>> 6] & (1L << row)) != 0;
+    }
+
+    /**
+     * Return the number of rows in this bitmap
+     *
+     * @return the number of set bits
+     */
+    public int cardinality() {
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * Return whether this bitmap holds no rows
+     *
+     * @return true if no bit is set
+     */
+    public boolean isEmpty() {
+        for (long word : words) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return the rows that are in this bitmap and in another bitmap
+     *
+     * @param other the bitmap to intersect with
+     * @return the intersection
+     * @throws IllegalArgumentException if the bitmaps cover a different number of rows
+     */
+    public RowBitmap and(RowBitmap other) throws IllegalArgumentException {
+        checkSize(other);
+        long[] result = new long[words.length];
+        for (int k = 0; k < result.length; k++) {
+            result[k] = words[k] & other.words[k];
+        }
+        return new RowBitmap(result, size);
+    }
+
+    /**
+     * Return the rows that are in this bitmap or in another bitmap
+     *
+     * @param other the bitmap to unite with
+     * @return the union
+     * @throws IllegalArgumentException if the bitmaps cover a different number of rows
+     */
+    public RowBitmap or(RowBitmap other) throws IllegalArgumentException {
+        checkSize(other);
+        long[] result = new long[words.length];
+        for (int k = 0; k < result.length; k++) {
+            result[k] = words[k] | other.words[k];
+        }
+        return new RowBitmap(result, size);
+    }
+
+    /**
+     * Return the rows that are in this bitmap but not in another bitmap
+     *
+     * @param other the bitmap with the rows to remove
+     * @return the difference
+     * @throws IllegalArgumentException if the bitmaps cover a different number of rows
+     */
+    public RowBitmap andNot(RowBitmap other) throws IllegalArgumentException {
+        checkSize(other);
+        long[] result = new long[words.length];
+        for (int k = 0; k < result.length; k++) {
+            result[k] = words[k] & ~other.words[k];
+        }
+        return new RowBitmap(result, size);
+    }
+
+    /**
+     * Return the rows that are not in this bitmap
+     *
+     * @return the complement
+     */
+    public RowBitmap not() {
+        long[] result = new long[words.length];
+        for (int k = 0; k < result.length; k++) {
+            result[k] = ~words[k];
+        }
+        if ((size & 63) != 0) {
+            result[result.length - 1] &= (1L << size) - 1;
+        }
+        return new RowBitmap(result, size);
+    }
+
+    /**
+     * Return the index of the first row in this bitmap at or after a given row
+     *
+     * @param from the index of the row to start at
+     * @return the index of the next row in the bitmap, or -1 if there is none
+     */
+    public int nextRow(int from) {
+        if (from < 0) {
+            from = 0;
+        }
+        if (from >= size) {
+            return -1;
+        }
+        int k = from >>> 6;
+        long word = words[k] & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                return (k << 6) + Long.numberOfTrailingZeros(word);
+            }
+            if (++k == words.length) {
+                return -1;
+            }
+            word = words[k];
+        }
+    }
+
+    /**
+     * Return the indices of the rows in this bitmap, in ascending order
+     *
+     * @return a new array with the row indices
+     */
+    public int[] toIndices() {
+        int[] indices = new int[cardinality()];
+        int count = 0;
+        for (int k = 0; k < words.length; k++) {
+            long word = words[k];
+            while (word != 0) {
+                indices[count++] = (k << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+            }
+        }
+        return indices;
+    }
+
+    private void checkSize(RowBitmap other) {
+        if (other.size != size) {
+            throw new IllegalArgumentException("Cannot combine bitmaps of " + size + " and " + other.size + " rows");
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RowBitmap)) {
+            return false;
+        }
+        RowBitmap other = (RowBitmap) o;
+        return size == other.size && Arrays.equals(words, other.words);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * size + Arrays.hashCode(words);
+    }
+
+    @Override
+    public String toString() {
+        return "RowBitmap[" + cardinality() + " of " + size + " rows]";
+    }
+}
@@ -0,0 +1,138 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Splits the rows of a data frame into consecutive chunks and processes the
+ * chunks on a ForkJoinPool. The results of the chunks are returned in row
+ * order, so callers can merge them as if the rows had been processed one after
+ * the other.
+ *
+ */
+final class RowChunks {
+
+    /**
+     * The minimum number of rows in a chunk, smaller chunks are not worth the
+     * overhead of scheduling a task
+     */
+    static final int MIN_CHUNK_SIZE = 4096;
+
+    /**
+     * A function that processes the rows of a single chunk
+     *
+     * @param <T> the type of the result of a chunk
+     */
+    interface ChunkFunction<T> {
+
+        /**
+         * Process the rows with index from (inclusive) to to (exclusive)
+         *
+         * @param from the index of the first row of the chunk
+         * @param to the index after the last row of the chunk
+         * @return the result for this chunk
+         */
+        T apply(int from, int to);
+    }
+
+    private RowChunks() {
+    }
+
+    /**
+     * Determine the number of rows in a chunk, so that every worker of the pool
+     * gets a few chunks to balance the load
+     *
+     * @param pool the pool that will process the chunks
+     * @param rows the total number of rows
+     * @return the number of rows in a chunk
+     */
+    static int chunkSize(ForkJoinPool pool, int rows) {
+        int chunks = pool.getParallelism() * 4;
+        return Math.max(MIN_CHUNK_SIZE, (rows + chunks - 1) / chunks);
+    }
+
+    /**
+     * Apply a function to every chunk of rows and return the results in row order.
+     * When there is only a single chunk the function is applied on the calling thread.
+     *
+     * @param pool the pool that processes the chunks
+     * @param rows the total number of rows
+     * @param function the function to apply to every chunk
+     * @param <T> the type of the result of a chunk
+     * @return the results of the chunks, in row order
+     */
+    static <T> List<T> map(ForkJoinPool pool, int rows, ChunkFunction<T> function) {
+        int chunkSize = chunkSize(pool, rows);
+        int chunks = Math.max(1, (rows + chunkSize - 1) / chunkSize);
+        Object[] results = new Object[chunks];
+        if (chunks == 1) {
+            results[0] = function.apply(0, rows);
+        } else {
+            pool.invoke(new ChunkTask(function, results, 0, chunks, chunkSize, rows));
+        }
+        List<T> list = new ArrayList<>(chunks);
+        for (Object result : results) {
+            @SuppressWarnings("unchecked")
+            T t = (T) result;
+            list.add(t);
+        }
+        return list;
+    }
+
+    /**
+     * Concatenate arrays of row indices that were produced per chunk
+     *
+     * @param parts the arrays of row indices, in row order
+     * @return an array holding all row indices
+     */
+    static int[] concat(List<int[]> parts) {
+        int length = 0;
+        for (int[] part : parts) {
+            length += part.length;
+        }
+        int[] all = parts.isEmpty() ? new int[0] : Arrays.copyOf(parts.get(0), length);
+        int offset = parts.isEmpty() ? 0 : parts.get(0).length;
+        for (int k = 1; k < parts.size(); k++) {
+            System.arraycopy(parts.get(k), 0, all, offset, parts.get(k).length);
+            offset += parts.get(k).length;
+        }
+        return all;
+    }
+
+    /**
+     * Task that processes a range of chunks, splitting the range in halves until a
+     * single chunk remains
+     */
+    private static final class ChunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final ChunkFunction<?> function;
+        private final Object[] results;
+        private final int fromChunk;
+        private final int toChunk;
+        private final int chunkSize;
+        private final int rows;
+
+        ChunkTask(ChunkFunction<?> function, Object[] results, int fromChunk, int toChunk, int chunkSize, int rows) {
+            this.function = function;
+            this.results = results;
+            this.fromChunk = fromChunk;
+            this.toChunk = toChunk;
+            this.chunkSize = chunkSize;
+            this.rows = rows;
+        }
+
+        @Override
+        protected void compute() {
+            if (toChunk - fromChunk == 1) {
+                int from = fromChunk * chunkSize;
+                results[fromChunk] = function.apply(from, Math.min(rows, from + chunkSize));
+                return;
+            }
+            int middle = (fromChunk + toChunk) >>> 1;
+            invokeAll(new ChunkTask(function, results, fromChunk, middle, chunkSize, rows),
+                    new ChunkTask(function, results, middle, toChunk, chunkSize, rows));
+        }
+    }
+}
@@ -0,0 +1,321 @@
+import java.util.Arrays;
+
+/**
+ * A row join finds the pairs of rows of two data frames, the left and the right,
+ * whose key columns hold equal values. The keys are given as one array of values
+ * per key column. The pairs are ordered by left row and, for the same left row, by
+ * right row, so the result of a join keeps the order of the left data frame.
+ *
+ * Keys are compared like numbers with ==, so 0.0 and -0.0 match, and a key that
+ * contains NaN matches no other key.
+ *
+ * The hash join builds a {@link DoubleHashTable} over the keys of the right rows
+ * and probes it with the keys of the left rows. When the right side has more rows
+ * than fit in a partition, the rows of both sides are first partitioned by the
+ * high bits of the hash of their keys, and one partition is joined at a time, so
+ * the hash table never holds more than one partition. The sort-merge join needs
+ * no hash table at all, but requires both sides to be sorted by their keys.
+ *
+ */
+final class RowJoin {
+
+    /**
+     * The maximum number of right rows a hash join builds a table for at once
+     */
+    static final int PARTITION_ROWS = 1 << 20;
+
+    private int[] leftRows;
+    private int[] rightRows;
+    private int count;
+
+    private RowJoin(int capacity) {
+        leftRows = new int[Math.max(16, capacity)];
+        rightRows = new int[leftRows.length];
+    }
+
+    /**
+     * Return the number of pairs
+     *
+     * @return the number of rows of the joined data frame
+     */
+    int count() {
+        return count;
+    }
+
+    /**
+     * Return the left row of every pair
+     *
+     * @return an array of which the first count() entries are used
+     */
+    int[] leftRows() {
+        return leftRows;
+    }
+
+    /**
+     * Return the right row of every pair
+     *
+     * @return an array of which the first count() entries are used, -1 for a left
+     *         row without a match in a left join
+     */
+    int[] rightRows() {
+        return rightRows;
+    }
+
+    private void add(int left, int right) {
+        if (count == leftRows.length) {
+            leftRows = Arrays.copyOf(leftRows, count * 2);
+            rightRows = Arrays.copyOf(rightRows, count * 2);
+        }
+        leftRows[count] = left;
+        rightRows[count] = right;
+        count++;
+    }
+
+    /**
+     * Add the pairs of a left row and the matching right rows, as the kind of join demands
+     *
+     * @param type the kind of join
+     * @param left the left row
+     * @param matches the array that holds the matching right rows
+     * @param from the index of the first matching right row
+     * @param to the index after the last matching right row
+     */
+    private void addMatches(JoinType type, int left, int[] matches, int from, int to) {
+        switch (type) {
+            case INNER:
+                for (int k = from; k < to; k++) {
+                    add(left, matches[k]);
+                }
+                break;
+            case LEFT:
+                if (from == to) {
+                    add(left, -1);
+                }
+                for (int k = from; k < to; k++) {
+                    add(left, matches[k]);
+                }
+                break;
+            case SEMI:
+                if (from < to) {
+                    add(left, -1);
+                }
+                break;
+            default:
+                if (from == to) {
+                    add(left, -1);
+                }
+        }
+    }
+
+    /**
+     * Join two sides with a hash table over the keys of the right side
+     *
+     * @param left the key columns of the left side
+     * @param leftCount the number of left rows
+     * @param right the key columns of the right side
+     * @param rightCount the number of right rows
+     * @param type the kind of join
+     * @param partitionRows the maximum number of right rows in a partition
+     * @return the pairs of matching rows
+     */
+    static RowJoin hash(double[][] left, int leftCount, double[][] right, int rightCount, JoinType type,
+            int partitionRows) {
+        int width = left.length;
+        int bits = 0;
+        while ((long) partitionRows << bits < rightCount) {
+            bits++;
+        }
+        int partitions = 1 << bits;
+        int[] leftOffsets = new int[partitions + 1];
+        int[] leftOrder = partition(left, leftCount, bits, leftOffsets);
+        int[] rightOffsets = new int[partitions + 1];
+        int[] rightOrder = partition(right, rightCount, bits, rightOffsets);
+
+        RowJoin join = new RowJoin(leftCount);
+        double[] key = new double[width];
+        for (int p = 0; p < partitions; p++) {
+            int rightFrom = rightOffsets[p];
+            int rightSize = rightOffsets[p + 1] - rightFrom;
+            DoubleHashTable table = new DoubleHashTable(width, Math.min(rightSize, 1024));
+            int[] groups = new int[rightSize];
+            for (int k = 0; k < rightSize; k++) {
+                groups[k] = keyOf(right, rightOrder[rightFrom + k], key) ? table.add(key, 0) : -1;
+            }
+            // the right rows of every group, in ascending order
+            int[] starts = new int[table.groupCount() + 1];
+            for (int group : groups) {
+                if (group >= 0) {
+                    starts[group + 1]++;
+                }
+            }
+            for (int g = 0; g < table.groupCount(); g++) {
+                starts[g + 1] += starts[g];
+            }
+            int[] matches = new int[starts[table.groupCount()]];
+            int[] next = Arrays.copyOf(starts, table.groupCount());
+            for (int k = 0; k < rightSize; k++) {
+                if (groups[k] >= 0) {
+                    matches[next[groups[k]]++] = rightOrder[rightFrom + k];
+                }
+            }
+
+            for (int k = leftOffsets[p]; k < leftOffsets[p + 1]; k++) {
+                int row = leftOrder[k];
+                int group = keyOf(left, row, key) ? table.find(key, 0) : -1;
+                if (group < 0) {
+                    join.addMatches(type, row, matches, 0, 0);
+                } else {
+                    join.addMatches(type, row, matches, starts[group], starts[group + 1]);
+                }
+            }
+        }
+        if (partitions > 1) {
+            join.sortByLeft(leftCount);
+        }
+        return join;
+    }
+
+    /**
+     * Join two sides that are both sorted by their keys, by merging them
+     *
+     * @param left the key columns of the left side
+     * @param leftCount the number of left rows
+     * @param right the key columns of the right side
+     * @param rightCount the number of right rows
+     * @param type the kind of join
+     * @return the pairs of matching rows
+     * @throws IllegalArgumentException if a side is not sorted by its keys
+     */
+    static RowJoin merge(double[][] left, int leftCount, double[][] right, int rightCount, JoinType type)
+            throws IllegalArgumentException {
+        checkSorted(left, leftCount, "left");
+        checkSorted(right, rightCount, "right");
+        RowJoin join = new RowJoin(leftCount);
+        int[] matches = new int[16];
+        int j = 0;
+        for (int i = 0; i < leftCount; i++) {
+            while (j < rightCount && compare(right, j, left, i) < 0) {
+                j++;
+            }
+            int end = j;
+            if (!hasNaN(left, i)) {
+                while (end < rightCount && compare(right, end, left, i) == 0) {
+                    end++;
+                }
+            }
+            if (end - j > matches.length) {
+                matches = new int[Math.max(end - j, matches.length * 2)];
+            }
+            for (int k = j; k < end; k++) {
+                matches[k - j] = k;
+            }
+            join.addMatches(type, i, matches, 0, end - j);
+        }
+        return join;
+    }
+
+    /**
+     * Order the rows of a side by the partition of their keys, keeping the order of
+     * the rows within a partition
+     *
+     * @param keys the key columns
+     * @param rows the number of rows
+     * @param bits the number of high bits of the hash that select the partition
+     * @param offsets the array that receives the index of the first row of every partition
+     * @return the rows, ordered by partition
+     */
+    private static int[] partition(double[][] keys, int rows, int bits, int[] offsets) {
+        int[] order = new int[rows];
+        if (bits == 0) {
+            for (int i = 0; i < rows; i++) {
+                order[i] = i;
+            }
+            offsets[1] = rows;
+            return order;
+        }
+        int width = keys.length;
+        double[] key = new double[width];
+        int[] partitions = new int[rows];
+        for (int i = 0; i < rows; i++) {
+            keyOf(keys, i, key);
+            partitions[i] = (int) (DoubleHashTable.hash(key, 0, width) >>> (64 - bits));
+            offsets[partitions[i] + 1]++;
+        }
+        for (int p = 1; p < offsets.length; p++) {
+            offsets[p] += offsets[p - 1];
+        }
+        int[] next = Arrays.copyOf(offsets, offsets.length - 1);
+        for (int i = 0; i < rows; i++) {
+            order[next[partitions[i]]++] = i;
+        }
+        return order;
+    }
+
+    /**
+     * Put the pairs in the order of their left rows, keeping the order of the pairs
+     * of the same left row
+     */
+    private void sortByLeft(int leftCount) {
+        int[] next = new int[leftCount + 1];
+        for (int k = 0; k < count; k++) {
+            next[leftRows[k] + 1]++;
+        }
+        for (int i = 0; i < leftCount; i++) {
+            next[i + 1] += next[i];
+        }
+        int[] sortedLeft = new int[leftRows.length];
+        int[] sortedRight = new int[rightRows.length];
+        for (int k = 0; k < count; k++) {
+            int position = next[leftRows[k]]++;
+            sortedLeft[position] = leftRows[k];
+            sortedRight[position] = rightRows[k];
+        }
+        leftRows = sortedLeft;
+        rightRows = sortedRight;
+    }
+
+    /**
+     * Copy the key of a row
+     *
+     * @return false if the key contains NaN, so it matches no other key
+     */
+    private static boolean keyOf(double[][] keys, int row, double[] key) {
+        boolean valid = true;
+        for (int k = 0; k < keys.length; k++) {
+            key[k] = keys[k][row];
+            valid &= key[k] == key[k];
+        }
+        return valid;
+    }
+
+    private static boolean hasNaN(double[][] keys, int row) {
+        for (double[] column : keys) {
+            if (Double.isNaN(column[row])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compare the keys of two rows in ascending order, where NaN is larger than any
+     * other value and 0.0 equals -0.0
+     */
+    private static int compare(double[][] a, int i, double[][] b, int j) {
+        for (int k = 0; k < a.length; k++) {
+            int c = Double.compare(a[k][i] + 0.0, b[k][j] + 0.0);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return 0;
+    }
+
+    private static void checkSorted(double[][] keys, int rows, String side) {
+        for (int i = 1; i < rows; i++) {
+            if (compare(keys, i - 1, keys, i) > 0) {
+                throw new IllegalArgumentException("The " + side + " data frame is not sorted by its keys at row " + i);
+            }
+        }
+    }
+}
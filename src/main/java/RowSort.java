@@ -0,0 +1,238 @@
+import java.util.Arrays;
+
+/**
+ * Orders the rows of a data frame by the values of its columns, without moving
+ * any row: the result is a permutation of the row indices, which the data frame
+ * uses to gather every column once.
+ *
+ * Sorting uses a least significant digit radix sort on 64-bit keys. Every double
+ * is mapped to a long whose unsigned order is the numeric order of the doubles,
+ * so the sort never compares two values, and passes over bytes that are equal in
+ * all keys are skipped. The radix sort is stable, so sorting by several columns is
+ * done by sorting by the last column first. NaN values are always placed last,
+ * and 0.0 and -0.0 are equal; rows with equal keys keep their order.
+ *
+ * The top k rows of a column are found with a bounded heap of k primitive
+ * entries, in O(n log k) time and O(k) memory.
+ *
+ */
+final class RowSort {
+    private static final long NAN_KEY = -1L;
+
+    private RowSort() {
+    }
+
+    /**
+     * Return the permutation that sorts rows by several columns
+     *
+     * @param columns the values of the columns to sort by, the first column first
+     * @param ascending for every column, whether it is sorted in ascending order
+     * @param rows the number of rows
+     * @return the indices of the rows in sorted order
+     */
+    static int[] sort(double[][] columns, boolean[] ascending, int rows) {
+        int[] order = new int[rows];
+        for (int i = 0; i < rows; i++) {
+            order[i] = i;
+        }
+        long[] keys = new long[rows];
+        long[] keyBuffer = new long[rows];
+        int[] orderBuffer = new int[rows];
+        for (int c = columns.length - 1; c >= 0; c--) {
+            double[] values = columns[c];
+            for (int i = 0; i < rows; i++) {
+                keys[i] = sortKey(values[order[i]], ascending[c]);
+            }
+            radixSort(keys, order, keyBuffer, orderBuffer, rows);
+        }
+        return order;
+    }
+
+    /**
+     * Map a double to a long whose unsigned order is the requested order of the doubles
+     */
+    private static long sortKey(double value, boolean ascending) {
+        if (value != value) {
+            return NAN_KEY;
+        }
+        long bits = Double.doubleToRawLongBits(value + 0.0);
+        long key = bits ^ ((bits >> 63) | Long.MIN_VALUE);
+        return ascending ? key : ~key;
+    }
+
+    /**
+     * Sort keys and the rows they belong to by the unsigned order of the keys, one
+     * byte per pass, starting with the least significant byte
+     */
+    private static void radixSort(long[] keys, int[] order, long[] keyBuffer, int[] orderBuffer, int rows) {
+        int[][] counts = new int[8][257];
+        for (int i = 0; i < rows; i++) {
+            long key = keys[i];
+            for (int b = 0; b < 8; b++) {
+                counts[b][((int) (key >>> (b << 3)) & 0xff) + 1]++;
+            }
+        }
+        long[] sourceKeys = keys;
+        int[] sourceOrder = order;
+        long[] targetKeys = keyBuffer;
+        int[] targetOrder = orderBuffer;
+        for (int b = 0; b < 8; b++) {
+            int[] offsets = counts[b];
+            if (isSingleBucket(offsets, rows)) {
+                continue;
+            }
+            for (int d = 0; d < 256; d++) {
+                offsets[d + 1] += offsets[d];
+            }
+            int shift = b << 3;
+            for (int i = 0; i < rows; i++) {
+                int position = offsets[(int) (sourceKeys[i] >>> shift) & 0xff]++;
+                targetKeys[position] = sourceKeys[i];
+                targetOrder[position] = sourceOrder[i];
+            }
+            long[] keySwap = sourceKeys;
+            sourceKeys = targetKeys;
+            targetKeys = keySwap;
+            int[] orderSwap = sourceOrder;
+            sourceOrder = targetOrder;
+            targetOrder = orderSwap;
+        }
+        if (sourceOrder != order) {
+            System.arraycopy(sourceOrder, 0, order, 0, rows);
+        }
+    }
+
+    private static boolean isSingleBucket(int[] counts, int rows) {
+        for (int d = 1; d <= 256; d++) {
+            if (counts[d] == rows) {
+                return true;
+            }
+        }
+        return rows == 0;
+    }
+
+    /**
+     * A bounded heap that keeps the k largest values with their rows. The root is the
+     * smallest of the kept values, so a new value only enters the heap when it is
+     * larger than the root. Of equal values the one of the lower row is larger, so
+     * the result does not depend on the order in which rows are added.
+     */
+    static final class TopHeap {
+        private final double[] values;
+        private final int[] rows;
+        private int size;
+
+        TopHeap(int k) {
+            values = new double[k];
+            rows = new int[k];
+        }
+
+        /**
+         * Offer a value to the heap, NaN values are ignored
+         *
+         * @param value the value
+         * @param row the row of the value
+         */
+        void add(double value, int row) {
+            if (value != value) {
+                return;
+            }
+            if (size < values.length) {
+                int i = size++;
+                while (i > 0) {
+                    int parent = (i - 1) >>> 1;
+                    if (!less(value, row, values[parent], rows[parent])) {
+                        break;
+                    }
+                    values[i] = values[parent];
+                    rows[i] = rows[parent];
+                    i = parent;
+                }
+                values[i] = value;
+                rows[i] = row;
+            } else if (size > 0 && less(values[0], rows[0], value, row)) {
+                siftDown(values, rows, size, value, row);
+            }
+        }
+
+        /**
+         * Offer a block of values of consecutive rows to the heap
+         *
+         * @param block the values
+         * @param length the number of values
+         * @param firstRow the row of the first value
+         */
+        void addAll(double[] block, int length, int firstRow) {
+            if (values.length == 0) {
+                return;
+            }
+            for (int i = 0; i < length; i++) {
+                double value = block[i];
+                // cheap rejection of the values that cannot enter a full heap
+                if (size == values.length && !(value >= values[0])) {
+                    continue;
+                }
+                add(value, firstRow + i);
+            }
+        }
+
+        /**
+         * Offer all values of another heap to this heap
+         *
+         * @param other the heap to merge
+         */
+        void addAll(TopHeap other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.values[i], other.rows[i]);
+            }
+        }
+
+        /**
+         * Return the rows of the kept values, largest value first
+         *
+         * @return the rows, at most k
+         */
+        int[] rows() {
+            double[] heapValues = Arrays.copyOf(values, size);
+            int[] heapRows = Arrays.copyOf(rows, size);
+            int[] result = new int[size];
+            for (int n = size - 1; n >= 0; n--) {
+                // the root is the smallest kept value, it goes to the end
+                result[n] = heapRows[0];
+                siftDown(heapValues, heapRows, n, heapValues[n], heapRows[n]);
+            }
+            return result;
+        }
+
+        /**
+         * Replace the root of a heap by an entry and move the entry down to its place
+         */
+        private static void siftDown(double[] values, int[] rows, int size, double value, int row) {
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && less(values[child + 1], rows[child + 1], values[child], rows[child])) {
+                    child++;
+                }
+                if (!less(values[child], rows[child], value, row)) {
+                    break;
+                }
+                values[i] = values[child];
+                rows[i] = rows[child];
+                i = child;
+            }
+            values[i] = value;
+            rows[i] = row;
+        }
+
+        /**
+         * Return whether an entry ranks below another entry
+         */
+        private static boolean less(double value, int row, double otherValue, int otherRow) {
+            return value < otherValue || (value == otherValue && row > otherRow);
+        }
+    }
+}
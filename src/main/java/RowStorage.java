@@ -0,0 +1,115 @@
+/**
+ * A row storage keeps the values of a data frame in row-major order: one
+ * array per row. Retrieving a row is free, while retrieving a column has to
+ * visit every row array.
+ *
+ */
+class RowStorage extends DoubleStorage {
+    private double[][] data;
+    private int cols;
+
+    /**
+     * This constructor stores the row arrays of the matrix. The arrays are used
+     * as they are, no copy is made.
+     *
+     * @param data array that holds one array for every row
+     * @param cols the number of columns, also needed when there are no rows
+     */
+    RowStorage(double[][] data, int cols) {
+        this.data = data;
+        this.cols = cols;
+    }
+
+    @Override
+    int rowCount() {
+        return data.length;
+    }
+
+    @Override
+    int columnCount() {
+        return cols;
+    }
+
+    @Override
+    DoubleDataFrame.Layout layout() {
+        return DoubleDataFrame.Layout.ROW_MAJOR;
+    }
+
+    @Override
+    double get(int row, int col) {
+        return data[row][col];
+    }
+
+    @Override
+    void set(int row, int col, double value) {
+        beforeWrite();
+        data[row][col] = value;
+    }
+
+    @Override
+    double[] column(int col) {
+        double[] column = new double[data.length];
+        for (int i = 0; i < data.length; i++) {
+            column[i] = data[i][col];
+        }
+        return column;
+    }
+
+    @Override
+    double[] row(int row) {
+        return data[row];
+    }
+
+    @Override
+    void copyColumn(int col, int from, int to, double[] target) {
+        for (int i = from; i < to; i++) {
+            target[i - from] = data[i][col];
+        }
+    }
+
+    @Override
+    double[] columnCopy(int col) {
+        return column(col);
+    }
+
+    @Override
+    DoubleStorage expand(int additionalRows, int additionalCols) {
+        double[][] newData = new double[data.length + additionalRows][cols + additionalCols];
+        for (int i = 0; i < data.length; i++) {
+            System.arraycopy(data[i], 0, newData[i], 0, cols);
+        }
+        return new RowStorage(newData, cols + additionalCols);
+    }
+
+    @Override
+    DoubleStorage project(int[] columns) {
+        double[][] newData = new double[data.length][columns.length];
+        for (int i = 0; i < data.length; i++) {
+            double[] source = data[i];
+            double[] target = newData[i];
+            for (int j = 0; j < columns.length; j++) {
+                target[j] = source[columns[j]];
+            }
+        }
+        return new RowStorage(newData, columns.length);
+    }
+
+    @Override
+    DoubleStorage select(int[] rows, int count) {
+        double[][] newData = new double[count][];
+        for (int i = 0; i < count; i++) {
+            newData[i] = data[rows[i]].clone();
+        }
+        return new RowStorage(newData, cols);
+    }
+
+    @Override
+    DoubleStorage appendColumn(double[] values) {
+        double[][] newData = new double[data.length][cols + 1];
+        for (int i = 0; i < data.length; i++) {
+            System.arraycopy(data[i], 0, newData[i], 0, cols);
+            newData[i][cols] = values[i];
+        }
+        return new RowStorage(newData, cols + 1);
+    }
+}
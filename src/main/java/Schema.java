@@ -0,0 +1,145 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A schema holds the names of the columns of a data frame, in order, together
+ * with a map for transforming the column names in indices.
+ *
+ * A schema is immutable, so a single instance is shared between a data frame,
+ * the data frames derived from it that keep the same columns, and all the row
+ * vectors produced by these frames. Looking up a column index is a single hash
+ * probe and never allocates.
+ *
+ */
+public final class Schema {
+    private final List<String> names;
+    private final Map<String, Integer> indices;
+
+    /**
+     * This constructor stores a copy of the column names and creates the map for
+     * transforming the column names in indices.
+     *
+     * @param names list that holds the names of the columns, in order
+     * @throws IllegalArgumentException if a column name is duplicated
+     */
+    public Schema(List<String> names) throws IllegalArgumentException {
+        this.names = Collections.unmodifiableList(new ArrayList<>(names));
+        this.indices = new HashMap<>(names.size() * 2);
+        for (int i = 0; i < names.size(); i++) {
+            if (indices.put(names.get(i), i) != null) {
+                throw new IllegalArgumentException("Column names cannot be duplicated: " + names.get(i));
+            }
+        }
+    }
+
+    /**
+     * Return the number of columns described by this schema
+     *
+     * @return the number of columns
+     */
+    public int size() {
+        return names.size();
+    }
+
+    /**
+     * Return the names of the columns, in order
+     *
+     * @return an unmodifiable list with the column names
+     */
+    public List<String> getNames() {
+        return names;
+    }
+
+    /**
+     * Return the name of the column at a given index
+     *
+     * @param index the index of the column
+     * @return the name of the column
+     * @throws IndexOutOfBoundsException if the index is illegal
+     */
+    public String getName(int index) throws IndexOutOfBoundsException {
+        return names.get(index);
+    }
+
+    /**
+     * Return the index of a column, or -1 if there is no column with the given name
+     *
+     * @param name the name of the column
+     * @return the index of the column or -1
+     */
+    public int indexOf(String name) {
+        Integer index = indices.get(name);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Return the index of a column that is required to exist
+     *
+     * @param name the name of the column
+     * @return the index of the column
+     * @throws IllegalArgumentException if there is no column with the given name
+     */
+    public int columnIndex(String name) throws IllegalArgumentException {
+        Integer index = indices.get(name);
+        if (index == null) {
+            throw new IllegalArgumentException("No column with name " + name);
+        }
+        return index;
+    }
+
+    /**
+     * Return whether the schema contains a column with the given name
+     *
+     * @param name the name of the column
+     * @return true if the column exists
+     */
+    public boolean contains(String name) {
+        return indices.containsKey(name);
+    }
+
+    /**
+     * Create a schema with additional columns at the right side
+     *
+     * @param newNames the names of the columns to add
+     * @return the extended schema
+     * @throws IllegalArgumentException if a column name is duplicated
+     */
+    public Schema append(List<String> newNames) throws IllegalArgumentException {
+        List<String> all = new ArrayList<>(names.size() + newNames.size());
+        all.addAll(names);
+        all.addAll(newNames);
+        return new Schema(all);
+    }
+
+    /**
+     * Create a schema that only holds the columns at the given indices, in the given order
+     *
+     * @param columns the indices of the columns to retain
+     * @return the smaller schema
+     */
+    public Schema project(int[] columns) {
+        List<String> retained = new ArrayList<>(columns.length);
+        for (int column : columns) {
+            retained.add(names.get(column));
+        }
+        return new Schema(retained);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Schema && names.equals(((Schema) o).names);
+    }
+
+    @Override
+    public int hashCode() {
+        return names.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return names.toString();
+    }
+}
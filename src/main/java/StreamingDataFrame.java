@@ -0,0 +1,381 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * A streaming data frame processes a data set that does not fit in memory one
+ * chunk of rows at a time. The chunks are read from a {@link ChunkSource}, such as
+ * a CSV file, a column file or a generator.
+ *
+ * Operations like select, computeColumn and project do not read any data: they
+ * return a new streaming data frame that applies the operation to every chunk.
+ * Terminal operations like summarize, reduce, statistics and count read the
+ * source once, apply the operations to one chunk after the other and combine the
+ * partial results of the chunks, so only one chunk is held in memory at a time.
+ * With read-ahead the next chunk is read on a background thread while the current
+ * chunk is processed, so at most two chunks are held in memory. With a pool, every
+ * chunk is processed in parallel, see {@link DoubleDataFrame#parallel()}.
+ *
+ * A source can be read only once: a streaming data frame and all streaming data
+ * frames derived from it support a single terminal operation, which closes the
+ * source. Within a chunk the name of a row vector refers to the index of the row
+ * in the chunk.
+ *
+ */
+public class StreamingDataFrame {
+    private final ChunkSource source;
+    private final AtomicBoolean consumed;
+    private final List<String> columnNames;
+    private final List<UnaryOperator<DoubleDataFrame>> steps;
+    private final boolean readAhead;
+    private final ForkJoinPool pool;
+
+    /**
+     * This constructor creates a streaming data frame over the chunks of a source
+     *
+     * @param source the source of the chunks
+     */
+    public StreamingDataFrame(ChunkSource source) {
+        this(source, new AtomicBoolean(), Collections.unmodifiableList(new ArrayList<>(source.getColumnNames())),
+                Collections.emptyList(), false, null);
+    }
+
+    private StreamingDataFrame(ChunkSource source, AtomicBoolean consumed, List<String> columnNames,
+            List<UnaryOperator<DoubleDataFrame>> steps, boolean readAhead, ForkJoinPool pool) {
+        this.source = source;
+        this.consumed = consumed;
+        this.columnNames = columnNames;
+        this.steps = steps;
+        this.readAhead = readAhead;
+        this.pool = pool;
+    }
+
+    /**
+     * Return the names of the columns of the chunks after all operations
+     *
+     * @return the names of the columns
+     */
+    public List<String> getColumnNames() {
+        return columnNames;
+    }
+
+    /**
+     * Return a streaming data frame that reads the next chunk on a background thread
+     * while the current chunk is processed
+     *
+     * @return a streaming data frame with read-ahead
+     */
+    public StreamingDataFrame readAhead() {
+        return new StreamingDataFrame(source, consumed, columnNames, steps, true, pool);
+    }
+
+    /**
+     * Return a streaming data frame that processes every chunk in parallel with a
+     * given pool
+     *
+     * @param pool the pool that processes the rows of a chunk
+     * @return a parallel streaming data frame
+     */
+    public StreamingDataFrame parallel(ForkJoinPool pool) {
+        return new StreamingDataFrame(source, consumed, columnNames, steps, readAhead, pool);
+    }
+
+    /**
+     * Return a streaming data frame that applies an operation to every chunk. The
+     * operation is applied to an empty chunk right away, so invalid column names are
+     * reported here and not halfway through the source.
+     *
+     * @param step the operation
+     * @return the streaming data frame with the operation
+     */
+    private StreamingDataFrame then(UnaryOperator<DoubleDataFrame> step) {
+        DoubleDataFrame empty = DoubleDataFrame.fromColumns(columnNames, new double[columnNames.size()][0]);
+        List<String> newNames = Collections.unmodifiableList(new ArrayList<>(step.apply(empty).getColumnNames()));
+        List<UnaryOperator<DoubleDataFrame>> newSteps = new ArrayList<>(steps);
+        newSteps.add(step);
+        return new StreamingDataFrame(source, consumed, newNames, newSteps, readAhead, pool);
+    }
+
+    /**
+     * Select the rows of every chunk that match a condition
+     *
+     * @param condition the condition on the columns
+     * @return a streaming data frame with the matching rows
+     * @throws IllegalArgumentException if the condition refers to a column that does not exist
+     */
+    public StreamingDataFrame select(Condition condition) throws IllegalArgumentException {
+        return then(chunk -> (DoubleDataFrame) chunk.select(condition));
+    }
+
+    /**
+     * Select the rows of every chunk that match a predicate
+     *
+     * @param rowFilter the predicate on the row vectors
+     * @return a streaming data frame with the matching rows
+     */
+    public StreamingDataFrame select(Predicate<DataVector<Double>> rowFilter) {
+        return then(chunk -> (DoubleDataFrame) chunk.select(rowFilter));
+    }
+
+    /**
+     * Add a column computed by an expression to every chunk
+     *
+     * @param columnName the name of the new column
+     * @param expression the expression over the columns
+     * @return a streaming data frame with the new column
+     * @throws IllegalArgumentException if the name is already used or the expression
+     *                                  refers to a column that does not exist
+     */
+    public StreamingDataFrame computeColumn(String columnName, Expression expression) throws IllegalArgumentException {
+        return then(chunk -> (DoubleDataFrame) chunk.computeColumn(columnName, expression));
+    }
+
+    /**
+     * Add a column computed by a function of the row vectors to every chunk
+     *
+     * @param columnName the name of the new column
+     * @param function the function that computes the value of a row
+     * @return a streaming data frame with the new column
+     * @throws IllegalArgumentException if the name is already used
+     */
+    public StreamingDataFrame computeColumn(String columnName, Function<DataVector<Double>, Double> function)
+            throws IllegalArgumentException {
+        return then(chunk -> (DoubleDataFrame) chunk.computeColumn(columnName, function));
+    }
+
+    /**
+     * Keep only some columns of every chunk, in their original order
+     *
+     * @param retainColumns the names of the columns to keep
+     * @return a streaming data frame with the kept columns
+     */
+    public StreamingDataFrame project(Collection<String> retainColumns) {
+        List<String> retained = new ArrayList<>(retainColumns);
+        return then(chunk -> (DoubleDataFrame) chunk.project(retained));
+    }
+
+    /**
+     * Read all chunks of the source and pass them, after all operations, to a consumer
+     * in the order of the source. The source is closed afterwards.
+     *
+     * @param consumer the consumer of the chunks
+     * @throws IOException if the source cannot be read
+     * @throws IllegalStateException if the source was already read
+     */
+    public void forEachChunk(Consumer<DoubleDataFrame> consumer) throws IOException, IllegalStateException {
+        if (!consumed.compareAndSet(false, true)) {
+            throw new IllegalStateException("The source of a streaming data frame can only be read once");
+        }
+        ExecutorService reader = readAhead ? Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "chunk-reader");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+        try (ChunkSource chunks = source) {
+            try {
+                Future<DoubleDataFrame> next = reader == null ? null : reader.submit(chunks::nextChunk);
+                while (true) {
+                    DoubleDataFrame chunk = next == null ? chunks.nextChunk() : get(next);
+                    if (chunk == null) {
+                        break;
+                    }
+                    if (reader != null) {
+                        next = reader.submit(chunks::nextChunk);
+                    }
+                    if (pool != null) {
+                        chunk = chunk.parallel(pool);
+                    }
+                    for (UnaryOperator<DoubleDataFrame> step : steps) {
+                        chunk = step.apply(chunk);
+                    }
+                    consumer.accept(chunk);
+                }
+            } finally {
+                // the reader has to stop before the source is closed
+                if (reader != null) {
+                    stop(reader);
+                }
+            }
+        }
+    }
+
+    /**
+     * Count the rows after all operations
+     *
+     * @return the number of rows
+     * @throws IOException if the source cannot be read
+     * @throws IllegalStateException if the source was already read
+     */
+    public long count() throws IOException, IllegalStateException {
+        long[] count = new long[1];
+        forEachChunk(chunk -> count[0] += chunk.getRowCount());
+        return count[0];
+    }
+
+    /**
+     * Summarize each column over all chunks, see
+     * {@link DoubleDataFrame#summarize(String, BinaryOperator)}. The results of the
+     * chunks are combined with the same function, so it has to be associative.
+     *
+     * @param name the name of the produced data vector
+     * @param summaryFunction the function that is used to reduce the values in each column
+     * @return the aggregated value of every column
+     * @throws IOException if the source cannot be read
+     * @throws IllegalStateException if the source was already read
+     */
+    public DataVector<Double> summarize(String name, BinaryOperator<Double> summaryFunction)
+            throws IOException, IllegalStateException {
+        return reduce(name, (a, b) -> summaryFunction.apply(a, b));
+    }
+
+    /**
+     * Summarize each column over all chunks with a primitive operator, see
+     * {@link DoubleDataFrame#reduce(String, DoubleBinaryOperator)}. The results of the
+     * chunks are combined with the same operator, so it has to be associative.
+     *
+     * @param name the name of the produced data vector
+     * @param summaryFunction the operator that is used to reduce the values in each column
+     * @return the reduced value of every column
+     * @throws IOException if the source cannot be read
+     * @throws IllegalStateException if the source was already read
+     */
+    public DataVector<Double> reduce(String name, DoubleBinaryOperator summaryFunction)
+            throws IOException, IllegalStateException {
+        double[][] result = new double[1][];
+        forEachChunk(chunk -> {
+            if (chunk.getRowCount() == 0) {
+                return;
+            }
+            double[] partial = ((DoubleVector) chunk.reduce(name, summaryFunction)).toDoubleArray();
+            if (result[0] == null) {
+                result[0] = partial;
+                return;
+            }
+            for (int i = 0; i < partial.length; i++) {
+                result[0][i] = summaryFunction.applyAsDouble(result[0][i], partial[i]);
+            }
+        });
+        double[] values = result[0] == null ? new double[columnNames.size()] : result[0];
+        return new DoubleDataVector(values, new Schema(columnNames), name);
+    }
+
+    /**
+     * Compute the statistics of every column over all chunks
+     *
+     * @return the statistics of every column, in the order of the columns
+     * @throws IOException if the source cannot be read
+     * @throws IllegalStateException if the source was already read
+     */
+    public List<ColumnStatistics> statistics() throws IOException, IllegalStateException {
+        ColumnStatistics[] statistics = new ColumnStatistics[columnNames.size()];
+        for (int i = 0; i < statistics.length; i++) {
+            statistics[i] = new ColumnStatistics();
+        }
+        forEachChunk(chunk -> {
+            List<ColumnStatistics> partial = chunk.statistics();
+            for (int i = 0; i < statistics.length; i++) {
+                statistics[i].combine(partial.get(i));
+            }
+        });
+        return Arrays.asList(statistics);
+    }
+
+    /**
+     * Compute several aggregates for every column over all chunks, in a single pass
+     * over the source. For every aggregate a data vector named after the aggregate is
+     * produced.
+     *
+     * @param aggregates the aggregates to compute
+     * @return a data vector with the result for each column, for every aggregate in
+     *         the given order
+     * @throws IOException if the source cannot be read
+     * @throws IllegalStateException if the source was already read
+     */
+    public List<DataVector<Double>> summarizeAll(Aggregate... aggregates) throws IOException, IllegalStateException {
+        List<ColumnStatistics> statistics = statistics();
+        Schema schema = new Schema(columnNames);
+        List<DataVector<Double>> result = new ArrayList<>(aggregates.length);
+        for (Aggregate aggregate : aggregates) {
+            double[] values = new double[statistics.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = statistics.get(i).get(aggregate);
+            }
+            result.add(new DoubleDataVector(values, schema, aggregate.getName()));
+        }
+        return result;
+    }
+
+    /**
+     * Collect the rows of all chunks into a data frame, which has to fit in memory.
+     * This is meant for results that are much smaller than the source, e.g. after a
+     * selective select.
+     *
+     * @return a column-major data frame with the rows of all chunks
+     * @throws IOException if the source cannot be read
+     * @throws IllegalStateException if the source was already read
+     */
+    public DoubleDataFrame collect() throws IOException, IllegalStateException {
+        DoubleDataFrameBuilder builder = new DoubleDataFrameBuilder(columnNames, 16);
+        forEachChunk(builder::appendRows);
+        return builder.freeze();
+    }
+
+    /**
+     * Stop the read-ahead thread and wait until it has left the source, even when the
+     * calling thread is interrupted, whose interrupt status is restored afterwards
+     */
+    private static void stop(ExecutorService reader) {
+        reader.shutdownNow();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (reader.awaitTermination(1, TimeUnit.MINUTES)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static DoubleDataFrame get(Future<DoubleDataFrame> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading a chunk", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+}
@@ -0,0 +1,321 @@
+import java.util.Arrays;
+
+/**
+ * A view storage shows the values of another storage, the base, without copying
+ * them. Rows and columns of the view are mapped to rows and columns of the base,
+ * so a view can show a subset of the rows, a subset of the columns in any order,
+ * and additional rows and columns filled with zeros. Creating a view costs time
+ * proportional to the number of selected rows or projected columns only.
+ *
+ * Views are copy-on-write. The first time a value of a view is set, the view
+ * copies the values it shows into a storage of its own, which backs the view from
+ * then on. Before a value of the base is set, every view on it does the same. So
+ * the view behaves exactly like an independent copy of the base.
+ *
+ * A view on a view refers to the base of the latter directly, so reading a value
+ * never passes through more than one view.
+ *
+ */
+class ViewStorage extends DoubleStorage {
+    private DoubleStorage base;
+    private int[] rowMap;
+    private int[] colMap;
+    private int rows;
+    private int cols;
+    private int baseRows;
+    private int baseCols;
+    private DoubleStorage own;
+
+    /**
+     * This constructor creates a view on a base storage and registers the view with
+     * the base. A negative entry in a map stands for a row or column of zeros.
+     *
+     * @param base the storage that holds the values
+     * @param rowMap the row of the base for every row of the view, or null to show
+     *               the rows of the base in order, followed by rows of zeros
+     * @param rows the number of rows of the view
+     * @param colMap the column of the base for every column of the view, or null to
+     *               show the columns of the base in order, followed by columns of zeros
+     * @param cols the number of columns of the view
+     */
+    ViewStorage(DoubleStorage base, int[] rowMap, int rows, int[] colMap, int cols) {
+        this(base, rowMap, rows, colMap, cols, true);
+    }
+
+    /**
+     * This constructor creates a view on a base storage. A view that is only used to
+     * create a copy is not registered, so the base does not have to detach it.
+     */
+    private ViewStorage(DoubleStorage base, int[] rowMap, int rows, int[] colMap, int cols, boolean register) {
+        this.base = base;
+        this.rowMap = rowMap;
+        this.rows = rows;
+        this.colMap = colMap;
+        this.cols = cols;
+        this.baseRows = base.rowCount();
+        this.baseCols = base.columnCount();
+        if (register) {
+            base.addView(this);
+        }
+    }
+
+    /**
+     * Return the row of the base shown in a row of this view
+     *
+     * @param row the index of the row in this view
+     * @return the index of the row in the base, or -1 for a row of zeros
+     */
+    private int baseRow(int row) {
+        if (rowMap != null) {
+            return rowMap[row];
+        }
+        return row < baseRows ? row : -1;
+    }
+
+    /**
+     * Return the column of the base shown in a column of this view
+     *
+     * @param col the index of the column in this view
+     * @return the index of the column in the base, or -1 for a column of zeros
+     */
+    private int baseCol(int col) {
+        if (colMap != null) {
+            return colMap[col];
+        }
+        return col < baseCols ? col : -1;
+    }
+
+    private void checkIndex(int row, int col) {
+        if (row < 0 || row >= rows) {
+            throw new IndexOutOfBoundsException("Row index " + row + " out of bounds for " + rows + " rows");
+        }
+        if (col < 0 || col >= cols) {
+            throw new IndexOutOfBoundsException("Column index " + col + " out of bounds for " + cols + " columns");
+        }
+    }
+
+    @Override
+    int rowCount() {
+        return rows;
+    }
+
+    @Override
+    int columnCount() {
+        return cols;
+    }
+
+    @Override
+    DoubleDataFrame.Layout layout() {
+        return own != null ? own.layout() : base.layout();
+    }
+
+    @Override
+    double get(int row, int col) {
+        if (own != null) {
+            return own.get(row, col);
+        }
+        checkIndex(row, col);
+        int r = baseRow(row);
+        int c = baseCol(col);
+        return r < 0 || c < 0 ? 0 : base.get(r, c);
+    }
+
+    @Override
+    void set(int row, int col, double value) {
+        checkIndex(row, col);
+        detach();
+        own.set(row, col, value);
+    }
+
+    @Override
+    double[] column(int col) {
+        if (own != null) {
+            return own.column(col);
+        }
+        return columnCopy(col);
+    }
+
+    @Override
+    double[] row(int row) {
+        if (own != null) {
+            return own.row(row);
+        }
+        return rowCopy(row);
+    }
+
+    @Override
+    double[] columnCopy(int col) {
+        if (own != null) {
+            return own.columnCopy(col);
+        }
+        double[] values = new double[rows];
+        copyColumn(col, 0, rows, values);
+        return values;
+    }
+
+    @Override
+    double[] rowCopy(int row) {
+        if (own != null) {
+            return own.rowCopy(row);
+        }
+        double[] values = new double[cols];
+        for (int j = 0; j < cols; j++) {
+            values[j] = get(row, j);
+        }
+        return values;
+    }
+
+    @Override
+    void copyColumn(int col, int from, int to, double[] target) {
+        if (own != null) {
+            own.copyColumn(col, from, to, target);
+            return;
+        }
+        int c = baseCol(col);
+        if (c < 0) {
+            Arrays.fill(target, 0, to - from, 0);
+        } else if (rowMap == null) {
+            int end = Math.max(from, Math.min(to, baseRows));
+            if (end > from) {
+                base.copyColumn(c, from, end, target);
+            }
+            Arrays.fill(target, end - from, to - from, 0);
+        } else {
+            for (int i = from; i < to; i++) {
+                int r = rowMap[i];
+                target[i - from] = r < 0 ? 0 : base.get(r, c);
+            }
+        }
+    }
+
+    @Override
+    void setColumn(int col, int from, int to, double[] source) {
+        detach();
+        own.setColumn(col, from, to, source);
+    }
+
+    @Override
+    DoubleStorage expand(int additionalRows, int additionalCols) {
+        if (own != null) {
+            return own.expand(additionalRows, additionalCols);
+        }
+        return copyOf(expanded(additionalRows, additionalCols, false));
+    }
+
+    @Override
+    DoubleStorage project(int[] retain) {
+        if (own != null) {
+            return own.project(retain);
+        }
+        return copyOf(projected(retain, false));
+    }
+
+    @Override
+    DoubleStorage select(int[] selected, int count) {
+        if (own != null) {
+            return own.select(selected, count);
+        }
+        return copyOf(selected(selected, count, false));
+    }
+
+    @Override
+    DoubleStorage appendColumn(double[] values) {
+        if (own != null) {
+            return own.appendColumn(values);
+        }
+        DoubleStorage appended = copyOf(expanded(0, 1, false));
+        appended.setColumn(cols, 0, rows, values);
+        return appended;
+    }
+
+    @Override
+    DoubleStorage projectView(int[] retain) {
+        return own != null ? own.projectView(retain) : projected(retain, true);
+    }
+
+    @Override
+    DoubleStorage selectView(int[] selected, int count) {
+        return own != null ? own.selectView(selected, count) : selected(selected, count, true);
+    }
+
+    @Override
+    DoubleStorage expandView(int additionalRows, int additionalCols) {
+        return own != null ? own.expandView(additionalRows, additionalCols) : expanded(additionalRows, additionalCols, true);
+    }
+
+    private ViewStorage projected(int[] retain, boolean register) {
+        int[] newColMap = new int[retain.length];
+        for (int j = 0; j < retain.length; j++) {
+            newColMap[j] = baseCol(retain[j]);
+        }
+        return new ViewStorage(base, rowMap, rows, newColMap, retain.length, register);
+    }
+
+    private ViewStorage selected(int[] selected, int count, boolean register) {
+        int[] newRowMap = new int[count];
+        for (int i = 0; i < count; i++) {
+            newRowMap[i] = baseRow(selected[i]);
+        }
+        return new ViewStorage(base, newRowMap, count, colMap, cols, register);
+    }
+
+    private ViewStorage expanded(int additionalRows, int additionalCols, boolean register) {
+        int[] newRowMap = rowMap;
+        if (rowMap != null && additionalRows > 0) {
+            newRowMap = Arrays.copyOf(rowMap, rows + additionalRows);
+            Arrays.fill(newRowMap, rows, newRowMap.length, -1);
+        }
+        int[] newColMap = colMap;
+        if (colMap != null && additionalCols > 0) {
+            newColMap = Arrays.copyOf(colMap, cols + additionalCols);
+            Arrays.fill(newColMap, cols, newColMap.length, -1);
+        }
+        return new ViewStorage(base, newRowMap, rows + additionalRows, newColMap, cols + additionalCols, register);
+    }
+
+    @Override
+    DoubleStorage allocate(int newRows, int newCols) {
+        return own != null ? own.allocate(newRows, newCols) : base.allocate(newRows, newCols);
+    }
+
+    @Override
+    void close() {
+        if (own != null) {
+            own.close();
+        }
+    }
+
+    /**
+     * Copy the values shown by this view into a storage of its own, unless that
+     * happened before. From then on the view no longer reads the base.
+     */
+    void detach() {
+        if (own != null) {
+            return;
+        }
+        own = copyOf(this);
+        base = null;
+        rowMap = null;
+        colMap = null;
+    }
+
+    /**
+     * Copy the values shown by a view into a new storage of the same kind as its base
+     *
+     * @param view the view to copy
+     * @return a new, independent storage
+     */
+    private static DoubleStorage copyOf(DoubleStorage view) {
+        int rowCount = view.rowCount();
+        DoubleStorage copy = view.allocate(rowCount, view.columnCount());
+        double[] buffer = new double[Math.min(Expression.BLOCK_SIZE, rowCount)];
+        for (int j = 0; j < view.columnCount(); j++) {
+            for (int from = 0; from < rowCount; from += buffer.length) {
+                int to = Math.min(rowCount, from + buffer.length);
+                view.copyColumn(j, from, to, buffer);
+                copy.setColumn(j, from, to, buffer);
+            }
+        }
+        return copy;
+    }
+}
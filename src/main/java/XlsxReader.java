@@ -0,0 +1,329 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.apache.poi.ooxml.util.SAXHelper;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.SharedStrings;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * An XLSX reader builds a column-major DoubleDataFrame from a sheet of an Excel
+ * workbook. The first row of the sheet holds the names of the columns, every
+ * following row holds the values of one row of the data frame. A column whose
+ * header cell is missing or blank is named "col_" followed by its index, e.g. "col_2".
+ *
+ * The sheet is read with the event API of Apache POI: its XML is parsed with SAX,
+ * one element at a time, instead of loading the workbook as an XSSFWorkbook, so the
+ * memory used is the size of the data frame plus the shared strings of the
+ * workbook. The text of a numeric cell is parsed directly into a growing primitive
+ * column buffer by the parser of {@link CsvReader}, through a byte buffer that is
+ * reused for every cell, without creating a String or a cell object.
+ *
+ * Rows and cells are placed by their references, so a missing cell, an empty cell
+ * and an error cell are read as NaN, and a missing row as a row of NaN. Boolean
+ * cells are read as 1 and 0, text cells are parsed as numbers.
+ *
+ */
+public class XlsxReader {
+
+    /**
+     * Read a data frame from the first sheet of a workbook
+     *
+     * @param path the workbook to read
+     * @return a column-major data frame with the values of the sheet
+     * @throws IOException if the workbook cannot be read or a cell holds an invalid value
+     * @throws IllegalArgumentException if two header cells hold the same name
+     */
+    public DoubleDataFrame read(Path path) throws IOException, IllegalArgumentException {
+        return read(path, null);
+    }
+
+    /**
+     * Read a data frame from a sheet of a workbook
+     *
+     * @param path the workbook to read
+     * @param sheetName the name of the sheet, or null for the first sheet
+     * @return a column-major data frame with the values of the sheet
+     * @throws IOException if the workbook cannot be read, has no such sheet or a cell
+     *                     holds an invalid value
+     * @throws IllegalArgumentException if two header cells hold the same name
+     */
+    public DoubleDataFrame read(Path path, String sheetName) throws IOException, IllegalArgumentException {
+        try (OPCPackage pkg = OPCPackage.open(path.toFile(), PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            SharedStrings strings = new ReadOnlySharedStringsTable(pkg, false);
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            while (sheets.hasNext()) {
+                try (InputStream sheet = sheets.next()) {
+                    if (sheetName == null || sheetName.equals(sheets.getSheetName())) {
+                        SheetHandler handler = new SheetHandler(strings);
+                        XMLReader parser = SAXHelper.newXMLReader();
+                        parser.setContentHandler(handler);
+                        parser.parse(new InputSource(sheet));
+                        return handler.toDataFrame();
+                    }
+                }
+            }
+            throw new IOException(sheetName == null ? "No sheet in " + path : "No sheet named " + sheetName + " in " + path);
+        } catch (SAXException e) {
+            if (e.getException() instanceof IOException) {
+                throw (IOException) e.getException();
+            }
+            throw new IOException("Invalid sheet in " + path, e);
+        } catch (OpenXML4JException | ParserConfigurationException e) {
+            throw new IOException("Cannot read workbook " + path, e);
+        }
+    }
+
+    /**
+     * Return the names of the sheets of a workbook, in their order
+     *
+     * @param path the workbook
+     * @return the names of the sheets
+     * @throws IOException if the workbook cannot be read
+     */
+    public List<String> getSheetNames(Path path) throws IOException {
+        try (OPCPackage pkg = OPCPackage.open(path.toFile(), PackageAccess.READ)) {
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) new XSSFReader(pkg).getSheetsData();
+            List<String> names = new ArrayList<>();
+            while (sheets.hasNext()) {
+                sheets.next().close();
+                names.add(sheets.getSheetName());
+            }
+            return names;
+        } catch (OpenXML4JException e) {
+            throw new IOException("Cannot read workbook " + path, e);
+        }
+    }
+
+    /**
+     * Parse the index of the column from a cell reference such as "AB12"
+     *
+     * @return the index of the column, or -1 if the reference has no column letters
+     */
+    private static int columnOf(String reference) {
+        int col = 0;
+        int i = 0;
+        while (i < reference.length()) {
+            char c = reference.charAt(i);
+            if (c < 'A' || c > 'Z') {
+                break;
+            }
+            col = col * 26 + (c - 'A' + 1);
+            i++;
+        }
+        return i == 0 ? -1 : col - 1;
+    }
+
+    /**
+     * Return the local name of an element, whether the parser is namespace aware or not
+     */
+    private static String localName(String localName, String qName) {
+        if (localName != null && !localName.isEmpty()) {
+            return localName;
+        }
+        int colon = qName.indexOf(':');
+        return colon < 0 ? qName : qName.substring(colon + 1);
+    }
+
+    /**
+     * Collects the values of the cells of a sheet, row by row, into column buffers
+     */
+    private static final class SheetHandler extends DefaultHandler {
+        private final SharedStrings strings;
+        private List<String> names;
+        private int headerRow = -1;
+        private DoubleColumnBuffer[] columns;
+        private int rows;
+
+        private int rowIndex = -1;
+        private double[] values;
+        private String cellReference;
+        private int cellColumn;
+        private int nextColumn;
+        private String cellType;
+        private boolean inText;
+        private char[] text = new char[64];
+        private int textLength;
+        private byte[] bytes = new byte[64];
+        private ByteBuffer buffer = ByteBuffer.wrap(bytes);
+
+        SheetHandler(SharedStrings strings) {
+            this.strings = strings;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            String name = localName(localName, qName);
+            if ("row".equals(name)) {
+                String r = attributes.getValue("r");
+                rowIndex = r == null ? rowIndex + 1 : Integer.parseInt(r) - 1;
+                nextColumn = 0;
+                if (names == null) {
+                    names = new ArrayList<>();
+                } else {
+                    Arrays.fill(values, Double.NaN);
+                }
+            } else if ("c".equals(name)) {
+                cellReference = attributes.getValue("r");
+                int col = cellReference == null ? -1 : columnOf(cellReference);
+                cellColumn = col < 0 ? nextColumn : col;
+                nextColumn = cellColumn + 1;
+                cellType = attributes.getValue("t");
+                textLength = 0;
+            } else if ("v".equals(name) || "t".equals(name)) {
+                inText = true;
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (!inText) {
+                return;
+            }
+            if (textLength + length > text.length) {
+                text = Arrays.copyOf(text, Math.max(text.length * 2, textLength + length));
+            }
+            System.arraycopy(ch, start, text, textLength, length);
+            textLength += length;
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            String name = localName(localName, qName);
+            if ("v".equals(name) || "t".equals(name)) {
+                inText = false;
+            } else if ("c".equals(name)) {
+                if (values == null) {
+                    addName();
+                } else {
+                    addValue();
+                }
+            } else if ("row".equals(name)) {
+                if (values == null) {
+                    startColumns();
+                } else {
+                    addRow();
+                }
+            }
+        }
+
+        /**
+         * Store the text of a header cell as the name of its column
+         */
+        private void addName() {
+            while (names.size() <= cellColumn) {
+                names.add("");
+            }
+            names.set(cellColumn, cellText().trim());
+        }
+
+        private void startColumns() {
+            headerRow = rowIndex;
+            values = new double[names.size()];
+            columns = new DoubleColumnBuffer[names.size()];
+            for (int j = 0; j < columns.length; j++) {
+                columns[j] = new DoubleColumnBuffer();
+            }
+        }
+
+        /**
+         * Store the value of a data cell in the values of the current row
+         */
+        private void addValue() throws SAXException {
+            if (textLength == 0) {
+                return;
+            }
+            if (cellColumn >= values.length) {
+                throw new SAXException(new IOException("Too many values in the row of cell " + cellReference));
+            }
+            try {
+                if (cellType == null || "n".equals(cellType)) {
+                    if (textLength > bytes.length) {
+                        bytes = new byte[Math.max(bytes.length * 2, textLength)];
+                        buffer = ByteBuffer.wrap(bytes);
+                    }
+                    for (int k = 0; k < textLength; k++) {
+                        bytes[k] = (byte) text[k];
+                    }
+                    values[cellColumn] = CsvReader.parseDouble(buffer, 0, textLength, 0);
+                } else if ("b".equals(cellType)) {
+                    values[cellColumn] = textLength == 1 && text[0] == '1' ? 1 : 0;
+                } else if (!"e".equals(cellType)) {
+                    String value = cellText().trim();
+                    values[cellColumn] = value.isEmpty() ? Double.NaN : Double.parseDouble(value);
+                }
+            } catch (IOException | NumberFormatException e) {
+                throw new SAXException(new IOException("Invalid number '" + cellText() + "' in cell " + cellReference, e));
+            }
+        }
+
+        /**
+         * Return the text of the current cell, resolving an index into the shared strings
+         */
+        private String cellText() {
+            String value = new String(text, 0, textLength);
+            if ("s".equals(cellType)) {
+                return strings.getItemAt(Integer.parseInt(value.trim())).getString();
+            }
+            return value;
+        }
+
+        /**
+         * Append the current row, preceded by rows of NaN for the rows missing before it
+         */
+        private void addRow() throws SAXException {
+            long row = (long) rowIndex - headerRow - 1;
+            if (row > Integer.MAX_VALUE - 8) {
+                throw new SAXException(new IOException("Too many rows for a data frame"));
+            }
+            for (; rows < row; rows++) {
+                for (DoubleColumnBuffer column : columns) {
+                    column.add(Double.NaN);
+                }
+            }
+            for (int j = 0; j < columns.length; j++) {
+                columns[j].add(values[j]);
+            }
+            rows++;
+        }
+
+        DoubleDataFrame toDataFrame() {
+            if (names == null) {
+                return DoubleDataFrame.fromColumns(new ArrayList<>(), new double[0][]);
+            }
+            if (columns == null) {
+                startColumns();
+            }
+            for (int j = 0; j < names.size(); j++) {
+                if (names.get(j).isEmpty()) {
+                    String name = "col_" + j;
+                    while (names.contains(name)) {
+                        name += "_";
+                    }
+                    names.set(j, name);
+                }
+            }
+            double[][] arrays = new double[columns.length][];
+            for (int j = 0; j < arrays.length; j++) {
+                arrays[j] = columns[j].toArray();
+            }
+            return DoubleDataFrame.fromColumns(names, arrays);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+/**
+ * An XLSX writer writes the contents of a data frame to a sheet of an Excel workbook
+ * in the format read by {@link XlsxReader}: a row with the column names followed by
+ * one row per row of the data frame.
+ *
+ * The workbook is written with the streaming API of Apache POI: only a window of
+ * the most recent rows is held in memory, older rows are flushed to a compressed
+ * temporary file, so the memory used does not depend on the size of the data frame.
+ * NaN values are written as empty cells; Excel cannot hold infinite values, which
+ * are written as error cells and read back as NaN.
+ *
+ */
+public class XlsxWriter {
+
+    /**
+     * The number of rows that are kept in memory before they are flushed
+     */
+    static final int WINDOW_SIZE = 1000;
+
+    private final String sheetName;
+
+    /**
+     * This constructor creates a writer for a sheet named "Sheet1"
+     */
+    public XlsxWriter() {
+        this("Sheet1");
+    }
+
+    /**
+     * This constructor creates a writer for a sheet with a given name
+     *
+     * @param sheetName the name of the sheet
+     */
+    public XlsxWriter(String sheetName) {
+        this.sheetName = sheetName;
+    }
+
+    /**
+     * Write a data frame to a workbook file, replacing the file if it exists
+     *
+     * @param df the data frame to write
+     * @param path the file to write to
+     * @throws IOException if the file cannot be written
+     * @throws IllegalArgumentException if the data frame has more rows or columns than
+     *                                  fit in a sheet
+     */
+    public void write(DataFrame<Double> df, Path path) throws IOException, IllegalArgumentException {
+        try (OutputStream out = Files.newOutputStream(path)) {
+            write(df, out);
+        }
+    }
+
+    /**
+     * Write a data frame as a workbook to a stream, which is not closed afterwards
+     *
+     * @param df the data frame to write
+     * @param out the stream to write to
+     * @throws IOException if the stream fails
+     * @throws IllegalArgumentException if the data frame has more rows or columns than
+     *                                  fit in a sheet
+     */
+    public void write(DataFrame<Double> df, OutputStream out) throws IOException, IllegalArgumentException {
+        List<String> colNames = df.getColumnNames();
+        int rows = df.getRowCount();
+        SpreadsheetVersion version = SpreadsheetVersion.EXCEL2007;
+        if (rows >= version.getMaxRows()) {
+            throw new IllegalArgumentException("A sheet holds at most " + (version.getMaxRows() - 1) + " rows, got " + rows);
+        }
+        if (colNames.size() > version.getMaxColumns()) {
+            throw new IllegalArgumentException("A sheet holds at most " + version.getMaxColumns() + " columns, got "
+                    + colNames.size());
+        }
+        SXSSFWorkbook workbook = new SXSSFWorkbook(null, WINDOW_SIZE, true);
+        try {
+            Sheet sheet = workbook.createSheet(sheetName);
+            Row header = sheet.createRow(0);
+            for (int j = 0; j < colNames.size(); j++) {
+                header.createCell(j).setCellValue(colNames.get(j));
+            }
+            DoubleStorage storage = df instanceof DoubleDataFrame ? ((DoubleDataFrame) df).storage() : null;
+            for (int i = 0; i < rows; i++) {
+                Row row = sheet.createRow(i + 1);
+                for (int j = 0; j < colNames.size(); j++) {
+                    double value = storage != null ? storage.get(i, j) : df.getValue(i, colNames.get(j));
+                    if (!Double.isNaN(value)) {
+                        row.createCell(j).setCellValue(value);
+                    }
+                }
+            }
+            workbook.write(out);
+            out.flush();
+        } finally {
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+}